@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.fitting;
+
+import static com.vitorpamplona.core.fitting.AstigmaticLensFunction.AXIS;
+import static com.vitorpamplona.core.fitting.AstigmaticLensFunction.CYLINDRICAL;
+import static com.vitorpamplona.core.fitting.AstigmaticLensFunction.SPHERICAL;
+
+import com.vitorpamplona.core.utils.AngleDiff;
+
+/**
+ * Fits many exams at once, with the same guess and Levenberg-Marquardt steps
+ * as SinusoidalFitting.curveFitting but without per-exam objects.
+ *
+ * Exams come as a structure of arrays: the meridians of exam e are
+ * angles[offsets[e]] to angles[offsets[e+1]-1] with the matching powers.
+ * Results go to out[3*e + SPHERICAL|CYLINDRICAL|AXIS] in negative cylinder.
+ * Exams the solver can't handle (singular hessian) are written as NaN.
+ *
+ * Scratch space is reused between calls, so use one instance per thread.
+ */
+public class BatchSinusoidalFitting {
+
+    private static final int NPARM = 3;
+
+    private static final double LAMBDA = 0.01;
+    private static final double TERM_EPSILON = 0.000001;
+    private static final int MAX_ITER = 300;
+
+    private double[] xr = new double[0];
+    private double[] y = new double[0];
+
+    private final double[] a = new double[NPARM];
+    private final double[] na = new double[NPARM];
+    private final double[] grad = new double[NPARM];
+    private final double[] g = new double[NPARM];
+    private final double[] lu = new double[NPARM * NPARM];
+    private final double[] luColJ = new double[NPARM];
+    private final int[] piv = new int[NPARM];
+
+    public void fit(float[] angles, float[] powers, int[] offsets, float[] out) {
+        fit(angles, powers, offsets, 0, offsets.length - 1, out);
+    }
+
+    /**
+     * Fits exams fromExam (inclusive) to toExam (exclusive), so a big block
+     * can be split between threads each with its own instance.
+     */
+    public void fit(float[] angles, float[] powers, int[] offsets, int fromExam, int toExam, float[] out) {
+        for (int e = fromExam; e < toExam; e++) {
+            fitExam(angles, powers, offsets[e], offsets[e + 1], out, 3 * e);
+        }
+    }
+
+    private void fitExam(float[] angles, float[] powers, int start, int end, float[] out, int o) {
+        int npts = end - start;
+
+        if (npts <= 0) {
+            writeNegativeCylinder(0, 0, 0, out, o);
+            return;
+        }
+
+        // Same guess as SinusoidalFitting.guessPrescription
+        float minDiopter = 999;
+        float maxDiopter = -999;
+        float minAbsDiopter = 999;
+        float maxAbsDiopter = -999;
+        float minAxis = 0;
+
+        float sum = 0;
+        for (int i = start; i < end; i++) {
+            float power = powers[i];
+            if (power > maxAbsDiopter) {
+                maxAbsDiopter = power;
+                maxDiopter = power;
+            }
+
+            if (power < minAbsDiopter) {
+                minAbsDiopter = power;
+                minDiopter = power;
+
+                minAxis = angles[i];
+            }
+
+            sum += power;
+        }
+
+        float cyl = (maxDiopter - minDiopter);
+        float avg = sum / npts;
+        float sph = avg - cyl / 2;
+
+        writeNegativeCylinder(sph, cyl, minAxis, out, o);
+
+        if (npts < 3 || Math.abs(out[o + CYLINDRICAL]) < 0.001) {
+            return;
+        }
+
+        a[SPHERICAL] = out[o + SPHERICAL];
+        a[CYLINDRICAL] = out[o + CYLINDRICAL];
+        a[AXIS] = AngleDiff.angle0to180(out[o + AXIS]);
+
+        if (xr.length < npts) {
+            xr = new double[npts];
+            y = new double[npts];
+        }
+
+        for (int i = 0; i < npts; i++) {
+            xr[i] = Math.toRadians(AngleDiff.angle0to180(angles[start + i]));
+            y[i] = powers[start + i];
+        }
+
+        if (solve(npts)) {
+            writeNegativeCylinder((float) a[SPHERICAL], (float) a[CYLINDRICAL], (float) a[AXIS], out, o);
+        } else {
+            out[o + SPHERICAL] = Float.NaN;
+            out[o + CYLINDRICAL] = Float.NaN;
+            out[o + AXIS] = Float.NaN;
+        }
+    }
+
+    /**
+     * LM.solve specialized for AstigmaticLensFunction with unit sigmas and
+     * all parameters varying. Keeps the same operation order so results match.
+     */
+    private boolean solve(int npts) {
+        double lambda = LAMBDA;
+        double e0 = chiSquared(a, npts);
+
+        int iter = 0;
+        int term = 0;
+        boolean done = false;
+
+        do {
+            ++iter;
+
+            for (int k = 0; k < lu.length; k++) lu[k] = 0.;
+            for (int r = 0; r < NPARM; r++) g[r] = 0.;
+
+            double axisRad = Math.toRadians(a[AXIS]);
+            for (int i = 0; i < npts; i++) {
+                double diff = axisRad - xr[i];
+                double sin2 = Math.pow(Math.sin(diff), 2);
+                grad[SPHERICAL] = 1;
+                grad[CYLINDRICAL] = sin2;
+                grad[AXIS] = a[CYLINDRICAL] * Math.sin(2 * diff);
+
+                double residual = y[i] - (float) (a[SPHERICAL] + a[CYLINDRICAL] * sin2);
+
+                for (int r = 0; r < NPARM; r++) {
+                    for (int c = 0; c < NPARM; c++) {
+                        lu[r * NPARM + c] += grad[r] * grad[c];
+                    }
+                    g[r] += residual * grad[r];
+                }
+            }
+
+            // boost diagonal towards gradient descent
+            for (int r = 0; r < NPARM; r++)
+                lu[r * NPARM + r] *= (1. + lambda);
+
+            if (!luSolve()) return false;
+
+            for (int r = 0; r < NPARM; r++)
+                na[r] = a[r] + g[r];
+
+            double e1 = chiSquared(na, npts);
+
+            if (Math.abs(e1 - e0) > TERM_EPSILON) {
+                term = 0;
+            } else {
+                term++;
+                if (term == 4) {
+                    done = true;
+                }
+            }
+            if (iter >= MAX_ITER)
+                done = true;
+
+            if (e1 > e0 || Double.isNaN(e1)) {
+                lambda *= 10.;
+            } else {
+                lambda *= 0.1;
+                e0 = e1;
+                System.arraycopy(na, 0, a, 0, NPARM);
+            }
+
+        } while (!done);
+
+        return true;
+    }
+
+    private double chiSquared(double[] p, int npts) {
+        double axisRad = Math.toRadians(p[AXIS]);
+        double sum = 0.;
+        for (int i = 0; i < npts; i++) {
+            double d = y[i] - (float) (p[SPHERICAL] + p[CYLINDRICAL] * Math.pow(Math.sin(axisRad - xr[i]), 2));
+            sum = sum + (d * d);
+        }
+        return sum;
+    }
+
+    /**
+     * Solves lu * d = g in place (d ends up in g), with the same pivoting
+     * as jama.LUDecomposition.
+     */
+    private boolean luSolve() {
+        for (int i = 0; i < NPARM; i++) {
+            piv[i] = i;
+        }
+
+        for (int j = 0; j < NPARM; j++) {
+            for (int i = 0; i < NPARM; i++) {
+                luColJ[i] = lu[i * NPARM + j];
+            }
+
+            for (int i = 0; i < NPARM; i++) {
+                int kmax = Math.min(i, j);
+                double s = 0.0;
+                for (int k = 0; k < kmax; k++) {
+                    s += lu[i * NPARM + k] * luColJ[k];
+                }
+                lu[i * NPARM + j] = luColJ[i] -= s;
+            }
+
+            int p = j;
+            for (int i = j + 1; i < NPARM; i++) {
+                if (Math.abs(luColJ[i]) > Math.abs(luColJ[p])) {
+                    p = i;
+                }
+            }
+            if (p != j) {
+                for (int k = 0; k < NPARM; k++) {
+                    double t = lu[p * NPARM + k];
+                    lu[p * NPARM + k] = lu[j * NPARM + k];
+                    lu[j * NPARM + k] = t;
+                }
+                int k = piv[p];
+                piv[p] = piv[j];
+                piv[j] = k;
+            }
+
+            if (lu[j * NPARM + j] != 0.0) {
+                for (int i = j + 1; i < NPARM; i++) {
+                    lu[i * NPARM + j] /= lu[j * NPARM + j];
+                }
+            }
+        }
+
+        for (int j = 0; j < NPARM; j++) {
+            if (lu[j * NPARM + j] == 0) return false;
+        }
+
+        // permute the right hand side, using na as temporary storage
+        for (int i = 0; i < NPARM; i++) {
+            na[i] = g[piv[i]];
+        }
+        System.arraycopy(na, 0, g, 0, NPARM);
+
+        for (int k = 0; k < NPARM; k++) {
+            for (int i = k + 1; i < NPARM; i++) {
+                g[i] -= g[k] * lu[i * NPARM + k];
+            }
+        }
+        for (int k = NPARM - 1; k >= 0; k--) {
+            g[k] /= lu[k * NPARM + k];
+            for (int i = 0; i < k; i++) {
+                g[i] -= g[k] * lu[i * NPARM + k];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same normalization as AstigmaticLensParams.putInNegativeCilinder
+     */
+    private static void writeNegativeCylinder(float sphere, float cylinder, float axis, float[] out, int o) {
+        if (cylinder > 0.001) {
+            sphere = sphere + cylinder;
+            cylinder = -cylinder;
+            axis = axis + 90;
+        }
+        out[o + SPHERICAL] = sphere;
+        out[o + CYLINDRICAL] = cylinder;
+        out[o + AXIS] = AngleDiff.angle0to180(axis);
+    }
+
+}
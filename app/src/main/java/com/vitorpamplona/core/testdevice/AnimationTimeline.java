@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice;
+
+/**
+ * Advances every running animation of the test screen together, once per vsync, from the
+ * frame time given by the view. Animations join when they start and leave by themselves once
+ * they report they are done, so the view keeps asking for frames only while one is running.
+ *
+ * Times are in milliseconds on the System.nanoTime() base used by Choreographer.
+ */
+public class AnimationTimeline implements Clock {
+
+    public static final int MAX_ANIMATIONS = 8;
+
+    public interface Animation {
+        /**
+         * Moves the animation to the time of the frame about to be drawn.
+         *
+         * @return false once the animation has finished.
+         */
+        public boolean advance(long frameTimeMillis);
+    }
+
+    private final Animation[] active = new Animation[MAX_ANIMATIONS];
+    private int count;
+    private long frameTime;
+
+    private static class Holder {
+        private static final AnimationTimeline INSTANCE = new AnimationTimeline();
+    }
+
+    public static AnimationTimeline getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Adds an animation to the next frames. Adding a running animation again does nothing.
+     *
+     * @return false if there is no room left for it.
+     */
+    public synchronized boolean add(Animation animation) {
+        for (int i = 0; i < count; i++) {
+            if (active[i] == animation) return true;
+        }
+
+        if (count == MAX_ANIMATIONS) return false;
+
+        active[count++] = animation;
+        return true;
+    }
+
+    public synchronized void remove(Animation animation) {
+        for (int i = 0; i < count; i++) {
+            if (active[i] == animation) {
+                removeAt(i);
+                return;
+            }
+        }
+    }
+
+    private void removeAt(int i) {
+        active[i] = active[--count];
+        active[count] = null;
+    }
+
+    /**
+     * Advances all running animations to the given frame time. Frames coming back in time
+     * are taken as the last one.
+     *
+     * @return true while there is something left to animate.
+     */
+    public synchronized boolean tick(long frameTimeMillis) {
+        if (frameTimeMillis > frameTime) {
+            frameTime = frameTimeMillis;
+        }
+
+        for (int i = count - 1; i >= 0; i--) {
+            if (!active[i].advance(frameTime)) {
+                removeAt(i);
+            }
+        }
+
+        return count > 0;
+    }
+
+    public synchronized boolean isAnimating() {
+        return count > 0;
+    }
+
+    /**
+     * The time of the last frame drawn.
+     */
+    public synchronized long frameTime() {
+        return frameTime;
+    }
+
+    /**
+     * Live time, for animations that start between frames.
+     */
+    @Override
+    public long time() {
+        return System.nanoTime() / 1000000;
+    }
+}
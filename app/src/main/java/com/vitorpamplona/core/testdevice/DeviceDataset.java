@@ -29,8 +29,11 @@ import com.vitorpamplona.core.test.ComputePD;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DeviceDataset implements Serializable {
 
@@ -370,15 +373,48 @@ public class DeviceDataset implements Serializable {
 
     }};
 
+    // Profiles already resolved for an id. Devices are immutable, so everybody shares them.
+    private static final ConcurrentHashMap<Long, Device> RESOLVED = new ConcurrentHashMap<Long, Device>();
+
     public static Device get(long id) {
-        // DEVICE ranges are not uniform and there are 'holes'. In such cases, return the device of
-        // the last existing ID before the requested ID.
-        if (DEVICES.floorEntry(id) == null) return null;
-        Device baseModel = DEVICES.floorEntry(id).getValue();
-        if (baseModel == null) return null;
-        Device dynamicInstance = baseModel.clone();
-        dynamicInstance.id = id;
-        return dynamicInstance;
+        Device device = RESOLVED.get(id);
+        if (device != null) return device;
+
+        synchronized (DeviceDataset.class) {
+            // DEVICE ranges are not uniform and there are 'holes'. In such cases, return the device of
+            // the last existing ID before the requested ID.
+            Map.Entry<Long, Device> baseModel = DEVICES.floorEntry(id);
+            if (baseModel == null || baseModel.getValue() == null) return null;
+
+            device = baseModel.getValue().withId(id);
+            RESOLVED.put(id, device);
+            return device;
+        }
+    }
+
+    /**
+     * Adds or replaces profiles, for instance for a new hardware batch read from a data file.
+     * Each profile also answers for the ids after it, up to the next registered one.
+     */
+    public static void register(Collection<Device> devices) {
+        synchronized (DeviceDataset.class) {
+            for (Device d : devices) {
+                DEVICES.put(d.id, d);
+            }
+            RESOLVED.clear();
+        }
+    }
+
+    /**
+     * Removes profiles added with register. Their ids fall back to the profile before them.
+     */
+    public static void unregister(Collection<Long> ids) {
+        synchronized (DeviceDataset.class) {
+            for (Long id : ids) {
+                DEVICES.remove(id);
+            }
+            RESOLVED.clear();
+        }
     }
 
     public static class Device {
@@ -407,55 +443,56 @@ public class DeviceDataset implements Serializable {
         public static final int MASK_ROTATE_MANUAL_REQUIRE_ASK_SCREEN = 0;
         public static final int MASK_ROTATE_AUTO = 1;
 
-        public long id;
-        public String what;
-        public String model;
-        public String where;
-        public float tubeLength;
-        public float lensFocalLength;
-        public float lensEyeDistance;
-        public float angularSteps;
-        public float defaultPD;
-        public float defaultStartingPower;
-        public float highestPower;
-        public float lowestPower;
-        public Class viewToRun;
-        public int phoneOrientation;
-        public int pdTechnique;
-        public int accuracyTechnique;
-        public int eyesAtATimeTechnique;
-        public int rotationalInteraction;
-        public int pdRulerCenter;
-        public int movingAngles;
-        public boolean clearScreenBetweenAngles;
-        public float slitDistance;
-        public int deviceType;
-
-
-        public double meridianRadius;
-        public Point2D deltaMeridianFromCalibration;
-        public double meridianThickness;
-
-        public double scrollyRadius;
-        public Point2D deltaScrollyFromCalibration;
-        public double scrollyThickness;
-
-        public Point2D deltaPDRectTopLeftFromCalibration;
-        public Point2D deltaPDRectBottomRigthFromCalibration;
-
-        public Point2D calibrationRectTopLeft;
-        public Point2D calibrationRectBottomRight;
-
-        public int intensityThreshold;
-        public double distanceBetweenCalibrationMarks;
-
-        public double sliderCenterPerspectiveOffset;
-
-        public PreviewFrameSize previewFrameSize;
-
-        public CalibrationType calibrationType;
-
-        public float slitsLinesAlignmentDelta;
+        public final long id;
+        public final String what;
+        public final String model;
+        public final String where;
+        public final float tubeLength;
+        public final float lensFocalLength;
+        public final float lensEyeDistance;
+        public final float angularSteps;
+        public final float defaultPD;
+        public final float defaultStartingPower;
+        public final float highestPower;
+        public final float lowestPower;
+        // Not read from profile files: Gson can't create classes.
+        public final transient Class viewToRun;
+        public final int phoneOrientation;
+        public final int pdTechnique;
+        public final int accuracyTechnique;
+        public final int eyesAtATimeTechnique;
+        public final int rotationalInteraction;
+        public final int pdRulerCenter;
+        public final int movingAngles;
+        public final boolean clearScreenBetweenAngles;
+        public final float slitDistance;
+        public final int deviceType;
+
+
+        public final double meridianRadius;
+        public final Point2D deltaMeridianFromCalibration;
+        public final double meridianThickness;
+
+        public final double scrollyRadius;
+        public final Point2D deltaScrollyFromCalibration;
+        public final double scrollyThickness;
+
+        public final Point2D deltaPDRectTopLeftFromCalibration;
+        public final Point2D deltaPDRectBottomRigthFromCalibration;
+
+        public final Point2D calibrationRectTopLeft;
+        public final Point2D calibrationRectBottomRight;
+
+        public final int intensityThreshold;
+        public final double distanceBetweenCalibrationMarks;
+
+        public final double sliderCenterPerspectiveOffset;
+
+        public final PreviewFrameSize previewFrameSize;
+
+        public final CalibrationType calibrationType;
+
+        public final float slitsLinesAlignmentDelta;
 
         public Device(long id, String what, String model, String where,
                       float tubeLength, float lensFocalLength, float lensEyeDistance,
@@ -517,78 +554,39 @@ public class DeviceDataset implements Serializable {
                       int phoneOrientation, int pdMeasurement, int accuracyTechnique, int eyesAtATimeTechnique,
                       int pdRulerCenter, int movingAngles, boolean clearScreenBetweenAngles,
                       Class viewToRun, int deviceType, int rotationalInteraction) {
-            super();
-            this.id = id;
-            this.what = what;
-            this.model = model;
-            this.where = where;
-            this.tubeLength = tubeLength;
-            this.lensFocalLength = lensFocalLength;
-            this.lensEyeDistance = lensEyeDistance;
-            this.angularSteps = angularSteps;
-            this.defaultPD = defaultPD;
-            this.defaultStartingPower = defaultStartingPower;
-            this.viewToRun = viewToRun;
-            this.phoneOrientation = phoneOrientation;
-            this.pdTechnique = pdMeasurement;
-            this.pdRulerCenter = pdRulerCenter;
-            this.movingAngles = movingAngles;
-            this.clearScreenBetweenAngles = clearScreenBetweenAngles;
-            this.slitDistance = slitDistance;
-            this.deviceType = deviceType;
-            this.accuracyTechnique = accuracyTechnique;
-            this.eyesAtATimeTechnique = eyesAtATimeTechnique;
-            this.rotationalInteraction = rotationalInteraction;
-            this.lowestPower = lowestPower;
-            this.highestPower = highestPower;
+            this(id, what, model, where, tubeLength, lensFocalLength, lensEyeDistance,
+                    slitDistance, angularSteps, defaultPD, defaultStartingPower, highestPower, lowestPower,
+                    phoneOrientation, pdMeasurement, accuracyTechnique, eyesAtATimeTechnique,
+                    pdRulerCenter, movingAngles, clearScreenBetweenAngles,
+                    viewToRun, deviceType, rotationalInteraction, 0,
+                    null, 0, 0,
+                    null, 0,
+                    null, null,
+                    null, null, 0,
+                    0, null,
+                    0, null, 0);
         }
 
-        public Device clone() {
-            Device d = new Device();
-            d.id = id;
-            d.what = what;
-            d.model = model;
-            d.where = where;
-            d.tubeLength = tubeLength;
-            d.lensFocalLength = lensFocalLength;
-            d.lensEyeDistance = lensEyeDistance;
-            d.angularSteps = angularSteps;
-            d.defaultPD = defaultPD;
-            d.defaultStartingPower = defaultStartingPower;
-            d.viewToRun = viewToRun;
-            d.phoneOrientation = phoneOrientation;
-            d.pdTechnique = pdTechnique;
-            d.pdRulerCenter = pdRulerCenter;
-            d.movingAngles = movingAngles;
-            d.clearScreenBetweenAngles = clearScreenBetweenAngles;
-            d.slitDistance = slitDistance;
-            d.deviceType = deviceType;
-            d.accuracyTechnique = accuracyTechnique;
-            d.eyesAtATimeTechnique = eyesAtATimeTechnique;
-            d.rotationalInteraction = rotationalInteraction;
-            d.meridianRadius = meridianRadius;
-            d.deltaMeridianFromCalibration = deltaMeridianFromCalibration;
-            d.meridianThickness = meridianThickness;
-            d.scrollyRadius = scrollyRadius;
-            d.deltaScrollyFromCalibration = deltaScrollyFromCalibration;
-            d.scrollyThickness = scrollyThickness;
-            d.deltaPDRectTopLeftFromCalibration = deltaPDRectTopLeftFromCalibration;
-            d.deltaPDRectBottomRigthFromCalibration = deltaPDRectBottomRigthFromCalibration;
-            d.calibrationRectTopLeft = calibrationRectTopLeft;
-            d.calibrationRectBottomRight = calibrationRectBottomRight;
-            d.intensityThreshold = intensityThreshold;
-            d.distanceBetweenCalibrationMarks = distanceBetweenCalibrationMarks;
-            d.lowestPower = lowestPower;
-            d.highestPower = highestPower;
-            d.calibrationType = calibrationType;
-            d.sliderCenterPerspectiveOffset = sliderCenterPerspectiveOffset;
-            d.previewFrameSize = previewFrameSize;
-            d.slitsLinesAlignmentDelta = slitsLinesAlignmentDelta;
-            return d;
+        /**
+         * Same profile answering for another id of the same batch.
+         */
+        private Device(Device base, long id) {
+            this(id, base.what, base.model, base.where, base.tubeLength, base.lensFocalLength, base.lensEyeDistance,
+                    base.slitDistance, base.angularSteps, base.defaultPD, base.defaultStartingPower, base.highestPower, base.lowestPower,
+                    base.phoneOrientation, base.pdTechnique, base.accuracyTechnique, base.eyesAtATimeTechnique,
+                    base.pdRulerCenter, base.movingAngles, base.clearScreenBetweenAngles,
+                    base.viewToRun, base.deviceType, base.rotationalInteraction, base.meridianRadius,
+                    base.deltaMeridianFromCalibration, base.meridianThickness, base.scrollyRadius,
+                    base.deltaScrollyFromCalibration, base.scrollyThickness,
+                    base.deltaPDRectTopLeftFromCalibration, base.deltaPDRectBottomRigthFromCalibration,
+                    base.calibrationRectTopLeft, base.calibrationRectBottomRight, base.intensityThreshold,
+                    base.distanceBetweenCalibrationMarks, base.calibrationType,
+                    base.sliderCenterPerspectiveOffset, base.previewFrameSize, base.slitsLinesAlignmentDelta);
         }
 
-        private Device() {
-
+        public Device withId(long id) {
+            if (id == this.id) return this;
+            return new Device(this, id);
         }
 
         public String toString() {
@@ -652,11 +650,13 @@ public class DeviceDataset implements Serializable {
                 "Class" + "\t" +
                 "DeviceType" + "\n");
 
-        Long[] deviceIds = DEVICES.keySet().toArray(new Long[0]);
-        Arrays.sort(deviceIds);
+        synchronized (DeviceDataset.class) {
+            Long[] deviceIds = DEVICES.keySet().toArray(new Long[0]);
+            Arrays.sort(deviceIds);
 
-        for (Long id : deviceIds) {
-            builder.append(DEVICES.get(id).toString() + "\n");
+            for (Long id : deviceIds) {
+                builder.append(DEVICES.get(id).toString() + "\n");
+            }
         }
 
         return builder.toString();
@@ -27,9 +27,16 @@ package com.vitorpamplona.core.testdevice;
 
 import android.graphics.Rect;
 
+import com.vitorpamplona.core.utils.DeviceModelParser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
 
 public class DeviceModelSettings {
 
+    // Settings never change for a model, so each one is built only once.
+    private static final ConcurrentHashMap<String, DeviceModelSettings> CACHE = new ConcurrentHashMap<String, DeviceModelSettings>();
+
     private String calibrationScreenColor;
     private String componentVerificationScreenColor;
     private String butterflyColor;
@@ -54,6 +61,24 @@ public class DeviceModelSettings {
         selectSettings(deviceModel);
     }
 
+    public static DeviceModelSettings get(String deviceModel) {
+        DeviceModelSettings settings = CACHE.get(deviceModel);
+        if (settings == null) {
+            settings = new DeviceModelSettings(deviceModel);
+            DeviceModelSettings existing = CACHE.putIfAbsent(deviceModel, settings);
+            if (existing != null)
+                settings = existing;
+        }
+        return settings;
+    }
+
+    /**
+     * Settings for the phone this app is running on.
+     */
+    public static DeviceModelSettings current() {
+        return get(DeviceModelParser.getDeviceName());
+    }
+
     private void selectSettings(String deviceModel) {
 
         // 'shellID' is not used currently, but can be used to separate different future shells
@@ -152,6 +177,9 @@ public class DeviceModelSettings {
         return signalLevel;
     }
 
+    /**
+     * Shared between callers, do not change it.
+     */
     public Rect getYuvMaskBounds() {
         return yuvMaskBounds;
     }
@@ -28,7 +28,7 @@ package com.vitorpamplona.core.testdevice;
 
 import android.annotation.SuppressLint;
 
-public class FadeOutInModeSwitcher {
+public class FadeOutInModeSwitcher implements AnimationTimeline.Animation {
 
     long fadeInDuration;
     long fadeOutDuration;
@@ -38,6 +38,7 @@ public class FadeOutInModeSwitcher {
     int modeDirection;
 
     Clock clock = new SystemClock();
+    AnimationTimeline timeline;
 
     public FadeOutInModeSwitcher(long fadeOutDuration, long fadeInDuration, float startingAlpha) {
         super();
@@ -53,6 +54,14 @@ public class FadeOutInModeSwitcher {
         this.startingTime = clock.time() - fadeInDuration - fadeOutDuration;
     }
 
+    /**
+     * Lets the timeline advance the fade on every frame while it runs. Read the result with getAlpha().
+     */
+    public void setTimeline(AnimationTimeline timeline) {
+        setClock(timeline);
+        this.timeline = timeline;
+    }
+
     public void resetModeDirection() {
         if (currentAlpha < 0)
             modeDirection = 1;
@@ -61,39 +70,53 @@ public class FadeOutInModeSwitcher {
     }
 
     public void start() {
-        if (timeSinceAnimationStarted() >= fadeInFinishes()) {
-            startingTime = clock.time();
+        long now = clock.time();
+        if (now - startingTime >= fadeInFinishes()) {
+            startingTime = now;
             resetModeDirection();
         }
+        joinTimeline();
     }
 
     public void start(int towards) {
-        if (timeSinceAnimationStarted() >= fadeInFinishes()) {
-            startingTime = clock.time();
+        long now = clock.time();
+        if (now - startingTime >= fadeInFinishes()) {
+            startingTime = now;
             modeDirection = towards;
         } else if (modeDirection != towards) {
             // changing direction in the middle of an animation
-            computeAlpha();
+            computeAlpha(now);
 
             modeDirection = towards;
 
             if (needsFadingOut()) {
                 // remove the current state from the starting time so that the animation runs smoothly.
-                startingTime = (long) (clock.time() - ((1 - Math.abs(currentAlpha)) * fadeOutDuration));
+                startingTime = (long) (now - ((1 - Math.abs(currentAlpha)) * fadeOutDuration));
             } else {
                 // already faded out, so remove from time.
-                startingTime = (long) (clock.time() - fadeOutDuration);
+                startingTime = (long) (now - fadeOutDuration);
                 // now use the current state to remove time from the fade in process.
                 startingTime = startingTime - (long) (Math.abs(currentAlpha) * fadeInDuration);
             }
 
-            validateClockInThePast();
+            validateClockInThePast(now);
+        }
+        joinTimeline();
+    }
+
+    private void joinTimeline() {
+        if (timeline != null) {
+            timeline.add(this);
         }
     }
 
     public void validateClockInThePast() {
-        if (startingTime > clock.time()) {
-            startingTime = clock.time();
+        validateClockInThePast(clock.time());
+    }
+
+    private void validateClockInThePast(long now) {
+        if (startingTime > now) {
+            startingTime = now;
             System.out.println("Clock In The Future. ");
         }
     }
@@ -102,6 +125,25 @@ public class FadeOutInModeSwitcher {
         return clock.time() - startingTime;
     }
 
+    public boolean isAnimating() {
+        return timeSinceAnimationStarted() < fadeInFinishes();
+    }
+
+    /**
+     * The alpha of the last frame, as computed by advance() or computeAlpha().
+     */
+    public float getAlpha() {
+        return currentAlpha;
+    }
+
+    @Override
+    public boolean advance(long frameTimeMillis) {
+        // frames can be timed slightly before a start that happened in between them
+        long now = Math.max(frameTimeMillis, startingTime);
+        computeAlpha(now);
+        return now - startingTime < fadeInFinishes();
+    }
+
     public boolean needsFadingOut() {
         return (modeDirection > 0 && currentAlpha < 0
                 || modeDirection < 0 && currentAlpha > 0);
@@ -163,7 +205,11 @@ public class FadeOutInModeSwitcher {
      * @return
      */
     public float computeAlpha() {
-        long timeSinceStart = timeSinceAnimationStarted();
+        return computeAlpha(clock.time());
+    }
+
+    private float computeAlpha(long now) {
+        long timeSinceStart = now - startingTime;
 
         if (timeSinceStart <= fadeOutFinishes()) {
             currentAlpha = fadeOut(timeSinceStart);
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice;
+
+import com.vitorpamplona.core.utils.AngleDiff;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-capacity particle system with every attribute kept in its own array. Particles fly from
+ * a circle of START_DISTANCE towards the center, accelerating at every step, and are removed by
+ * swapping the last one into their slot.
+ *
+ * The arrays are only touched by the drawing thread. Other threads ask for new particles with
+ * requestSpawn() and those are created on the next step().
+ */
+public class ParticleSystem {
+
+    public static final float START_DISTANCE = 500f;
+    public static final float INITIAL_VELOCITY = 0.5f;
+    public static final float ACCELERATION = 1.002f;
+
+    public static final int PARTICLES_PER_SPAWN = 2;
+
+    private final int capacity;
+    private final int maxAliveToSpawn;
+    private final float maxRadius;
+    private final float innerLimit;
+
+    private final float[] x;
+    private final float[] y;
+    private final float[] dirX;
+    private final float[] dirY;
+    private final float[] velocity;
+    private final float[] initialSize;
+    private final float[] size;
+    private final float[] color;
+    private int count;
+
+    private final AtomicInteger spawnRequests = new AtomicInteger();
+    private final Random random = new Random();
+
+    /**
+     * @param capacity       how many particles can be alive at the same time
+     * @param maxAliveToSpawn spawn requests are ignored while more than this are alive
+     * @param maxRadius      the largest base size of a particle
+     * @param innerLimit     particles inside this square around the center are removed
+     */
+    public ParticleSystem(int capacity, int maxAliveToSpawn, float maxRadius, float innerLimit) {
+        this.capacity = capacity;
+        this.maxAliveToSpawn = maxAliveToSpawn;
+        this.maxRadius = maxRadius;
+        this.innerLimit = innerLimit;
+
+        x = new float[capacity];
+        y = new float[capacity];
+        dirX = new float[capacity];
+        dirY = new float[capacity];
+        velocity = new float[capacity];
+        initialSize = new float[capacity];
+        size = new float[capacity];
+        color = new float[capacity];
+    }
+
+    /**
+     * Can be called from any thread.
+     */
+    public void requestSpawn() {
+        spawnRequests.incrementAndGet();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public float x(int i) {
+        return x[i];
+    }
+
+    public float y(int i) {
+        return y[i];
+    }
+
+    public float radius(int i) {
+        return size[i];
+    }
+
+    public float color(int i) {
+        return color[i];
+    }
+
+    public float velocity(int i) {
+        return velocity[i];
+    }
+
+    public float distance(int i) {
+        return (float) Math.sqrt(x[i] * x[i] + y[i] * y[i]);
+    }
+
+    public void clear() {
+        count = 0;
+        spawnRequests.set(0);
+    }
+
+    /**
+     * Creates the requested particles and moves everybody by deltaTimeInMillis.
+     */
+    public void step(double deltaTimeInMillis) {
+        // Requests piled up while no frames were drawn only count once.
+        if (spawnRequests.getAndSet(0) > 0 && count <= maxAliveToSpawn) {
+            spawn(PARTICLES_PER_SPAWN, 0, 0);
+        }
+
+        double normalizedTime = deltaTimeInMillis / 10;
+
+        for (int i = 0; i < count; i++) {
+            velocity[i] = velocity[i] * ACCELERATION;
+
+            x[i] = (float) (x[i] + dirX[i] * velocity[i] * normalizedTime);
+            y[i] = (float) (y[i] + dirY[i] * velocity[i] * normalizedTime);
+
+            updateSize(i);
+        }
+
+        for (int i = count - 1; i >= 0; i--) {
+            if (isInside(i)) {
+                remove(i);
+            }
+        }
+    }
+
+    /**
+     * Places particles as if they had been spawned in batches every spawnEvery steps during the
+     * last steps, without running the steps.
+     */
+    public void warmUp(int steps, int spawnEvery, double stepInMillis) {
+        clear();
+
+        spawn(PARTICLES_PER_SPAWN, steps, stepInMillis);
+        for (int step = 0; step < steps; step += spawnEvery) {
+            spawn(PARTICLES_PER_SPAWN, steps - step - 1, stepInMillis);
+        }
+    }
+
+    /**
+     * Distance covered after the given number of steps: the velocity grows geometrically, so
+     * this is the sum v0 * a^1 + ... + v0 * a^steps.
+     */
+    public static double travelled(int steps, double stepInMillis) {
+        if (steps <= 0) return 0;
+
+        double normalizedTime = stepInMillis / 10;
+        return INITIAL_VELOCITY * ACCELERATION * (Math.pow(ACCELERATION, steps) - 1) / (ACCELERATION - 1) * normalizedTime;
+    }
+
+    /**
+     * Creates particles that have already made the given number of steps.
+     */
+    protected void spawn(int howMany, int steps, double stepInMillis) {
+        double distance = START_DISTANCE - travelled(steps, stepInMillis);
+        float v = (float) (INITIAL_VELOCITY * Math.pow(ACCELERATION, steps));
+
+        for (int n = 0; n < howMany && count < capacity; n++) {
+            int i = count;
+
+            double direction = randomLegalDirection();
+            double cos = Math.cos(direction);
+            double sin = Math.sin(direction);
+
+            x[i] = (float) (distance * cos);
+            y[i] = (float) (distance * sin);
+            dirX[i] = (float) -cos;
+            dirY[i] = (float) -sin;
+            velocity[i] = v;
+            color[i] = 1;
+
+            initialSize[i] = (float) (Math.pow(random.nextFloat(), 3) * maxRadius);
+            if (initialSize[i] < 1)
+                initialSize[i] = 1;
+
+            updateSize(i);
+
+            if (isInside(i)) continue;
+
+            count++;
+        }
+    }
+
+    protected double randomLegalDirection() {
+        double direction = 2 * Math.PI * random.nextDouble();
+
+        while (!isLegalDirectionInDegrees((float) Math.toDegrees(direction))) {
+            direction = 2 * Math.PI * random.nextDouble();
+        }
+
+        return direction;
+    }
+
+    /**
+     * Keeps particles away from the lines of the convergence cross.
+     */
+    public static boolean isLegalDirectionInDegrees(float degrees) {
+        return AngleDiff.diff180(degrees, 0) > 10
+                && AngleDiff.diff180(degrees, 45) > 10
+                && AngleDiff.diff180(degrees, 135) > 10;
+    }
+
+    private void updateSize(int i) {
+        // attaches x and y to depth;
+        size[i] = initialSize[i] * distance(i) / 200.f;
+    }
+
+    private boolean isInside(int i) {
+        return Math.abs(x[i]) < innerLimit && Math.abs(y[i]) < innerLimit;
+    }
+
+    private void remove(int i) {
+        int last = --count;
+        if (i == last) return;
+
+        x[i] = x[last];
+        y[i] = y[last];
+        dirX[i] = dirX[last];
+        dirY[i] = dirY[last];
+        velocity[i] = velocity[last];
+        initialSize[i] = initialSize[last];
+        size[i] = size[last];
+        color[i] = color[last];
+    }
+}
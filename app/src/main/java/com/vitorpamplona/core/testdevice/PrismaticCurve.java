@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice;
+
+/**
+ * PrismaticEffect sampled every STEP mm of PD, so the PD screens can read prism and shift
+ * with a linear interpolation instead of redoing the lens geometry on every camera frame.
+ * PDs outside the sampled range fall back to the exact equations.
+ */
+public class PrismaticCurve {
+
+    public static final float MIN_PD = 40; // mm
+    public static final float MAX_PD = 80; // mm
+    public static final float STEP = 0.1f; // mm
+
+    private final PrismaticEffect effect;
+
+    private final float[] prisms;
+    private final float[] shifts; // mm
+
+    public PrismaticCurve(PrismaticEffect effect) {
+        this.effect = effect;
+
+        int samples = Math.round((MAX_PD - MIN_PD) / STEP) + 1;
+        prisms = new float[samples];
+        shifts = new float[samples];
+
+        for (int i = 0; i < samples; i++) {
+            float pd = pdAt(i);
+            prisms[i] = effect.prism(pd);
+            shifts[i] = effect.testPrismShiftGiven(prisms[i], pd);
+        }
+    }
+
+    public float pdAt(int i) {
+        return MIN_PD + i * STEP;
+    }
+
+    public int size() {
+        return shifts.length;
+    }
+
+    public float prism(float pd) {
+        if (pd < MIN_PD || pd > MAX_PD)
+            return effect.prism(pd);
+
+        return interpolate(prisms, pd);
+    }
+
+    /**
+     * Same as PrismaticEffect.testPrismShift, in mm.
+     */
+    public float testPrismShift(float pd) {
+        if (pd < MIN_PD || pd > MAX_PD)
+            return effect.testPrismShift(pd);
+
+        return interpolate(shifts, pd);
+    }
+
+    /**
+     * Inverse of testPrismShift. The shift falls as the PD grows, so the samples are
+     * searched in decreasing order.
+     *
+     * @return the PD that produces the shift or NaN if it is outside the sampled range.
+     */
+    public float pdForShift(float shiftMM) {
+        int last = shifts.length - 1;
+        if (shiftMM > shifts[0] || shiftMM < shifts[last])
+            return Float.NaN;
+
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (shifts[mid] >= shiftMM)
+                low = mid;
+            else
+                high = mid;
+        }
+
+        float span = shifts[low] - shifts[high];
+        float fraction = span == 0 ? 0 : (shifts[low] - shiftMM) / span;
+        return pdAt(low) + fraction * STEP;
+    }
+
+    private float interpolate(float[] values, float pd) {
+        float position = (pd - MIN_PD) / STEP;
+        int i = (int) position;
+        if (i >= values.length - 1)
+            return values[values.length - 1];
+
+        float fraction = position - i;
+        return values[i] + fraction * (values[i + 1] - values[i]);
+    }
+}
@@ -33,6 +33,8 @@ public class PrismaticEffect {
     private float tubeLength; // mm
     private float DEFAULT_BIAS = 1.60f;
 
+    private PrismaticCurve curve;
+
     public PrismaticEffect(float tubeLength, float lensFocalLength, float devicePD) {
         this.tubeLength = tubeLength;
         this.centralLensFocalLength = lensFocalLength;
@@ -80,4 +82,13 @@ public class PrismaticEffect {
         return (prism / 100) * (tubeLength - localFocalLength(pd));
     }
 
+    /**
+     * The sampled version of this effect, built on first use.
+     */
+    public synchronized PrismaticCurve curve() {
+        if (curve == null)
+            curve = new PrismaticCurve(this);
+        return curve;
+    }
+
 }
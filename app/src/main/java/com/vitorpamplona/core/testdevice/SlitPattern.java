@@ -25,6 +25,9 @@
  */
 package com.vitorpamplona.core.testdevice;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class SlitPattern {
 
     //Default values
@@ -43,6 +46,9 @@ public class SlitPattern {
 
     public RequiredCorrection mEstimator; //Estimator to take Pairs and return diopters
 
+    // Per-angle step tables for the current device, dropped on init.
+    protected final Map<Float, SlitPowerTable> mPowerTables = new HashMap<Float, SlitPowerTable>();
+
     public SlitPattern(float dpi) {
         mSelectedPair = null;
         init(dpi);
@@ -75,6 +81,7 @@ public class SlitPattern {
         mDotPitchInTheMaskat90 = dotsPerMMat90 * slitRadius;
 
         mSelectedPair = null;
+        mPowerTables.clear();
     }
 
     //Set the test for a specific angle
@@ -179,6 +186,28 @@ public class SlitPattern {
             return;
         }
 
+        SlitPowerTable table = getPowerTable();
+        int step = table.nearest(diopters, presc);
+
+        if (step >= 0) {
+            table.apply(step, getWorkingPair());
+        } else {
+            walkToGivenValue(diopters, presc);
+        }
+    }
+
+    public SlitPowerTable getPowerTable() {
+        Float angle = mSelectedPair.angle;
+        SlitPowerTable table = mPowerTables.get(angle);
+        if (table == null) {
+            table = new SlitPowerTable(mSelectedPair, mEstimator);
+            mPowerTables.put(angle, table);
+        }
+        return table;
+    }
+
+    //Pixel by pixel search, for targets out of the table
+    protected void walkToGivenValue(float diopters, float presc) {
         if (diopters - presc < 0) {
             while (diopters - presc < 0) {
                 reducePitch();
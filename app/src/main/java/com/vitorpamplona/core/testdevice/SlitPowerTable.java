@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice;
+
+/**
+ * Diopters and line positions for every whole pixel step of one slit pair,
+ * from the closest to the farthest pitch the optics can express. Built once
+ * per device and angle by stepping a copy of the pair exactly like
+ * SlitPattern does, so a lookup lands on the same positions and powers a
+ * step-by-step walk would reach.
+ *
+ * Each side stops where the power stops moving monotonically, goes past
+ * MAX_DIOPTERS or reaches MAX_STEPS, so powers are sorted along the table.
+ */
+public class SlitPowerTable {
+
+    public static final float MAX_DIOPTERS = 40;
+    public static final int MAX_STEPS = 1000;
+
+    protected final float[] mPowers;
+    protected final float[] mP1x;
+    protected final float[] mP1y;
+    protected final float[] mP2x;
+    protected final float[] mP2y;
+    protected final int mSize;
+    protected final boolean mAscending;
+
+    public SlitPowerTable(Pair pair, RequiredCorrection estimator) {
+        int capacity = 2 * MAX_STEPS + 1;
+        mPowers = new float[capacity];
+        mP1x = new float[capacity];
+        mP1y = new float[capacity];
+        mP2x = new float[capacity];
+        mP2y = new float[capacity];
+
+        Pair work = new Pair(pair);
+        work.reset();
+        float origin = estimator.computeDiopters(work);
+
+        // Reducing the pitch first, written backwards from the middle.
+        float[] reduced = new float[MAX_STEPS];
+        float[] reducedPos = new float[MAX_STEPS * 4];
+        int nReduced = 0;
+
+        work.increaseDotPitch();
+        float up = estimator.computeDiopters(work);
+        mAscending = up > origin;
+        work.reset();
+
+        float last = origin;
+        while (nReduced < MAX_STEPS) {
+            work.reduceDotPitch();
+            float p = estimator.computeDiopters(work);
+            if (!inRange(p) || (mAscending ? p >= last : p <= last)) break;
+            reduced[nReduced] = p;
+            reducedPos[nReduced * 4] = work.p1.x;
+            reducedPos[nReduced * 4 + 1] = work.p1.y;
+            reducedPos[nReduced * 4 + 2] = work.p2.x;
+            reducedPos[nReduced * 4 + 3] = work.p2.y;
+            nReduced++;
+            last = p;
+        }
+
+        int n = 0;
+        for (int i = nReduced - 1; i >= 0; i--) {
+            set(n++, reduced[i], reducedPos[i * 4], reducedPos[i * 4 + 1], reducedPos[i * 4 + 2], reducedPos[i * 4 + 3]);
+        }
+
+        work.reset();
+        set(n++, origin, work.p1.x, work.p1.y, work.p2.x, work.p2.y);
+
+        last = origin;
+        for (int steps = 0; steps < MAX_STEPS; steps++) {
+            work.increaseDotPitch();
+            float p = estimator.computeDiopters(work);
+            if (!inRange(p) || (mAscending ? p <= last : p >= last)) break;
+            set(n++, p, work.p1.x, work.p1.y, work.p2.x, work.p2.y);
+            last = p;
+        }
+
+        mSize = n;
+    }
+
+    private static boolean inRange(float p) {
+        return !Float.isNaN(p) && !Float.isInfinite(p) && Math.abs(p) <= MAX_DIOPTERS;
+    }
+
+    private void set(int i, float power, float p1x, float p1y, float p2x, float p2y) {
+        mPowers[i] = power;
+        mP1x[i] = p1x;
+        mP1y[i] = p1y;
+        mP2x[i] = p2x;
+        mP2y[i] = p2y;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public float power(int i) {
+        return mPowers[i];
+    }
+
+    /**
+     * Index of the step closest to the target, or -1 if the target is
+     * outside the table. On a tie it takes the step past the target, seen
+     * from the current power, like the walk in SlitPattern.
+     */
+    public int nearest(float diopters, float current) {
+        // first index whose power is at or past the target in table order
+        int lo = 0;
+        int hi = mSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mAscending ? mPowers[mid] < diopters : mPowers[mid] > diopters) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        if (lo == 0) {
+            return mPowers[0] == diopters ? 0 : -1;
+        }
+        if (lo == mSize) {
+            return -1;
+        }
+
+        int before = lo - 1;
+        float diffBefore = Math.abs(mPowers[before] - diopters);
+        float diffAfter = Math.abs(mPowers[lo] - diopters);
+
+        if (diffBefore < diffAfter) return before;
+        if (diffAfter < diffBefore) return lo;
+
+        boolean comingFromBelow = mAscending ? current < diopters : current > diopters;
+        return comingFromBelow ? lo : before;
+    }
+
+    public void apply(int i, Pair pair) {
+        pair.p1.x = mP1x[i];
+        pair.p1.y = mP1y[i];
+        pair.p2.x = mP2x[i];
+        pair.p2.y = mP2y[i];
+    }
+}
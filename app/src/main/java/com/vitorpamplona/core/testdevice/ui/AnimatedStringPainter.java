@@ -31,55 +31,104 @@ import android.graphics.Paint;
 import android.graphics.Paint.Style;
 import android.graphics.Rect;
 
+import com.vitorpamplona.core.testdevice.AnimationTimeline;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.Pair;
 
-public class AnimatedStringPainter implements CanvasPainter {
+/**
+ * A big number that flies in and shrinks while it is on screen. It moves with the
+ * AnimationTimeline instead of once per paint, so both eyes and every redraw of the same
+ * frame see the same position.
+ */
+public class AnimatedStringPainter implements CanvasPainter, AnimatedPainter, AnimationTimeline.Animation {
 
     protected static float TEXT_SIZE = 1024;
+    protected static final float FRAME_MS = 1000 / 60f; // the animation was tuned per 60fps frame
+
+    protected AnimationTimeline mTimeline = AnimationTimeline.getInstance();
 
     protected Paint mPaint = new Paint();
-    protected Rect mRect = new Rect();
+    protected Rect mRect = new Rect(); // bounds at TEXT_SIZE
     protected String mString = "";
+    protected long mDuration;
+
+    private volatile boolean running;
+    private long startTime = -1;
     private float dy = -3;
     private float dz = 1;
 
-    public AnimatedStringPainter(String string) {
-        mString = string;
+    public AnimatedStringPainter(String string, long durationMillis) {
+        mDuration = durationMillis;
         mPaint.setColor(Color.BLUE);
         mPaint.setStyle(Style.FILL);
+        setString(string);
+    }
+
+    protected void setString(String string) {
+        mString = string;
         mPaint.setTextSize(TEXT_SIZE);
         mPaint.getTextBounds(mString, 0, mString.length(), mRect);
     }
 
+    /**
+     * Shows a new string from the next frame on. Can be called from any thread.
+     */
+    public void start(String string) {
+        synchronized (this) {
+            setString(string);
+            startTime = -1;
+            dy = -3;
+            dz = 1;
+            running = true;
+        }
+        // outside of our lock: the timeline calls advance() while holding its own
+        mTimeline.add(this);
+    }
+
     @Override
-    public boolean paint(Canvas canvas, Device device, boolean testingRightEye, Pair workingPair, float middleX, float testY, float idleY, float alpha) {
-        mPaint.setColor(Color.argb((int) (alpha * 255), 0, 0, 255));
+    public boolean isAnimating() {
+        return running;
+    }
 
-        paintString(canvas, testY, middleX, dy);
-        paintString(canvas, idleY, middleX, -dy);
+    @Override
+    public synchronized boolean advance(long frameTimeMillis) {
+        if (startTime < 0) {
+            startTime = frameTimeMillis;
+        }
 
-        dz *= 0.987;
-        dy += 0.3;
+        long elapsed = frameTimeMillis - startTime;
+        float frames = elapsed / FRAME_MS;
 
-        if (dy > 1) {
-            dy = 1f;
-        }
+        dz = (float) Math.pow(0.987, frames);
+        dy = Math.min(-3 + 0.3f * frames, 1f);
 
-        return true;
+        running = elapsed < mDuration;
+        return running;
     }
 
-    public void paintString(Canvas canvas, float centerX, float centerY, float dy) {
+    @Override
+    public synchronized boolean paint(Canvas canvas, Device device, boolean testingRightEye, Pair workingPair, float middleX, float testY, float idleY, float alpha) {
+        mPaint.setColor(Color.argb((int) (alpha * 255), 0, 0, 255));
         mPaint.setTextSize(TEXT_SIZE * dz);
-        mPaint.getTextBounds(mString, 0, mString.length(), mRect);
 
+        // bounds scale with the text size
+        float x = -(mRect.right - mRect.left) * dz / 2f;
+        float y = (mRect.bottom - mRect.top) * dz / 2f;
+
+        paintString(canvas, testY, middleX, x - dy, y);
+        paintString(canvas, idleY, middleX, x + dy, y);
+
+        return true;
+    }
+
+    public void paintString(Canvas canvas, float centerX, float centerY, float x, float y) {
         canvas.save();
         canvas.translate(centerX, centerY);
 
         // Draws 3 times to compensate for hardware bug that does not draw the letter.
-        canvas.drawText(mString, -(mRect.right - mRect.left) / 2f - dy, (mRect.bottom - mRect.top) / 2f, mPaint);
-        canvas.drawText(mString, -(mRect.right - mRect.left) / 2f - dy, (mRect.bottom - mRect.top) / 2f, mPaint);
-        canvas.drawText(mString, -(mRect.right - mRect.left) / 2f - dy, (mRect.bottom - mRect.top) / 2f, mPaint);
+        canvas.drawText(mString, x, y, mPaint);
+        canvas.drawText(mString, x, y, mPaint);
+        canvas.drawText(mString, x, y, mPaint);
 
         canvas.restore();
     }
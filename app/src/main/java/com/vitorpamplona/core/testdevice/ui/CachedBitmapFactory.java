@@ -28,14 +28,31 @@ package com.vitorpamplona.core.testdevice.ui;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.util.Log;
 import android.util.LruCache;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shared cache of decoded resources. Each entry is keyed by resource, requested size and config,
+ * so a painter can ask for the exact variant it draws instead of scaling a full-resolution
+ * bitmap every frame. Safe to use from any thread.
+ */
 public class CachedBitmapFactory {
 
-    private static CachedBitmapFactory factory;
-    private static Resources resources;
+    private static final String TAG = "CachedBitmapFactory";
+
+    private static volatile Resources resources;
+
+    private final LruCache<Key, Bitmap> bitmaps;
+
+    // Only one decode at a time, so a preload and a painter never decode the same bitmap twice.
+    private final Object decodeLock = new Object();
 
-    private LruCache<Integer, Bitmap> bitmaps;
+    private ExecutorService preloader;
 
     // Get max available VM memory, exceeding this amount will throw an
     // OutOfMemory exception. Stored in kilobytes as LruCache takes an
@@ -46,21 +63,22 @@ public class CachedBitmapFactory {
     final int cacheSize = maxMemory / 8;
 
     private CachedBitmapFactory() {
-        bitmaps = new LruCache<Integer, Bitmap>(cacheSize) {
+        bitmaps = new LruCache<Key, Bitmap>(cacheSize) {
             @Override
-            protected int sizeOf(Integer key, Bitmap bitmap) {
+            protected int sizeOf(Key key, Bitmap bitmap) {
                 // The cache size will be measured in kilobytes rather than
                 // number of items.
-                return bitmap.getByteCount() / 1024;
+                return Math.max(1, bitmap.getByteCount() / 1024);
             }
         };
     }
 
+    private static class Holder {
+        private static final CachedBitmapFactory INSTANCE = new CachedBitmapFactory();
+    }
+
     public static CachedBitmapFactory getInstance() {
-        if (factory == null) {
-            factory = new CachedBitmapFactory();
-        }
-        return factory;
+        return Holder.INSTANCE;
     }
 
     public Bitmap decodeResource(int name) {
@@ -68,16 +86,145 @@ public class CachedBitmapFactory {
     }
 
     public Bitmap decodeResource(Resources r, int name) {
-        Bitmap ret = bitmaps.get(name);
-        if (ret == null) {
-            ret = BitmapFactory.decodeResource(r, name);
-            bitmaps.put(name, ret);
+        return decodeResource(r, name, 0, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * @param width  the size the bitmap will be drawn at, or 0 to keep the density-scaled size
+     * @param height the size the bitmap will be drawn at, or 0 to keep the density-scaled size
+     * @param config RGB_565 for opaque images and ALPHA_8 for masks drawn with the paint color
+     */
+    public Bitmap decodeResource(Resources r, int name, int width, int height, Bitmap.Config config) {
+        Key key = new Key(name, width, height, config);
+
+        Bitmap ret = bitmaps.get(key);
+        if (ret != null) return ret;
+
+        synchronized (decodeLock) {
+            ret = bitmaps.get(key);
+            if (ret == null) {
+                ret = decode(r, key);
+                if (ret != null)
+                    bitmaps.put(key, ret);
+            }
         }
         return ret;
     }
 
+    /**
+     * Decodes the variant in the background so the first frame that needs it finds it ready.
+     */
+    public void preloadAsync(final Resources r, final int name, final int width, final int height, final Bitmap.Config config) {
+        getPreloader().execute(new Runnable() {
+            @Override
+            public void run() {
+                decodeResource(r, name, width, height, config);
+            }
+        });
+    }
+
+    private synchronized ExecutorService getPreloader() {
+        if (preloader == null) {
+            preloader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, TAG + "-preloader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return preloader;
+    }
+
+    protected Bitmap decode(Resources r, Key key) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        // Masks are decoded in full color and reduced to their alpha channel below.
+        options.inPreferredConfig = key.config == Bitmap.Config.ALPHA_8 ? Bitmap.Config.ARGB_8888 : key.config;
+
+        Bitmap bitmap;
+        if (key.width > 0 && key.height > 0) {
+            options.inScaled = false;
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(r, key.name, options);
+
+            options.inSampleSize = sampleSize(options.outWidth, options.outHeight, key.width, key.height);
+            options.inJustDecodeBounds = false;
+            bitmap = BitmapFactory.decodeResource(r, key.name, options);
+
+            if (bitmap != null && (bitmap.getWidth() != key.width || bitmap.getHeight() != key.height)) {
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, key.width, key.height, true);
+                if (scaled != bitmap) bitmap.recycle();
+                bitmap = scaled;
+            }
+        } else {
+            bitmap = BitmapFactory.decodeResource(r, key.name, options);
+        }
+
+        if (bitmap == null) {
+            Log.e(TAG, "Could not decode resource " + key.name);
+            return null;
+        }
+
+        if (key.config == Bitmap.Config.ALPHA_8 && bitmap.getConfig() != Bitmap.Config.ALPHA_8) {
+            Bitmap alpha = bitmap.extractAlpha();
+            bitmap.recycle();
+            bitmap = alpha;
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Largest power of two that still keeps the decoded image at least as big as requested.
+     */
+    public static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
     public static void setResources(Resources r) {
         resources = r;
     }
 
+    protected static final class Key {
+        final int name;
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+
+        Key(int name, int width, int height, Bitmap.Config config) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return name == other.name && width == other.width && height == other.height && config == other.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = name;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + (config != null ? config.hashCode() : 0);
+            return result;
+        }
+    }
 }
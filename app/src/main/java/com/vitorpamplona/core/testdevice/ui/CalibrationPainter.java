@@ -31,15 +31,13 @@ import android.graphics.Color;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.DeviceModelSettings;
 import com.vitorpamplona.core.testdevice.Pair;
-import com.vitorpamplona.core.utils.DeviceModelParser;
 
 public class CalibrationPainter implements CanvasPainter {
 
     @Override
     public boolean paint(Canvas canvas, Device device, boolean testingRightEye, Pair workingPair, float middleX, float testY, float idleY, float alpha) {
 
-        String nameOfDevice = DeviceModelParser.getDeviceName();
-        String color = new DeviceModelSettings(nameOfDevice).getCalibrationScreenColor();
+        String color = DeviceModelSettings.current().getCalibrationScreenColor();
         canvas.drawColor(Color.parseColor(color));
 
         return true;
@@ -35,7 +35,6 @@ import android.graphics.RectF;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.DeviceModelSettings;
 import com.vitorpamplona.core.testdevice.Pair;
-import com.vitorpamplona.core.utils.DeviceModelParser;
 
 import java.util.StringTokenizer;
 
@@ -70,8 +69,7 @@ public class PlayIconPainter implements CanvasPainter {
     @Override
     public boolean paint(Canvas canvas, Device device, boolean testingRightEye, Pair workingPair, float middleX, float testY, float idleY, float alpha) {
 
-        String nameOfDevice = DeviceModelParser.getDeviceName();
-        DeviceModelSettings colors = new DeviceModelSettings(nameOfDevice);
+        DeviceModelSettings colors = DeviceModelSettings.current();
         String colorBackground = colors.getComponentVerificationScreenColor();
         String colorPlayIcon = colors.getPlayIconColor();
 
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+/**
+ * Fixed size telemetry of the exam rendering: how long each painter takes to draw and how far
+ * apart consecutive animation frames land, in histograms with fixed buckets. Nothing is
+ * allocated while recording; strings are only built when the metrics are displayed or exported.
+ */
+public class RenderingMetrics {
+
+    public static final long FRAME_NANOS = 16666667L; // 60 fps vsync
+    public static final int MAX_PAINTERS = 8;
+
+    // Upper bound of each bucket in ms. The last bucket takes everything above.
+    public static final int[] BUCKETS_MS = {2, 4, 8, 12, 16, 24, 33, 50, 100};
+
+    public static class Histogram {
+        private final int[] counts = new int[BUCKETS_MS.length + 1];
+        private int samples;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos) {
+            int bucket = 0;
+            while (bucket < BUCKETS_MS.length && nanos > BUCKETS_MS[bucket] * 1000000L) {
+                bucket++;
+            }
+            counts[bucket]++;
+            samples++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = 0;
+            }
+            samples = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+
+        /**
+         * @param bucket index in BUCKETS_MS, or BUCKETS_MS.length for the overflow bucket
+         */
+        public int count(int bucket) {
+            return counts[bucket];
+        }
+
+        public int buckets() {
+            return counts.length;
+        }
+
+        public int samples() {
+            return samples;
+        }
+
+        public float averageMs() {
+            return samples == 0 ? 0 : totalNanos / (float) samples / 1000000f;
+        }
+
+        public float maxMs() {
+            return maxNanos / 1000000f;
+        }
+
+        public String format() {
+            return String.format("avg %.1fms max %.1fms n=%d", averageMs(), maxMs(), samples);
+        }
+    }
+
+    private final Histogram frameIntervals = new Histogram();
+    private int jankyFrames;
+    private int missedVsyncs;
+
+    private final Class<?>[] painters = new Class<?>[MAX_PAINTERS];
+    private final Histogram[] paintTimes = new Histogram[MAX_PAINTERS];
+    private int painterCount;
+
+    private static class Holder {
+        private static final RenderingMetrics INSTANCE = new RenderingMetrics();
+    }
+
+    public static RenderingMetrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public RenderingMetrics() {
+        for (int i = 0; i < MAX_PAINTERS; i++) {
+            paintTimes[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Time between two frames of the same animation. Anything longer than a vsync and a half
+     * missed at least one deadline.
+     */
+    public synchronized void recordFrameInterval(long nanos) {
+        if (nanos <= 0) return;
+
+        frameIntervals.add(nanos);
+
+        long missed = (nanos + FRAME_NANOS / 2) / FRAME_NANOS - 1;
+        if (missed > 0) {
+            jankyFrames++;
+            missedVsyncs += missed;
+        }
+    }
+
+    /**
+     * Painters beyond MAX_PAINTERS are not tracked.
+     */
+    public synchronized void recordPaint(Object painter, long nanos) {
+        Class<?> type = painter.getClass();
+
+        for (int i = 0; i < painterCount; i++) {
+            if (painters[i] == type) {
+                paintTimes[i].add(nanos);
+                return;
+            }
+        }
+
+        if (painterCount < MAX_PAINTERS) {
+            painters[painterCount] = type;
+            paintTimes[painterCount].add(nanos);
+            painterCount++;
+        }
+    }
+
+    public synchronized Histogram frameIntervals() {
+        return frameIntervals;
+    }
+
+    public synchronized int jankyFrames() {
+        return jankyFrames;
+    }
+
+    public synchronized int missedVsyncs() {
+        return missedVsyncs;
+    }
+
+    public synchronized int painterCount() {
+        return painterCount;
+    }
+
+    public synchronized String painterName(int i) {
+        return painters[i].getSimpleName();
+    }
+
+    public synchronized Histogram paintTime(int i) {
+        return paintTimes[i];
+    }
+
+    public synchronized String formatFrames() {
+        return "Frames: " + frameIntervals.format() + " janky " + jankyFrames + " missed " + missedVsyncs;
+    }
+
+    public synchronized String formatPainter(int i) {
+        return painters[i].getSimpleName() + ": " + paintTimes[i].format();
+    }
+
+    public synchronized void reset() {
+        frameIntervals.reset();
+        jankyFrames = 0;
+        missedVsyncs = 0;
+        for (int i = 0; i < MAX_PAINTERS; i++) {
+            painters[i] = null;
+            paintTimes[i].reset();
+        }
+        painterCount = 0;
+    }
+}
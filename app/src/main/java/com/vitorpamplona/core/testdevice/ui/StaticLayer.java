@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+
+import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+
+/**
+ * Keeps the parts of a painter that never move between frames recorded into a Picture.
+ * The recording is drawn centered on the current canvas origin and is only redone when
+ * the device, the display DPI, the eye or the size changes.
+ *
+ * Hardware canvases before Marshmallow cannot play pictures back, so there the recorder
+ * simply draws straight into the canvas as it used to.
+ */
+public class StaticLayer {
+
+    public interface Recorder {
+        /**
+         * Draws the static geometry around (0,0).
+         *
+         * @param size the size the caller would have used to draw it directly
+         */
+        void record(Canvas canvas, float size);
+    }
+
+    private final Recorder recorder;
+
+    private Picture picture;
+    private int halfExtent;
+
+    private long deviceId;
+    private float displayDPI;
+    private boolean rightEye;
+    private float size;
+
+    public StaticLayer(Recorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Draws a layer that looks the same for both eyes.
+     */
+    public void draw(Canvas canvas, Device device, float displayDPI, float size, float extent) {
+        draw(canvas, device, displayDPI, false, size, extent);
+    }
+
+    /**
+     * @param extent how far from the origin the recorder may draw, in pixels.
+     */
+    public void draw(Canvas canvas, Device device, float displayDPI, boolean rightEye, float size, float extent) {
+        if (!canPlayPictures(canvas)) {
+            recorder.record(canvas, size);
+            return;
+        }
+
+        long id = device == null ? -1 : device.id;
+        if (picture == null
+                || this.halfExtent != (int) Math.ceil(extent)
+                || this.deviceId != id
+                || this.displayDPI != displayDPI
+                || this.rightEye != rightEye
+                || this.size != size) {
+            record(size, extent);
+            this.deviceId = id;
+            this.displayDPI = displayDPI;
+            this.rightEye = rightEye;
+            this.size = size;
+        }
+
+        canvas.save();
+        canvas.translate(-halfExtent, -halfExtent);
+        canvas.drawPicture(picture);
+        canvas.restore();
+    }
+
+    public void invalidate() {
+        picture = null;
+    }
+
+    private void record(float size, float extent) {
+        halfExtent = (int) Math.ceil(extent);
+
+        Picture p = new Picture();
+        Canvas recording = p.beginRecording(2 * halfExtent, 2 * halfExtent);
+        recording.translate(halfExtent, halfExtent);
+        recorder.record(recording, size);
+        p.endRecording();
+
+        picture = p;
+    }
+
+    protected boolean canPlayPictures(Canvas canvas) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M || !canvas.isHardwareAccelerated();
+    }
+}
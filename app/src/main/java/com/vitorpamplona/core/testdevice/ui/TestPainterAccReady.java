@@ -35,7 +35,7 @@ import com.vitorpamplona.core.testdevice.ui.convergence.ConvergenceLockPainter;
 import com.vitorpamplona.core.testdevice.ui.lines.GunLinesPainterAccReady;
 
 
-public class TestPainterAccReady implements CanvasPainter, ITestPainter {
+public class TestPainterAccReady implements CanvasPainter, ITestPainter, AnimatedPainter {
     protected final Paint mPaint = new Paint();
 
     protected ConvergenceLockPainter convergenceLockPainter;
@@ -50,10 +50,19 @@ public class TestPainterAccReady implements CanvasPainter, ITestPainter {
                          float testY, float idleY, float alpha) {
         if (device == null || canvas == null) return false;
 
-        if (convergenceLockPainter != null)
+        RenderingMetrics metrics = RenderingMetrics.getInstance();
+        long start = System.nanoTime();
+
+        if (convergenceLockPainter != null) {
             convergenceLockPainter.paint(canvas, device, testingRightEye, workingPair, middleX, testY, idleY, Math.abs(alpha));
-        if (lineAlignerPainter != null)
+            long end = System.nanoTime();
+            metrics.recordPaint(convergenceLockPainter, end - start);
+            start = end;
+        }
+        if (lineAlignerPainter != null) {
             lineAlignerPainter.paint(canvas, device, testingRightEye, workingPair, middleX, testY, idleY, Math.abs(alpha));
+            metrics.recordPaint(lineAlignerPainter, System.nanoTime() - start);
+        }
 
         return true;
     }
@@ -93,5 +102,11 @@ public class TestPainterAccReady implements CanvasPainter, ITestPainter {
         convergenceLockPainter.startCreatingParticles();
     }
 
+    @Override
+    public boolean isAnimating() {
+        return convergenceLockPainter.isAnimating()
+                || (lineAlignerPainter instanceof AnimatedPainter && ((AnimatedPainter) lineAlignerPainter).isAnimating());
+    }
+
 
 }
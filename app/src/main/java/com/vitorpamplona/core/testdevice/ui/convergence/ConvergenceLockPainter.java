@@ -37,26 +37,30 @@ import android.os.Handler;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.DeviceModelSettings;
 import com.vitorpamplona.core.testdevice.Pair;
-import com.vitorpamplona.core.testdevice.Particle;
+import com.vitorpamplona.core.testdevice.ParticleSystem;
+import com.vitorpamplona.core.testdevice.ui.AnimatedPainter;
 import com.vitorpamplona.core.testdevice.ui.CachedBitmapFactory;
 import com.vitorpamplona.core.testdevice.ui.CanvasPainter;
-import com.vitorpamplona.core.utils.DeviceModelParser;
+import com.vitorpamplona.core.testdevice.ui.StaticLayer;
 import com.vitorpamplona.netra.R;
 
-import java.util.ArrayList;
-import java.util.List;
 
-
-public class ConvergenceLockPainter implements CanvasPainter {
+public class ConvergenceLockPainter implements CanvasPainter, AnimatedPainter {
 
     protected final Paint mPaint = new Paint();
+    protected final Paint mLayerPaint = new Paint();
+    protected final RectF mRectF = new RectF();
 
     protected static final int CREATE_NEW_PARTICLES_AT_EVERY = 500; // ms
 
-    protected List<Particle> mParticleList = new ArrayList<Particle>();
-    protected List<Particle> mRecycleList = new ArrayList<Particle>();
+    protected static final int MAX_PARTICLES = 64;
+    protected static final int STOP_SPAWNING_ABOVE = 50;
+
+    protected ParticleSystem mParticles;
+    private volatile boolean creatingParticles = false;
+    // false while the last frame drew the particles fully transparent
+    private volatile boolean particlesVisible = true;
 
-    protected static final float PARTICLE_SYSTEM_OUTER_LIMIT = 500f;
     protected static final float PARTICLE_SYSTEM_INNER_LIMIT = 30f;
     protected static final float PARTICLE_SYSTEM_START_FADING_AWAY = 440f;
     protected static final float RADIUS_OF_PARTICLES = 2; // mm
@@ -64,26 +68,60 @@ public class ConvergenceLockPainter implements CanvasPainter {
     protected static final float ALIGNMENT_CIRCLE_THICKNESS_MM = 2f;
     protected static final float ALIGNMENT_CIRCLE_RADIUS_MM = 8.0f;
 
+    // The mask is plain black with a gaussian alpha, so only the alpha channel is kept.
+    protected static final Bitmap.Config MASK_CONFIG = Bitmap.Config.ALPHA_8;
+
     private float displayDPI;
     protected Bitmap mask;
     private int butterflyColor = 0;
 
     private float dyMM = 0;
 
+    // Markers and rails sit still while the particles move, so they are replayed from a recording.
+    private final StaticLayer markersLayer = new StaticLayer(new StaticLayer.Recorder() {
+        @Override
+        public void record(Canvas canvas, float backgroundSize) {
+            drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, null, mLayerPaint, backgroundSize);
+        }
+    });
+
+    private final StaticLayer railsLayer = new StaticLayer(new StaticLayer.Recorder() {
+        @Override
+        public void record(Canvas canvas, float backgroundSize) {
+            drawTopBottonRailLinesToHelpOnTilt(canvas, mLayerPaint, backgroundSize);
+        }
+    });
+
     private final Runnable newParticles = new Runnable() {
         @Override
         public void run() {
-            createParticles();
+            mParticles.requestSpawn();
+            handler.postDelayed(this, CREATE_NEW_PARTICLES_AT_EVERY);
         }
     };
     Handler handler = new Handler();
 
     public ConvergenceLockPainter(Resources r, float displayDPI) {
+        this(CachedBitmapFactory.getInstance().decodeResource(r, R.drawable.mask, 0, 0, MASK_CONFIG), displayDPI);
+    }
+
+    /**
+     * @param mask the alpha mask that darkens the center of each eye
+     */
+    public ConvergenceLockPainter(Bitmap mask, float displayDPI) {
         this.displayDPI = displayDPI;
-        this.mask = CachedBitmapFactory.getInstance().decodeResource(r, R.drawable.mask);
+        this.mask = mask;
+        this.mParticles = new ParticleSystem(MAX_PARTICLES, STOP_SPAWNING_ABOVE, toPX(RADIUS_OF_PARTICLES), PARTICLE_SYSTEM_INNER_LIMIT);
         resetParticles();
     }
 
+    /**
+     * Decodes the mask ahead of the first frame of the test.
+     */
+    public static void preloadBitmaps(Resources r) {
+        CachedBitmapFactory.getInstance().preloadAsync(r, R.drawable.mask, 0, 0, MASK_CONFIG);
+    }
+
     public float getPixelSizeMM() {
         return 25.4f / displayDPI;
     }
@@ -119,18 +157,18 @@ public class ConvergenceLockPainter implements CanvasPainter {
         canvas.save();
         canvas.translate(testY, middleX);
 
-        drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, device, mPaint, backgroundSize);
+        drawStaticMarkers(canvas, device, backgroundSize);
 
-        drawTopBottonRailLinesToHelpOnTilt(canvas, mPaint, backgroundSize);
+        drawStaticRails(canvas, device, backgroundSize);
 
         canvas.restore();
 
         canvas.save();
         canvas.translate(idleY, middleX);
 
-        drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, device, mPaint, backgroundSize);
+        drawStaticMarkers(canvas, device, backgroundSize);
 
-        drawTopBottonRailLinesToHelpOnTilt(canvas, mPaint, backgroundSize);
+        drawStaticRails(canvas, device, backgroundSize);
 
         canvas.restore();
 
@@ -152,18 +190,26 @@ public class ConvergenceLockPainter implements CanvasPainter {
 
         float backgroundSize = canvas.getHeight() / 2.0f;
 
-        drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, device, mPaint, backgroundSize);
+        drawStaticMarkers(canvas, device, backgroundSize);
 
         drawParticleSystem(canvas, mPaint, alpha);
 
         drawCrossToHelpCenterAndConvergence(canvas, mPaint, backgroundSize, alpha, testingEye);
 
-        drawTopBottonRailLinesToHelpOnTilt(canvas, mPaint, backgroundSize);
+        drawStaticRails(canvas, device, backgroundSize);
 
         canvas.restore();
     }
 
 
+    protected void drawStaticMarkers(Canvas canvas, Device device, float backgroundSize) {
+        markersLayer.draw(canvas, device, displayDPI, backgroundSize, backgroundSize + toPX(34.5f));
+    }
+
+    protected void drawStaticRails(Canvas canvas, Device device, float backgroundSize) {
+        railsLayer.draw(canvas, device, displayDPI, backgroundSize, backgroundSize + 30);
+    }
+
     /**
      * Draws the light for image processing close to the camera position. The light from the screen retroreflects back to the camera
      * allowing for an accurate image processing.
@@ -175,16 +221,17 @@ public class ConvergenceLockPainter implements CanvasPainter {
     public void drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(Canvas canvas, Device device, Paint mPaint, float backgroundSize) {
 
         if (butterflyColor == 0) {
-            String nameOfDevice = DeviceModelParser.getDeviceName();
-            String color = new DeviceModelSettings(nameOfDevice).getButterflyColor();
+            String color = DeviceModelSettings.current().getButterflyColor();
             butterflyColor = Color.parseColor(color);
         }
 
         mPaint.setColor(butterflyColor);
 //        mPaint.setColor(Color.rgb(60, 60, 255));  // old butterfly
         mPaint.setStyle(Style.FILL);
-        canvas.drawArc(new RectF(backgroundSize - toPX(34.5f), -backgroundSize - toPX(14.5f), backgroundSize + toPX(34.5f), -backgroundSize + toPX(14.5f)), 90, 90, true, mPaint);
-        canvas.drawArc(new RectF(backgroundSize - toPX(14.5f), -backgroundSize - toPX(34.5f), backgroundSize + toPX(14.5f), -backgroundSize + toPX(34.5f)), 90, 90, true, mPaint);
+        mRectF.set(backgroundSize - toPX(34.5f), -backgroundSize - toPX(14.5f), backgroundSize + toPX(34.5f), -backgroundSize + toPX(14.5f));
+        canvas.drawArc(mRectF, 90, 90, true, mPaint);
+        mRectF.set(backgroundSize - toPX(14.5f), -backgroundSize - toPX(34.5f), backgroundSize + toPX(14.5f), -backgroundSize + toPX(34.5f));
+        canvas.drawArc(mRectF, 90, 90, true, mPaint);
     }
 
     /**
@@ -234,7 +281,12 @@ public class ConvergenceLockPainter implements CanvasPainter {
     long timeInMillis = 0;
 
     public void drawParticleSystem(Canvas canvas, Paint mPaint, float alpha) {
-        canCreateMoreParticles = true;
+        particlesVisible = alpha > 0;
+        if (!particlesVisible) {
+            // hidden particles stand still and pick up from here when they fade back in
+            timeInMillis = 0;
+            return;
+        }
 
         double deltaTimeInMillis = 100;
         if (timeInMillis < 10) {
@@ -244,58 +296,24 @@ public class ConvergenceLockPainter implements CanvasPainter {
             timeInMillis = System.currentTimeMillis();
         }
 
-        synchronized (mParticleList) {
-            for (int i = 0; i < mParticleList.size(); i++) {
-                Particle p = mParticleList.get(i);
-                p.move(deltaTimeInMillis);
+        ParticleSystem particles = mParticles;
+        particles.step(deltaTimeInMillis);
 
-                int blue = (int) (p.color * 255);
-                int redGreen = (int) (p.color * 50);
-
-                mPaint.setColor(Color.argb((int) (Math.min(getFadingFactor(p), alpha) * 255), redGreen, redGreen, blue));
-                mPaint.setStyle(Style.FILL);
-                canvas.drawCircle(p.x - 10, p.y - 10, p.size, mPaint);
+        mPaint.setStyle(Style.FILL);
+        for (int i = 0; i < particles.size(); i++) {
+            int blue = (int) (particles.color(i) * 255);
+            int redGreen = (int) (particles.color(i) * 50);
 
-                if (isOutsideRangeInversed(p)) {
-                    mRecycleList.add(mParticleList.remove(i));
-                    i--;
-                }
-            }
+            mPaint.setColor(Color.argb((int) (Math.min(getFadingFactor(particles.distance(i)), alpha) * 255), redGreen, redGreen, blue));
+            canvas.drawCircle(particles.x(i) - 10, particles.y(i) - 10, particles.radius(i), mPaint);
         }
     }
 
+    /**
+     * Places the particles as if they had been flowing for 200 frames of 10ms.
+     */
     public void resetStartingPosition() {
-        canCreateMoreParticles = true;
-        justCreateTheParticles();
-        for (int frames = 0; frames < 200; frames++) {
-            for (int i = 0; i < mParticleList.size(); i++) {
-                Particle p = mParticleList.get(i);
-                p.move(10);
-                if (isOutsideRangeInversed(p)) {
-                    mRecycleList.add(mParticleList.remove(i));
-                    i--;
-                }
-            }
-
-            if (frames % 20 == 0) {
-                canCreateMoreParticles = true;
-                justCreateTheParticles();
-            }
-
-            //Log.i("Reset Bubbles", "Frame " +  frames + " Num Particles " + mParticleList.size());
-        }
-    }
-
-    public boolean isOutsideRange(Particle p) {
-        return p.x < -PARTICLE_SYSTEM_OUTER_LIMIT
-                || p.x > PARTICLE_SYSTEM_OUTER_LIMIT
-                || p.y < -PARTICLE_SYSTEM_OUTER_LIMIT
-                || p.y > PARTICLE_SYSTEM_OUTER_LIMIT;
-    }
-
-    public boolean isOutsideRangeInversed(Particle p) {
-        return Math.abs(p.x) < PARTICLE_SYSTEM_INNER_LIMIT
-                && Math.abs(p.y) < PARTICLE_SYSTEM_INNER_LIMIT;
+        mParticles.warmUp(200, 20, 10);
     }
 
     public float linearInterpolation(float start, float end, float position) {
@@ -305,24 +323,23 @@ public class ConvergenceLockPainter implements CanvasPainter {
         return 1 - value;
     }
 
-    public float getFadingFactor(Particle p) {
-        float dist = (float) Math.sqrt(p.x * p.x + p.y * p.y);
-
+    public float getFadingFactor(float dist) {
         if (dist < PARTICLE_SYSTEM_START_FADING_AWAY) {
             return 1;
         }
 
-        if (dist > PARTICLE_SYSTEM_OUTER_LIMIT) {
+        if (dist > ParticleSystem.START_DISTANCE) {
             return 0;
         }
 
-        return linearInterpolation(PARTICLE_SYSTEM_START_FADING_AWAY, PARTICLE_SYSTEM_OUTER_LIMIT, dist);
+        return linearInterpolation(PARTICLE_SYSTEM_START_FADING_AWAY, ParticleSystem.START_DISTANCE, dist);
     }
 
     public void drawGaussianMaskToDarkenTheCenter(Canvas canvas, Paint mPaint, float xCenterPX, float yCenterPX, Bitmap img, float lineSizeMM, float radiusMM) {
         canvas.save();
         canvas.translate(yCenterPX, xCenterPX);
 
+        mPaint.setColor(Color.BLACK);
         canvas.drawBitmap(img, -img.getWidth() / 2, -img.getHeight() / 2, mPaint);
 
         drawBlackHoleToDarkenTheCenter(canvas, mPaint, lineSizeMM, radiusMM / 2);
@@ -338,69 +355,28 @@ public class ConvergenceLockPainter implements CanvasPainter {
     }
 
     // ////PARTICLE MANAGEMENT \\\\\\\
-    boolean canCreateMoreParticles = true;
-
-    private void createParticles() {
-        if (!mParticleList.isEmpty()) {
-            Particle p = mParticleList.get(mParticleList.size() - 1);
-            double dist = Math.sqrt(p.x * p.x + p.y * p.y);
-
-            // Allow the bubbles to scatter more.
-            if (dist < 10) {
-                handler.postDelayed(newParticles, CREATE_NEW_PARTICLES_AT_EVERY);
-                return;
-            }
-        }
-
-
-        if (!canCreateMoreParticles) {
-            handler.postDelayed(newParticles, CREATE_NEW_PARTICLES_AT_EVERY);
-            return;
-        }
-
-        if (mParticleList.size() > 50) {
-            handler.postDelayed(newParticles, CREATE_NEW_PARTICLES_AT_EVERY);
-            return;
-        }
-
-        canCreateMoreParticles = false;
-
-        justCreateTheParticles();
-
-        handler.postDelayed(newParticles, CREATE_NEW_PARTICLES_AT_EVERY);
-    }
-
-    public void justCreateTheParticles() {
-        Particle p;
-        int recycleCount = 0;
-
-        if (mRecycleList.size() > 1)
-            recycleCount = 2;
-        else
-            recycleCount = mRecycleList.size();
-
-        for (int i = 0; i < recycleCount; i++) {
-            p = mRecycleList.remove(0);
-            p.init(0, 0);
-            mParticleList.add(p);
-        }
-
-        for (int i = 0; i < 2 - recycleCount; i++) {
-            mParticleList.add(new Particle(0, 0, toPX(RADIUS_OF_PARTICLES)));
-        }
-    }
-
     public void resetParticles() {
-        mParticleList = new ArrayList<Particle>();
-        mRecycleList = new ArrayList<Particle>();
+        mParticles.clear();
         resetStartingPosition();
     }
 
     public void stopCreatingParticles() {
+        creatingParticles = false;
         handler.removeCallbacks(newParticles);
     }
 
     public void startCreatingParticles() {
+        creatingParticles = true;
         handler.postDelayed(newParticles, 1);
     }
+
+    /**
+     * True while particles are on screen and either flying or about to be
+     * spawned. Hidden particles don't need frames: fading them back in
+     * already redraws.
+     */
+    @Override
+    public boolean isAnimating() {
+        return particlesVisible && (creatingParticles || mParticles.size() > 0);
+    }
 }
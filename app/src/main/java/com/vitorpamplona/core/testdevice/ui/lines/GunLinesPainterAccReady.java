@@ -28,31 +28,78 @@ package com.vitorpamplona.core.testdevice.ui.lines;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.Pair;
+import com.vitorpamplona.core.testdevice.ui.AnimatedPainter;
 import com.vitorpamplona.core.testdevice.ui.AnimatedStringPainter;
 
-public class GunLinesPainterAccReady extends LinesPainter {
+public class GunLinesPainterAccReady extends LinesPainter implements AnimatedPainter {
 
     protected Paint mPaint = new Paint();
 
     protected static final float LINE_X_HALF_WIDTH = 7f; // mm
     protected static final float LINE_X_OVERLAP = 2.0f;     // mm
 
-    AnimatedStringPainter painter = new AnimatedStringPainter("5");
-    long resetTimeInMilis = 0;
+    protected static final long NUMBER_DURATION = 2000; // ms
+
+    AnimatedStringPainter painter = new AnimatedStringPainter("5", NUMBER_DURATION);
+
+    protected final PorterDuffXfermode mScreenMode = new PorterDuffXfermode(PorterDuff.Mode.SCREEN);
+
+    // The line shapes only depend on the DPI, so they are built once and only their color changes per frame.
+    protected final Path mGreenLines = new Path();
+    protected final Path mGreenArc = new Path();
+    protected final Path mRedLines = new Path();
+    protected final Path mRedArc = new Path();
 
     public GunLinesPainterAccReady(float displayDPI) {
         super(displayDPI);
+        buildPaths();
+    }
+
+    protected void buildPaths() {
+        float halfWidth = toPX(LINE_X_HALF_WIDTH);
+        float overlap = toPX(LINE_X_OVERLAP);
+
+        mGreenLines.moveTo(-halfWidth, 0.0f);
+        mGreenLines.lineTo(overlap, 0.0f);
+
+        // Samsung and Sony Phones adds a pixel for Vertical and Horizontal meridians.
+        mRedLines.moveTo(-overlap, 0);
+        mRedLines.lineTo(halfWidth, 0);
+
+        for (int i = CIRCLE_STEP; i < halfWidth - CIRCLE_STEP; i += CIRCLE_STEP) {
+            float x = getXinCircle(halfWidth, i);
+
+            mGreenLines.moveTo(-x, i);
+            mGreenLines.lineTo(-overlap * 1.5f, i);
+            mGreenLines.moveTo(-x, -i);
+            mGreenLines.lineTo(-overlap * 1.5f, -i);
+
+            mRedLines.moveTo(overlap * 1.5f, i);
+            mRedLines.lineTo(x, i);
+            mRedLines.moveTo(overlap * 1.5f, -i);
+            mRedLines.lineTo(x, -i);
+        }
+
+        RectF circle = new RectF(-halfWidth, -halfWidth, halfWidth, halfWidth);
+        mGreenArc.addArc(circle, 120, 120);
+        mRedArc.addArc(circle, -60, 120);
     }
 
     public void startNumbers() {
-        resetTimeInMilis = System.currentTimeMillis();
-        painter = new AnimatedStringPainter(Integer.toString(6 + (int) (Math.random() * 4)));
+        painter.start(Integer.toString(6 + (int) (Math.random() * 4)));
+    }
+
+    @Override
+    public boolean isAnimating() {
+        // the number is on screen
+        return painter.isAnimating();
     }
 
     /**
@@ -76,7 +123,7 @@ public class GunLinesPainterAccReady extends LinesPainter {
     public boolean paint(Canvas canvas, Device device, boolean testingRightEye,
                          Pair workingPair, float middleX, float testY, float idleY, float alpha) {
 
-        if (System.currentTimeMillis() - resetTimeInMilis < 2000) {
+        if (isAnimating()) {
             painter.paint(canvas, device, testingRightEye, workingPair, middleX, testY, idleY, alpha);
             return true;
         } else {
@@ -94,20 +141,15 @@ public class GunLinesPainterAccReady extends LinesPainter {
             mPaint.setAntiAlias(true);
             mPaint.setStrokeWidth(1.5f);
             mPaint.setStyle(Paint.Style.STROKE);
-            mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SCREEN));
+            mPaint.setXfermode(mScreenMode);
 
             canvas.translate(workingPair.p1.x, workingPair.p1.y);
             canvas.rotate(90 - (180 - workingPair.angle));
 
-            canvas.drawLine(-toPX(LINE_X_HALF_WIDTH), 0.0f, toPX(LINE_X_OVERLAP), 0.0f, mPaint);
-
-            for (int i = CIRCLE_STEP; i < toPX(LINE_X_HALF_WIDTH) - CIRCLE_STEP; i += CIRCLE_STEP) {
-                canvas.drawLine(-getXinCircle(toPX(LINE_X_HALF_WIDTH), i), i, -toPX(LINE_X_OVERLAP) * 1.5f, i, mPaint);
-                canvas.drawLine(-getXinCircle(toPX(LINE_X_HALF_WIDTH), i), -i, -toPX(LINE_X_OVERLAP) * 1.5f, -i, mPaint);
-            }
+            canvas.drawPath(mGreenLines, mPaint);
 
             mPaint.setStrokeWidth(4);
-            canvas.drawArc(new RectF(-toPX(LINE_X_HALF_WIDTH), -toPX(LINE_X_HALF_WIDTH), toPX(LINE_X_HALF_WIDTH), toPX(LINE_X_HALF_WIDTH)), 120, 120, false, mPaint);
+            canvas.drawPath(mGreenArc, mPaint);
 
 
             canvas.restore();
@@ -119,21 +161,15 @@ public class GunLinesPainterAccReady extends LinesPainter {
             mPaint.setAntiAlias(true);
             mPaint.setStrokeWidth(3.5f);
             mPaint.setStyle(Paint.Style.STROKE);
-            mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SCREEN));
+            mPaint.setXfermode(mScreenMode);
 
             canvas.translate(workingPair.p2.x, workingPair.p2.y);
             canvas.rotate(90 - (180 - workingPair.angle));
 
-            // Samsung and Sony Phones adds a pixel for Vertical and Horizontal meridians.
-            canvas.drawLine(-toPX(LINE_X_OVERLAP), 0, toPX(LINE_X_HALF_WIDTH), 0, mPaint);
-
-            for (int i = CIRCLE_STEP; i < toPX(LINE_X_HALF_WIDTH) - CIRCLE_STEP; i += CIRCLE_STEP) {
-                canvas.drawLine(toPX(LINE_X_OVERLAP) * 1.5f, i, getXinCircle(toPX(LINE_X_HALF_WIDTH), i), i, mPaint);
-                canvas.drawLine(toPX(LINE_X_OVERLAP) * 1.5f, -i, getXinCircle(toPX(LINE_X_HALF_WIDTH), i), -i, mPaint);
-            }
+            canvas.drawPath(mRedLines, mPaint);
 
             mPaint.setStrokeWidth(4);
-            canvas.drawArc(new RectF(-toPX(LINE_X_HALF_WIDTH), -toPX(LINE_X_HALF_WIDTH), toPX(LINE_X_HALF_WIDTH), toPX(LINE_X_HALF_WIDTH)), -60, 120, false, mPaint);
+            canvas.drawPath(mRedArc, mPaint);
 
             mPaint.setXfermode(null);
 
@@ -34,6 +34,7 @@ import android.graphics.RectF;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.Pair;
 import com.vitorpamplona.core.testdevice.ui.CanvasPainter;
+import com.vitorpamplona.core.testdevice.ui.StaticLayer;
 
 public class PdTestPainter implements CanvasPainter {
 
@@ -43,10 +44,24 @@ public class PdTestPainter implements CanvasPainter {
 
     protected RectF mRectF = new RectF();
     protected Paint mPaint = new Paint();
+    protected Paint mLayerPaint = new Paint();
+
+    // The markers and the black pupil circles only depend on the screen size. Sizes are in pixels, so no DPI.
+    protected final StaticLayer mMarkerLayer = new StaticLayer(new StaticLayer.Recorder() {
+        @Override
+        public void record(Canvas canvas, float backgroundSize) {
+            drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, mLayerPaint, backgroundSize);
+
+            mLayerPaint.setStyle(Style.FILL);
+            mLayerPaint.setColor(Color.BLACK);
+
+            canvas.drawCircle(0, 0, PD_TEST_CIRCLE_RADIUS, mLayerPaint);
+        }
+    });
 
     @Override
     public boolean paint(Canvas canvas, Device device, boolean testingRightEye, Pair workingPair, float middleX, float testY, float idleY, float alpha) {
-        drawPdTest(canvas, testingRightEye, middleX, testY, idleY, Color.YELLOW);
+        drawPdTest(canvas, device, testingRightEye, middleX, testY, idleY, Color.YELLOW);
         return true;
     }
 
@@ -61,11 +76,13 @@ public class PdTestPainter implements CanvasPainter {
     public void drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(Canvas canvas, Paint mPaint, float backgroundSize) {
         mPaint.setColor(Color.rgb(60, 60, 255));
         mPaint.setStyle(Style.FILL);
-        canvas.drawArc(new RectF(backgroundSize - 600, -backgroundSize - 350, backgroundSize + 600, -backgroundSize + 350), 90, 90, true, mPaint);
-        canvas.drawArc(new RectF(backgroundSize - 350, -backgroundSize - 600, backgroundSize + 350, -backgroundSize + 600), 90, 90, true, mPaint);
+        mRectF.set(backgroundSize - 600, -backgroundSize - 350, backgroundSize + 600, -backgroundSize + 350);
+        canvas.drawArc(mRectF, 90, 90, true, mPaint);
+        mRectF.set(backgroundSize - 350, -backgroundSize - 600, backgroundSize + 350, -backgroundSize + 600);
+        canvas.drawArc(mRectF, 90, 90, true, mPaint);
     }
 
-    protected void drawPdTest(Canvas canvas, boolean isRight, float centerX, float leftY, float rightY, int ringColor) {
+    protected void drawPdTest(Canvas canvas, Device device, boolean isRight, float centerX, float leftY, float rightY, int ringColor) {
         canvas.drawColor(Color.rgb(0, 0, 100));
 
         float backgroundSize = canvas.getWidth() / 2.0f;
@@ -73,23 +90,13 @@ public class PdTestPainter implements CanvasPainter {
         canvas.save();
         canvas.translate(centerX, leftY);
 
-        drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, mPaint, backgroundSize);
-
-        mPaint.setStyle(Style.FILL);
-        mPaint.setColor(Color.BLACK);
-
-        canvas.drawCircle(0, 0, PD_TEST_CIRCLE_RADIUS, mPaint);
+        mMarkerLayer.draw(canvas, device, 0, backgroundSize, backgroundSize + 600);
         canvas.restore();
 
         canvas.save();
         canvas.translate(centerX, rightY);
 
-        drawLightEmmissionForImageProcessingPhotoreflectiveMarkers(canvas, mPaint, backgroundSize);
-
-        mPaint.setStyle(Style.FILL);
-        mPaint.setColor(Color.BLACK);
-
-        canvas.drawCircle(0, 0, PD_TEST_CIRCLE_RADIUS, mPaint);
+        mMarkerLayer.draw(canvas, device, 0, backgroundSize, backgroundSize + 600);
         canvas.restore();
 
         canvas.save();
@@ -34,7 +34,7 @@ public class RedPdTestPainter extends PdTestPainter {
 
     @Override
     public boolean paint(Canvas canvas, Device device, boolean testingRightEye, Pair workingPair, float middleX, float testY, float idleY, float alpha) {
-        drawPdTest(canvas, testingRightEye, middleX, testY, idleY, 0xff990000);
+        drawPdTest(canvas, device, testingRightEye, middleX, testY, idleY, 0xff990000);
         return true;
     }
 
@@ -61,11 +61,14 @@ public class EventHistory implements Serializable {
     }
 
     public String exportEventHistory(Date date) {
-        StringBuilder st = new StringBuilder();
+        return exportEventHistory(date, new StringBuilder()).toString();
+    }
+
+    public StringBuilder exportEventHistory(Date date, StringBuilder st) {
         for (Event e : eventHistory()) {
-            st.append(e.toString(date) + ";\n");
+            st.append(e.toString(date)).append(";\n");
         }
-        return st.toString();
+        return st;
     }
 
     public Event addNewStep(float angle, float power, AstigmaticLensParams fittedData) {
@@ -42,6 +42,7 @@ import com.vitorpamplona.core.testdevice.DeviceDataset.CalibrationType;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.DeviceModelSettings;
 import com.vitorpamplona.core.testdevice.Point2D;
+import com.vitorpamplona.core.testdevice.ui.RenderingMetrics;
 import com.vitorpamplona.core.utils.AngleDiff;
 import com.vitorpamplona.core.utils.CollectionUtils;
 import com.vitorpamplona.core.utils.DeviceModelParser;
@@ -67,7 +68,6 @@ import com.vitorpamplona.meridian.utils.CalibrationManager.DeviceCalibration;
 import com.vitorpamplona.meridian.utils.ImageSequenceRecorder;
 import com.vitorpamplona.meridian.utils.Logr;
 import com.vitorpamplona.meridian.utils.SignalNormalizer;
-import com.vitorpamplona.meridian.utils.SortHashMap;
 import com.vitorpamplona.meridian.utils.Stopwatch;
 import com.vitorpamplona.meridian.utils.YuvConverter;
 import com.vitorpamplona.meridian.utils.YuvFilter;
@@ -76,9 +76,7 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class CameraInputStack implements PreviewCallback, CameraInput {
 
@@ -218,8 +216,7 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
     // in Core
     public void initializeComponents() {
 
-        String deviceModel = DeviceModelParser.getDeviceName();
-        Rect bounds = new DeviceModelSettings(deviceModel).getYuvMaskBounds();
+        Rect bounds = DeviceModelSettings.current().getYuvMaskBounds();
         YuvFilter colorFilter = new YuvFilter(bounds);
 
         mCalibrationComponent = new CalibrationComponent(mDevice.calibrationRectTopLeft, mDevice.calibrationRectBottomRight, mDevice.intensityThreshold, mPreviewWidth, mPreviewHeight, mDebugInfo, colorFilter);
@@ -352,15 +349,15 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
                 }
 
                 // Debug stuffs
-                populateErrorCodeHistory(Status.toString(), testFrameCounter);
-                populateErrorCodeCounter(Status);
+                mDebugHistory.logFailure(Status, testFrameCounter);
                 // savePNGToPhoneWithErrorCode(data,Status);
                 // saveByteArrayToPhoneWithErrorCode(data,Status); // save
                 // failed image data to disk
 
                 mDebugInfo.numberOfFramesInTest = testFrameCounter;
                 mDebugInfo.numberOfFramesDiscarded = (int) (discardedFrameRatio.average() * 100);
-                mDebugInfo.errorCode = Status.toString();
+                mDebugInfo.errorCode = Status;
+                mDebugHistory.record(mDebugInfo);
 
                 // IntegerArrayWrite.appendLog((System.currentTimeMillis()-start)+"",
                 // "FPSlog.txt");
@@ -372,13 +369,13 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
                 ErrorCode Status = calibrateOpticalRecognition(data);
 
                 // Debug stuffs
-                populateErrorCodeHistory(Status.toString(), calibrationFrameCounter);
+                mDebugHistory.logFailure(Status, calibrationFrameCounter);
                 // savePNGToPhoneWithErrorCode(data,Status);
                 // saveByteArrayToPhoneWithErrorCode(data,Status); // save
                 // failed image data to disk
 
                 mDebugInfo.numberOfFramesUsedForCalibration = calibrationFrameCounter;
-                mDebugInfo.errorCode = Status.toString();
+                mDebugInfo.errorCode = Status;
 
             }
 
@@ -401,7 +398,7 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
         if (!findInitialValues(data)) return ErrorCode.CAL_CANT_FIND_INITIAL;
 
         // initialize done
-        populateErrorCodeHistory("CALIBRATION COMPLETE", 0);
+        mDebugHistory.logCalibrationComplete();
 
         // start-up optical recognition listeners
         initializeListeners();
@@ -523,8 +520,7 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
                 // for
                 // bookends
 
-                String nameOfDevice = DeviceModelParser.getDeviceName();
-                int signalLevel = new DeviceModelSettings(nameOfDevice).getSignalLevel();
+                int signalLevel = DeviceModelSettings.current().getSignalLevel();
 
                 mSignalFinder = new SignalFinder(mPreviewWidth, mPreviewHeight, 5, signalLevel, 20, mAutoCalibration);
 //                mSignalFinder = new SignalFinder(mPreviewWidth, mPreviewHeight, 5, 60, 20, mAutoCalibration);
@@ -894,51 +890,8 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
 
     }
 
-    // DEBUG: Creates an error code history
-    int historyLength = 15;
-    List<String> errorCodeHistory = new ArrayList<String>();
-
-    private void populateErrorCodeHistory(String codeString, int frameNumber) {
-
-        // Adds failed error codes to canvas
-        if (!codeString.contentEquals(ErrorCode.SUCCESS.toString())) {
-
-            String msg = (frameNumber + ": " + codeString);
-            errorCodeHistory.add(0, msg); // add last errorCode
-
-            if (errorCodeHistory.size() > historyLength) {
-                errorCodeHistory.remove(historyLength);
-            }
-
-        }
-
-    }
-
-    // DEBUG: Creates an error code counter
-    int countLength = 15;
-    private Map<ErrorCode, Integer> errorCodeCounts = new HashMap<ErrorCode, Integer>();
-
-    private void populateErrorCodeCounter(ErrorCode code) {
-
-        int count = 0;
-
-        // check if error code is mapped
-        if (errorCodeCounts.containsKey(code)) {
-
-            count = errorCodeCounts.get(code);
-            count++;
-            // increment error code count by one and replace value
-            errorCodeCounts.put(code, count);
-
-        }
-        // add new error code with count=1 if not listed yet
-        else {
-
-            errorCodeCounts.put(code, 1);
-
-        }
-
-    }
+    // DEBUG: Keeps the last 30 frames, the last 15 failures and counts per error code
+    FrameDebugHistory mDebugHistory = new FrameDebugHistory(30, 15);
 
     public void adjustCameraParameters(Camera.Parameters params) {
         params.setPreviewSize(mPreviewWidth, mPreviewHeight);
@@ -966,22 +919,16 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
         Paint paint = new Paint();
         paint.setTextSize(12);
         int yOff = 0, yInc = 12;
-        boolean first = true;
 
         // display current test frame number
         paint.setColor(Color.WHITE);
         canvas.drawText(testFrameCounter + ": ", historyPosition.x, historyPosition.y, paint);
 
         // display error code history in debug screen
-        for (String code : errorCodeHistory) {
-            if (first) {
-                paint.setColor(Color.MAGENTA);
-                first = false;
-            } else {
-                paint.setColor(Color.WHITE);
-            }
+        for (int i = 0; i < mDebugHistory.failureCount(); i++) {
+            paint.setColor(i == 0 ? Color.MAGENTA : Color.WHITE);
             yOff += yInc;
-            canvas.drawText(code, historyPosition.x, historyPosition.y + yOff, paint);
+            canvas.drawText(mDebugHistory.formatFailure(i), historyPosition.x, historyPosition.y + yOff, paint);
         }
 
         // display error code count in debug screen
@@ -989,13 +936,12 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
         paint.setColor(Color.MAGENTA);
         canvas.drawText("error code counts: ", historyPosition.x, historyPosition.y + yOff, paint);
 
-        errorCodeCounts = SortHashMap.sortByValue(errorCodeCounts); // sort
-        // hashmap
-        // by values
         paint.setColor(Color.WHITE);
-        for (Map.Entry<ErrorCode, Integer> entry : errorCodeCounts.entrySet()) {
+        int seenCodes = mDebugHistory.sortByCount();
+        for (int i = 0; i < seenCodes; i++) {
+            ErrorCode code = mDebugHistory.sortedCode(i);
             yOff += yInc;
-            canvas.drawText(entry.getValue() + ":  " + entry.getKey().toString(), historyPosition.x, historyPosition.y
+            canvas.drawText(mDebugHistory.count(code) + ":  " + code.name(), historyPosition.x, historyPosition.y
                     + yOff, paint);
         }
 
@@ -1005,8 +951,8 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
         paint.setColor(Color.CYAN);
         DecimalFormat df = new DecimalFormat("#.00");
 
-        if (errorCodeCounts.containsKey(ErrorCode.SUCCESS)) {
-            float success = errorCodeCounts.get(ErrorCode.SUCCESS) / ((float) testFrameCounter) * 100;
+        if (mDebugHistory.count(ErrorCode.SUCCESS) > 0) {
+            float success = mDebugHistory.count(ErrorCode.SUCCESS) / ((float) testFrameCounter) * 100;
             canvas.drawText("Success Rate: " + df.format(success) + "%", historyPosition.x, historyPosition.y + yOff,
                     paint);
         }
@@ -1030,6 +976,19 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
         paint.setColor(Color.WHITE);
         canvas.drawText("Model: " + model, historyPosition.x, historyPosition.y + yOff, paint);
 
+        // display frame times and jank of the test screen
+        RenderingMetrics metrics = RenderingMetrics.getInstance();
+        yOff += 30;
+        paint.setTextSize(12);
+        paint.setColor(Color.MAGENTA);
+        canvas.drawText(metrics.formatFrames(), historyPosition.x, historyPosition.y + yOff, paint);
+
+        paint.setColor(Color.WHITE);
+        int painters = metrics.painterCount();
+        for (int i = 0; i < painters; i++) {
+            yOff += yInc;
+            canvas.drawText(metrics.formatPainter(i), historyPosition.x, historyPosition.y + yOff, paint);
+        }
 
         // display compensation factors over screen
         if (signalNormalizer != null) {
@@ -1190,4 +1149,8 @@ public class CameraInputStack implements PreviewCallback, CameraInput {
         return mDebugInfo;
     }
 
+    public FrameDebugHistory getDebugHistory() {
+        return mDebugHistory;
+    }
+
 }
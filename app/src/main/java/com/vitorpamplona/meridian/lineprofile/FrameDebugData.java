@@ -25,6 +25,7 @@
  */
 package com.vitorpamplona.meridian.lineprofile;
 
+import com.vitorpamplona.meridian.imgproc.lineprofile.ErrorCode;
 import com.vitorpamplona.meridian.utils.Logr;
 
 import java.text.DecimalFormat;
@@ -52,13 +53,13 @@ public class FrameDebugData {
     public int averageFPS;
 
     // signal quality
-    public Integer signalQualitySlider; // has 1 dot
-    public Integer signalQualityScrolly; // has 1 dot
-    public Integer[] signalQualityCalibrationDots = new Integer[3]; // has between 2 and 3 dots
-    public Integer[] signalQualityRatchet = new Integer[4]; // has between 1 and 2 dots (3 and 4 with new asymmetric rings)
+    public int signalQualitySlider; // has 1 dot
+    public int signalQualityScrolly; // has 1 dot
+    public final int[] signalQualityCalibrationDots = new int[3]; // has between 2 and 3 dots
+    public final int[] signalQualityRatchet = new int[4]; // has between 1 and 2 dots (3 and 4 with new asymmetric rings)
 
-    // what failed
-    public String errorCode;
+    // what failed, null until the first frame is processed
+    public ErrorCode errorCode;
 
     // component specific stats
     public float standardDeviationSliderLast30;
@@ -97,7 +98,7 @@ public class FrameDebugData {
         Arrays.fill(signalQualityCalibrationDots, 0);
         Arrays.fill(signalQualityRatchet, 0);
 
-        errorCode = "";
+        errorCode = null;
 
         standardDeviationSliderLast30 = 0;
         standardDeviationScrollyLast30 = 0;
@@ -106,9 +107,52 @@ public class FrameDebugData {
 
     }
 
-    DecimalFormat formatter = new DecimalFormat("  +0.00;  -0.00");
+    /**
+     * Copies every field of other into this record without allocating, so a
+     * preallocated instance can be reused as a snapshot.
+     */
+    public void copyFrom(FrameDebugData other) {
+
+        sliderValueMM = other.sliderValueMM;
+        scrollyWheelAngle = other.scrollyWheelAngle;
+        ratchetAngle = other.ratchetAngle;
+        ratchetCenterX = other.ratchetCenterX;
+        ratchetCenterY = other.ratchetCenterY;
+        processingTime = other.processingTime;
+
+        calibrated = other.calibrated;
+        calibrationIsGood = other.calibrationIsGood;
+
+        numberOfFramesUsedForCalibration = other.numberOfFramesUsedForCalibration;
+        numberOfFramesUsedForInitialValues = other.numberOfFramesUsedForInitialValues;
+        numberOfFramesInTest = other.numberOfFramesInTest;
+        numberOfFramesDiscarded = other.numberOfFramesDiscarded;
+
+        averageFPS = other.averageFPS;
+
+        signalQualitySlider = other.signalQualitySlider;
+        signalQualityScrolly = other.signalQualityScrolly;
+        System.arraycopy(other.signalQualityCalibrationDots, 0, signalQualityCalibrationDots, 0, signalQualityCalibrationDots.length);
+        System.arraycopy(other.signalQualityRatchet, 0, signalQualityRatchet, 0, signalQualityRatchet.length);
+
+        errorCode = other.errorCode;
+
+        standardDeviationSliderLast30 = other.standardDeviationSliderLast30;
+        standardDeviationScrollyLast30 = other.standardDeviationScrollyLast30;
+        standardDeviationCalibrationDotsLast30 = other.standardDeviationCalibrationDotsLast30;
+        standardDeviationRatchetLast30 = other.standardDeviationRatchetLast30;
+
+    }
+
+    public String errorCodeName() {
+        return errorCode == null ? "" : errorCode.name();
+    }
+
+    DecimalFormat formatter;
 
     public String flatParams() {
+        if (formatter == null) formatter = new DecimalFormat("  +0.00;  -0.00");
+
         return "Slider: " + formatter.format(sliderValueMM) + "mm " +
                 "\tScrolly: " + (Float.isNaN(scrollyWheelAngle) ? " NaNNaN " : formatter.format(scrollyWheelAngle)) + " degrees " +
                 "\tRatchet: " + (Float.isNaN(ratchetAngle) ? " NaNNaN " : formatter.format(ratchetAngle)) + " degrees ";
@@ -140,7 +184,7 @@ public class FrameDebugData {
                         Arrays.toString(signalQualityCalibrationDots) + " " +
                         Arrays.toString(signalQualityRatchet) + " " +
 
-                        errorCode + " " +
+                        errorCodeName() + " " +
 
                         standardDeviationSliderLast30 + " " +
                         standardDeviationScrollyLast30 + " " +
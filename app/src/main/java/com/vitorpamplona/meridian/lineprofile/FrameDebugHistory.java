@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.meridian.lineprofile;
+
+import com.vitorpamplona.meridian.imgproc.lineprofile.ErrorCode;
+
+/**
+ * Fixed size telemetry of the optical recognition. Keeps snapshots of the last
+ * frames, the last failed error codes and a counter per error code, all
+ * preallocated so long exams don't grow memory or allocate per frame.
+ * Strings are only built when the history is displayed.
+ */
+public class FrameDebugHistory {
+
+    // Marker stored instead of an ordinal when the calibration finishes.
+    private static final int CALIBRATION_COMPLETE = -1;
+
+    private static final ErrorCode[] CODES = ErrorCode.values();
+
+    private final FrameDebugData[] frames;
+    private int frameHead = 0;
+    private int frameCount = 0;
+
+    private final int[] failureFrames;
+    private final int[] failureCodes;
+    private int failureHead = 0;
+    private int failureCount = 0;
+
+    private final int[] counts = new int[CODES.length];
+    private final int[] sortedCodes = new int[CODES.length];
+
+    public FrameDebugHistory(int frameLength, int failureLength) {
+        frames = new FrameDebugData[frameLength];
+        for (int i = 0; i < frameLength; i++) {
+            frames[i] = new FrameDebugData();
+        }
+        failureFrames = new int[failureLength];
+        failureCodes = new int[failureLength];
+    }
+
+    /**
+     * Snapshots the frame into the ring and counts its error code.
+     */
+    public void record(FrameDebugData frame) {
+        if (frames.length > 0) {
+            frameHead = (frameHead + 1) % frames.length;
+            frames[frameHead].copyFrom(frame);
+            if (frameCount < frames.length) frameCount++;
+        }
+
+        if (frame.errorCode != null) {
+            counts[frame.errorCode.ordinal()]++;
+        }
+    }
+
+    /**
+     * Adds a failed code to the history. Successes are ignored.
+     */
+    public void logFailure(ErrorCode code, int frameNumber) {
+        if (code == ErrorCode.SUCCESS) return;
+        pushFailure(code.ordinal(), frameNumber);
+    }
+
+    public void logCalibrationComplete() {
+        pushFailure(CALIBRATION_COMPLETE, 0);
+    }
+
+    private void pushFailure(int code, int frameNumber) {
+        if (failureCodes.length == 0) return;
+        failureHead = (failureHead + 1) % failureCodes.length;
+        failureCodes[failureHead] = code;
+        failureFrames[failureHead] = frameNumber;
+        if (failureCount < failureCodes.length) failureCount++;
+    }
+
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param i 0 for the most recent frame
+     */
+    public FrameDebugData frame(int i) {
+        if (i < 0 || i >= frameCount) throw new IndexOutOfBoundsException("Frame " + i + " of " + frameCount);
+        return frames[(frameHead - i + frames.length) % frames.length];
+    }
+
+    public int failureCount() {
+        return failureCount;
+    }
+
+    private int failureIndex(int i) {
+        if (i < 0 || i >= failureCount) throw new IndexOutOfBoundsException("Failure " + i + " of " + failureCount);
+        return (failureHead - i + failureCodes.length) % failureCodes.length;
+    }
+
+    /**
+     * @param i 0 for the most recent failure
+     * @return null for the calibration complete marker
+     */
+    public ErrorCode failureCode(int i) {
+        int code = failureCodes[failureIndex(i)];
+        return code == CALIBRATION_COMPLETE ? null : CODES[code];
+    }
+
+    public int failureFrame(int i) {
+        return failureFrames[failureIndex(i)];
+    }
+
+    public String formatFailure(int i) {
+        int index = failureIndex(i);
+        int code = failureCodes[index];
+        return failureFrames[index] + ": " + (code == CALIBRATION_COMPLETE ? "CALIBRATION COMPLETE" : CODES[code].name());
+    }
+
+    public int count(ErrorCode code) {
+        return counts[code.ordinal()];
+    }
+
+    /**
+     * Sorts the codes seen so far by count, highest first, into a reused
+     * array. Returns how many codes were written; read them with sortedCode.
+     */
+    public int sortByCount() {
+        int n = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] == 0) continue;
+
+            int j = n++;
+            while (j > 0 && counts[sortedCodes[j - 1]] < counts[code]) {
+                sortedCodes[j] = sortedCodes[j - 1];
+                j--;
+            }
+            sortedCodes[j] = code;
+        }
+        return n;
+    }
+
+    public ErrorCode sortedCode(int i) {
+        return CODES[sortedCodes[i]];
+    }
+
+    public void reset() {
+        frameHead = 0;
+        frameCount = 0;
+        failureHead = 0;
+        failureCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        for (FrameDebugData f : frames) {
+            f.reset();
+        }
+    }
+
+}
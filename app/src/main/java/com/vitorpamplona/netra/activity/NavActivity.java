@@ -364,14 +364,18 @@ public class NavActivity extends AppCompatActivity implements NavigationView.OnN
         e.setUserName(settings.getLoggedInUsername());
         e.setAppVersion(NetraGApplication.get().getVersionName());
 
-        DebugExam e1 = new DebugExam(e);
-        NetraGApplication.get().getSqliteHelper().saveDebugExam(e1);
-        NetraGApplication.get().setLastResult(e1);
-
-        if (isReadingsFragmentActive()) {
-            ((ReadingsFragment) getCurrentFragment()).refreshAddedCard();
-            loadResultsFragment(false);
-        }
+        // Only published once saved: the writer thread sets its ids while saving.
+        final DebugExam e1 = new DebugExam(e);
+        NetraGApplication.get().getSqliteHelper().saveDebugExamAsync(e1, new Runnable() {
+            @Override
+            public void run() {
+                NetraGApplication.get().setLastResult(e1);
+                if (!isFinishing() && isReadingsFragmentActive()) {
+                    ((ReadingsFragment) getCurrentFragment()).refreshAddedCard();
+                    loadResultsFragment(false);
+                }
+            }
+        });
     }
 
     AGPPrinterAPI api = null;
@@ -39,11 +39,14 @@ import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.Phonemetadata;
 import com.google.i18n.phonenumbers.Phonenumber;
 import com.vitorpamplona.core.testdevice.ui.CachedBitmapFactory;
+import com.vitorpamplona.core.testdevice.ui.convergence.ConvergenceLockPainter;
 import com.vitorpamplona.core.utils.DeviceModelParser;
 import com.vitorpamplona.netra.BuildConfig;
 import com.vitorpamplona.netra.activity.settings.AppSettings;
+import com.vitorpamplona.netra.model.db.DatabaseConfig;
 import com.vitorpamplona.netra.model.db.SQLiteHelper;
 import com.vitorpamplona.netra.model.db.objects.DebugExam;
+import com.vitorpamplona.netra.utils.DeviceProfileLoader;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
@@ -105,11 +108,13 @@ public class NetraGApplication extends Application {
         super.onCreate();
 
         getSettings();
+        DeviceProfileLoader.loadFromAssets(this);
 
         CachedBitmapFactory.setResources(getResources());
+        ConvergenceLockPainter.preloadBitmaps(getResources());
 
-        mSqliteHelper = new SQLiteHelper(this, false);
-        mDevSqliteHelper = new SQLiteHelper(this, true);
+        mSqliteHelper = new SQLiteHelper(this, false, DatabaseConfig.tuned());
+        mDevSqliteHelper = new SQLiteHelper(this, true, DatabaseConfig.tuned());
 
         resetDefaultNumbers();
 
@@ -65,7 +65,10 @@ public class PreTestSimulation extends View {
     protected PorterDuffXfermode mPorterDuffAdd;
     protected PorterDuffXfermode mPorterDuffDstOut;
 
-    protected Bitmap mCrossBackground, mCrossBinocular, mCrossBinocularTransparent;
+    protected Bitmap mCrossBackground, mCrossBinocular;
+
+    // The cross has no transparency, so it does not need the alpha channel.
+    protected static final Bitmap.Config CROSS_CONFIG = Bitmap.Config.RGB_565;
 
     private ViewAspectRatioMeasurer varm;
 
@@ -123,9 +126,6 @@ public class PreTestSimulation extends View {
     protected void init() {
         isDone = false;
 
-        mCrossBackground = CachedBitmapFactory.getInstance().decodeResource(getResources(), R.drawable.tutorialcross);
-        mCrossBinocular = CachedBitmapFactory.getInstance().decodeResource(getResources(), R.drawable.mask_binocular);
-        mCrossBinocularTransparent = CachedBitmapFactory.getInstance().decodeResource(getResources(), R.drawable.mask_binocular_transparent);
         mPorterDuffAdd = new PorterDuffXfermode(PorterDuff.Mode.ADD);
         mPorterDuffDstOut = new PorterDuffXfermode(PorterDuff.Mode.DST_OUT);
 
@@ -184,6 +184,12 @@ public class PreTestSimulation extends View {
 
         tempBitmap = Bitmap.createBitmap(varm.getMeasuredWidth(), varm.getMeasuredHeight(), Bitmap.Config.ARGB_8888);
         tempCanvas = new Canvas(tempBitmap);
+
+        // Decoded at the size they are drawn, so frames don't scale them.
+        mCrossBackground = CachedBitmapFactory.getInstance().decodeResource(getResources(), R.drawable.tutorialcross,
+                varm.getMeasuredWidth(), varm.getMeasuredWidth(), CROSS_CONFIG);
+        mCrossBinocular = CachedBitmapFactory.getInstance().decodeResource(getResources(), R.drawable.mask_binocular,
+                varm.getMeasuredWidth(), varm.getMeasuredHeight(), Bitmap.Config.ARGB_8888);
     }
 
     protected void onDraw(Canvas canvas) {
@@ -246,11 +252,7 @@ public class PreTestSimulation extends View {
         mPaint.setShader(null);
         mPaint.setMaskFilter(null);
 
-        Rect rI = new Rect(0, 0, mCrossBinocular.getWidth(), mCrossBinocular.getHeight());
-
-        Rect rS = new Rect(0, 0, canvas.getWidth(), canvas.getHeight());
-
-        canvas.drawBitmap(mCrossBinocular, rI, rS, mPaint);
+        canvas.drawBitmap(mCrossBinocular, 0, 0, mPaint);
 
         canvas.restore();
 
@@ -25,7 +25,6 @@
  */
 package com.vitorpamplona.netra.activity.fragments;
 
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.LinearLayoutManager;
@@ -39,13 +38,10 @@ import com.vitorpamplona.netra.R;
 import com.vitorpamplona.netra.activity.NavActivity;
 import com.vitorpamplona.netra.activity.NetraGApplication;
 import com.vitorpamplona.netra.activity.fragments.cards.DebugExam2Holder;
-import com.vitorpamplona.netra.model.db.DataUtil;
+import com.vitorpamplona.netra.model.db.DebugExamSummaryPager;
 import com.vitorpamplona.netra.model.db.SQLiteHelper;
-import com.vitorpamplona.netra.model.db.objects.DebugExam;
-import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
-import com.vitorpamplona.netra.model.db.tables.Table;
+import com.vitorpamplona.netra.model.db.objects.DebugExamSummary;
 
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -66,7 +62,7 @@ public class ReadingsFragment extends NavFragment {
         // 2. set layoutManger
         mRecyclerView.setLayoutManager(new LinearLayoutManager(this.getNavActivity()));
         // 3. create an adapter
-        mAdapter = new DebugExamAdapter(NetraGApplication.get().getSqliteHelper().allIds(NetraGApplication.get().getSettings().getLoggedInUsername()), getNavActivity());
+        mAdapter = new DebugExamAdapter(NetraGApplication.get().getSqliteHelper().examSummaries(NetraGApplication.get().getSettings().getLoggedInUsername()), getNavActivity());
         // 4. set adapter
         mRecyclerView.setAdapter(mAdapter);
         // 5. set item animator to DefaultAnimator
@@ -99,7 +95,7 @@ public class ReadingsFragment extends NavFragment {
         SQLiteHelper.UsageStats usage = NetraGApplication.get().getSqliteHelper().stats(NetraGApplication.get().getSettings().getLoggedInUsername());
         this.refreshCards();
 
-        Log.i("ReadingsFragment", "ReloadStats Invalidate. Ready to Sync " + usage.readyToSync);
+        Log.i("ReadingsFragment", "ReloadStats Invalidate. Ready to Sync " + usage.readyToSync + ", tested today " + usage.testedToday);
     }
 
     public void backToTop() {
@@ -126,8 +122,10 @@ public class ReadingsFragment extends NavFragment {
     }
 
     public void refreshCards() {
-        if (mAdapter != null)
+        if (mAdapter != null) {
+            mAdapter.mSummaries.invalidate();
             mAdapter.notifyDataSetChanged();
+        }
     }
 
     public void refreshAddedCard() {
@@ -138,18 +136,18 @@ public class ReadingsFragment extends NavFragment {
     }
 
     public class DebugExamAdapter extends RecyclerView.Adapter<DebugExam2Holder> {
-        Cursor mCursorAdapter;
+        DebugExamSummaryPager mSummaries;
         NavActivity activity;
 
         private Set<String> datesUsed = new HashSet<String>();
 
-        public DebugExamAdapter(Cursor c, NavActivity activity) {
-            mCursorAdapter = c;
+        public DebugExamAdapter(DebugExamSummaryPager summaries, NavActivity activity) {
+            mSummaries = summaries;
             this.activity = activity;
         }
 
         public void resetCursor() {
-            mCursorAdapter = NetraGApplication.get().getSqliteHelper().allIds(NetraGApplication.get().getSettings().getLoggedInUsername());
+            mSummaries = NetraGApplication.get().getSqliteHelper().examSummaries(NetraGApplication.get().getSettings().getLoggedInUsername());
             reloadStats();
         }
 
@@ -182,14 +180,16 @@ public class ReadingsFragment extends NavFragment {
             // Passing the binding operation to cursor loader
             String formattedDate = null;
             if (position > 0) {
-                mCursorAdapter.moveToPosition(position - 1); //EDITED: added this line as suggested in the comments below, thanks :)
-                Date date = DataUtil.timestampStringToDate(DataUtil.getString(mCursorAdapter, DebugExamTable.TESTED));
-                formattedDate = holder.formatDate(date, activity);
+                DebugExamSummary previous = mSummaries.get(position - 1);
+                if (previous != null)
+                    formattedDate = holder.formatDate(previous.getTested(), activity);
             }
 
-            mCursorAdapter.moveToPosition(position); //EDITED: added this line as suggested in the comments below, thanks :)
-            Long id = DataUtil.getLong(mCursorAdapter, Table.ID);
-            DebugExam e = NetraGApplication.get().getSqliteHelper().findDebugExam(id);
+            DebugExamSummary e = mSummaries.get(position);
+            if (e == null) {
+                holder.clear();
+                return;
+            }
 
             holder.loadMeasurement(e, activity, this);
 
@@ -203,7 +203,7 @@ public class ReadingsFragment extends NavFragment {
         // Return the size of your itemsData (invoked by the layout manager)
         @Override
         public int getItemCount() {
-            return mCursorAdapter.getCount();
+            return mSummaries.getCount();
         }
     }
 }
@@ -1589,13 +1589,10 @@ public class ResultsFragment extends NavFragment implements DatePickerFragment.D
             for (DebugExam table : params)
                 synchronized (NetraGApplication.get().getSqliteHelper()) {
                     table.setStudyName(mEdNote.getText().toString());
-                    NetraGApplication.get().getSqliteHelper().saveDebugExam(table);
-                    NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncDebug(table);
-                    NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncInsight(table);
-                    NetraGApplication.get().getSqliteHelper().debugExamTable.setReadyToDeleteWhenSync(table);
+                    NetraGApplication.get().getSqliteHelper().saveDebugExamToSync(table, true);
 
                     if (!table.isPrescribed() && table.isReadyToPrescribe())
-                        NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncPrescription(table);
+                        NetraGApplication.get().getSqliteHelper().setToSyncPrescription(table);
                 }
             return true;
         }
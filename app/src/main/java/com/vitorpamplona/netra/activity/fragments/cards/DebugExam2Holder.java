@@ -40,6 +40,7 @@ import com.vitorpamplona.netra.activity.NetraGApplication;
 import com.vitorpamplona.netra.activity.fragments.ReadingsFragment;
 import com.vitorpamplona.netra.activity.fragments.TypeFaceProvider;
 import com.vitorpamplona.netra.model.db.objects.DebugExam;
+import com.vitorpamplona.netra.model.db.objects.DebugExamSummary;
 import com.vitorpamplona.netra.utils.AgeCalculator;
 
 import java.text.Format;
@@ -96,11 +97,22 @@ public class DebugExam2Holder extends RecyclerView.ViewHolder {
         return mDateRef.getText().toString();
     }
 
-    public Integer getFormattedAge(DebugExam table) {
-        return AgeCalculator.calculateAge(table.getDateOfBirth());
+    /**
+     * Blanks a recycled card whose summary is not available.
+     */
+    public void clear() {
+        txtViewPatientName.setText("");
+        txtViewEmail.setText("");
+        txtViewPhone.setText("");
+        mTime.setText("");
+        mDateRef.setText("");
+        mPrescribed.setVisibility(View.INVISIBLE);
+        mArchive.setVisibility(View.INVISIBLE);
+        mArchive.setOnClickListener(null);
+        layoutCard.setOnClickListener(null);
     }
 
-    public void loadMeasurement(final DebugExam exam, final NavActivity act, final ReadingsFragment.DebugExamAdapter adapter) {
+    public void loadMeasurement(final DebugExamSummary exam, final NavActivity act, final ReadingsFragment.DebugExamAdapter adapter) {
         mPrescribed.setVisibility(exam.isPrescribed() ? View.VISIBLE : View.INVISIBLE);
         txtViewEmail.setText(exam.getPrescriptionEmail());
 
@@ -127,13 +139,11 @@ public class DebugExam2Holder extends RecyclerView.ViewHolder {
         mArchive.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                exam.setStatus("archived");
+                DebugExam full = NetraGApplication.get().getSqliteHelper().findDebugExam(exam.getId());
+                full.setStatus("archived");
 
                 //Saving on DB
-                NetraGApplication.get().getSqliteHelper().saveDebugExam(exam);
-                NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncDebug(exam);
-                NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncInsight(exam);
-                NetraGApplication.get().getSqliteHelper().debugExamTable.setReadyToDeleteWhenSync(exam);
+                NetraGApplication.get().getSqliteHelper().saveDebugExamToSync(full, true);
 
                 //Removing item and updating list
                 adapter.removeItem(getAdapterPosition());
@@ -143,14 +153,14 @@ public class DebugExam2Holder extends RecyclerView.ViewHolder {
         layoutCard.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                NetraGApplication.get().setLastResult(exam);
+                NetraGApplication.get().setLastResult(NetraGApplication.get().getSqliteHelper().findDebugExam(exam.getId()));
                 act.loadResultsFragment(false);
             }
         });
 
         txtViewPatientName.setText(exam.getStudyName());
         if (exam.getDateOfBirth() != null)
-            txtViewPatientName.setText(exam.getStudyName() + ", " + getFormattedAge(exam));
+            txtViewPatientName.setText(exam.getStudyName() + ", " + AgeCalculator.calculateAge(exam.getDateOfBirth()));
 
         if (exam.getStudyName() == null || exam.getStudyName().isEmpty()) {
             txtViewPatientName.setText(act.getResources().getString(R.string.number_prefix_reading_card_empty_note) + exam.getSequenceNumber());
@@ -57,6 +57,8 @@ public class Column {
     public boolean autoincrement;
     public boolean notNull;
     public String defaultValue;
+    public boolean indexed;
+    public boolean lazy;
 
     public Column(String name, ColumnType type) {
         init(name, type, false, false, false, null);
@@ -73,4 +75,21 @@ public class Column {
         this.notNull = notNull;
         this.defaultValue = defaultValue;
     }
+
+    /**
+     * Asks the table to keep a single column index on this column.
+     */
+    public Column indexed() {
+        this.indexed = true;
+        return this;
+    }
+
+    /**
+     * Leaves this column out of the rows the table selects by default. The
+     * model fetches it by id the first time it is needed.
+     */
+    public Column lazy() {
+        this.lazy = true;
+        return this;
+    }
 }
@@ -23,32 +23,26 @@
  * pertinent jurisdictions. Having a license to use the source code does not imply on having
  * regulatory approvals to use or market any part of this code.
  */
-package com.vitorpamplona.core.testdevice.ui.convergence.particlesystem;
+package com.vitorpamplona.netra.model.db;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import com.vitorpamplona.netra.model.db.tables.Table;
 
-import com.vitorpamplona.core.testdevice.Particle;
+/**
+ * Fetches one lazy column of one row on demand.
+ */
+public class ColumnLoader {
 
-import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.robolectric.RobolectricTestRunner;
-import org.robolectric.annotation.Config;
+    protected final Table mTable;
+    protected final long mId;
+    protected final String mColumnName;
+
+    public ColumnLoader(Table table, long id, String columnName) {
+        mTable = table;
+        mId = id;
+        mColumnName = columnName;
+    }
 
-@RunWith(RobolectricTestRunner.class)
-@Config(sdk = 21)
-public class ParticleTest {
-    @Test
-    public void testValidAngles() {
-        Particle p = new Particle(0, 0, 15);
-        assertFalse(p.isLegalDirection(Math.toRadians(0)));
-        assertTrue(p.isLegalDirection(Math.toRadians(26)));
-        assertFalse(p.isLegalDirection(Math.toRadians(45)));
-        assertTrue(p.isLegalDirection(Math.toRadians(65)));
-        assertTrue(p.isLegalDirection(Math.toRadians(90)));
-        assertTrue(p.isLegalDirection(Math.toRadians(120)));
-        assertFalse(p.isLegalDirection(Math.toRadians(135)));
-        assertTrue(p.isLegalDirection(Math.toRadians(160)));
-        assertFalse(p.isLegalDirection(Math.toRadians(179)));
+    public byte[] load() {
+        return mTable.loadBlob(mId, mColumnName);
     }
 }
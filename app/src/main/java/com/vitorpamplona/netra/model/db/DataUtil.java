@@ -27,6 +27,8 @@ package com.vitorpamplona.netra.model.db;
 
 import android.database.Cursor;
 
+import com.google.gson.Gson;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,7 +38,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.StringWriter;
+import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -548,6 +553,31 @@ public class DataUtil {
         return ret;
     }
 
+    /**
+     * Same bytes as compress(gson.toJson(src)), but streams the JSON straight
+     * into the gzip buffer instead of building the whole string first.
+     */
+    public static byte[] compressJson(Gson gson, Object src, Type typeOfSrc) {
+        if (src == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] ret = null;
+
+        try {
+            Writer writer = new OutputStreamWriter(new GZIPOutputStream(baos), "UTF-8");
+            gson.toJson(src, typeOfSrc, writer);
+            writer.close();
+
+            ret = baos.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return ret;
+    }
+
     public static String decompress(byte[] originalZippedData) {
         if (originalZippedData == null) {
             return null;
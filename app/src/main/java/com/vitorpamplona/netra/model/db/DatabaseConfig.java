@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Locale;
+
+/**
+ * Connection settings applied by SQLiteHelper when it opens the database.
+ * The default keeps SQLite's own settings (rollback journal); tuned() turns
+ * on write-ahead logging so the screens can keep reading while an exam is
+ * being written.
+ */
+public class DatabaseConfig {
+
+    public static final String SYNCHRONOUS_FULL = "FULL";
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+
+    protected boolean mWriteAheadLogging;
+    protected String mSynchronous;
+    protected int mCacheSizeKb;
+    protected boolean mTempStoreInMemory;
+
+    public static DatabaseConfig defaults() {
+        return new DatabaseConfig();
+    }
+
+    /**
+     * WAL is durable across crashes with synchronous=NORMAL; only the last
+     * commits may roll back on power loss.
+     */
+    public static DatabaseConfig tuned() {
+        return new DatabaseConfig()
+                .setWriteAheadLogging(true)
+                .setSynchronous(SYNCHRONOUS_NORMAL)
+                .setCacheSizeKb(2048)
+                .setTempStoreInMemory(true);
+    }
+
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    public DatabaseConfig setWriteAheadLogging(boolean writeAheadLogging) {
+        mWriteAheadLogging = writeAheadLogging;
+        return this;
+    }
+
+    public String getSynchronous() {
+        return mSynchronous;
+    }
+
+    public DatabaseConfig setSynchronous(String synchronous) {
+        mSynchronous = synchronous;
+        return this;
+    }
+
+    public int getCacheSizeKb() {
+        return mCacheSizeKb;
+    }
+
+    public DatabaseConfig setCacheSizeKb(int cacheSizeKb) {
+        mCacheSizeKb = cacheSizeKb;
+        return this;
+    }
+
+    public boolean isTempStoreInMemory() {
+        return mTempStoreInMemory;
+    }
+
+    public DatabaseConfig setTempStoreInMemory(boolean tempStoreInMemory) {
+        mTempStoreInMemory = tempStoreInMemory;
+        return this;
+    }
+
+    /**
+     * Runs the pragmas on a connection that is being configured. Unset
+     * values are left alone.
+     */
+    public void applyPragmas(SQLiteDatabase db) {
+        if (mSynchronous != null) {
+            db.execSQL("PRAGMA synchronous=" + mSynchronous);
+        }
+        if (mCacheSizeKb > 0) {
+            // negative sizes are in KiB instead of pages
+            db.execSQL(String.format(Locale.US, "PRAGMA cache_size=-%d", mCacheSizeKb));
+        }
+        if (mTempStoreInMemory) {
+            db.execSQL("PRAGMA temp_store=MEMORY");
+        }
+    }
+}
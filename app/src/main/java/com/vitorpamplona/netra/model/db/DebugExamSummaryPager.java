@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.database.Cursor;
+import android.util.LruCache;
+
+import com.vitorpamplona.netra.model.db.objects.DebugExamSummary;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds the readings list one page at a time. The ids and their order come
+ * from ExamIndex; DebugExamTable.findSummaries only fetches the rows of a
+ * page by id. The last hydrated rows stay in a small LRU, so binding a card
+ * doesn't load the whole exam and its refractions.
+ */
+public class DebugExamSummaryPager {
+
+    public static final int PAGE_SIZE = 40;
+    public static final int CACHED_PAGES = 3;
+
+    protected final SQLiteHelper mDbHelper;
+    protected final String mUsername;
+
+    protected final LruCache<Integer, DebugExamSummary> mCache = new LruCache<Integer, DebugExamSummary>(PAGE_SIZE * CACHED_PAGES);
+    protected List<Long> mIds;
+
+    public DebugExamSummaryPager(SQLiteHelper helper, String username) {
+        mDbHelper = helper;
+        mUsername = username;
+    }
+
+    protected List<Long> ids() {
+        if (mIds == null) {
+            mIds = mUsername == null ? Collections.<Long>emptyList() : mDbHelper.getExamIndex().findIds(mUsername, null, null);
+        }
+        return mIds;
+    }
+
+    public int getCount() {
+        return ids().size();
+    }
+
+    public DebugExamSummary get(int position) {
+        DebugExamSummary s = mCache.get(position);
+        if (s == null) {
+            loadPage(position / PAGE_SIZE);
+            s = mCache.get(position);
+        }
+        return s;
+    }
+
+    protected void loadPage(int page) {
+        List<Long> ids = ids();
+        int offset = page * PAGE_SIZE;
+        if (offset >= ids.size()) return;
+
+        List<Long> pageIds = ids.subList(offset, Math.min(ids.size(), offset + PAGE_SIZE));
+
+        Map<Long, DebugExamSummary> byId = new HashMap<Long, DebugExamSummary>();
+        Cursor c = mDbHelper.debugExamTable.findSummaries(pageIds);
+        while (c.moveToNext()) {
+            DebugExamSummary s = new DebugExamSummary(c);
+            byId.put(s.getId(), s);
+        }
+        c.close();
+
+        // rows deleted since the ids were taken are left empty
+        for (int i = 0; i < pageIds.size(); i++) {
+            DebugExamSummary s = byId.get(pageIds.get(i));
+            if (s != null) {
+                mCache.put(offset + i, s);
+            }
+        }
+    }
+
+    /**
+     * Drops cached rows and the ids after exams are added, archived or synced.
+     */
+    public void invalidate() {
+        mCache.evictAll();
+        mIds = null;
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.google.gson.stream.JsonWriter;
+import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
+import com.vitorpamplona.netra.model.db.tables.RefractionTable;
+import com.vitorpamplona.netra.model.db.tables.Table;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams exams to newline-delimited JSON, one exam per line with its
+ * refractions nested, straight from the tables: exams and refractions are
+ * walked side by side with forward-only cursors, PAGE_SIZE exams at a time,
+ * and lazy columns are read one row at a time, so memory stays flat however
+ * large the database is. Gzipped history and raw data columns are written as
+ * their JSON text.
+ *
+ * Each page is written as a complete gzip member, and concatenated members
+ * read back as a single stream. exportTo records the last exam id and the
+ * file length after every page, so an interrupted export resumes from the
+ * last complete page.
+ */
+public class ExamExporter {
+
+    public static final String TAG = "ExamExporter";
+
+    public static final int PAGE_SIZE = 100;
+
+    public static final String PROGRESS_SUFFIX = ".progress";
+
+    /**
+     * How far an export file got: the last exam id of its last complete page
+     * and the file length at that point.
+     */
+    public static class Progress {
+        public final long lastId;
+        public final long length;
+
+        public Progress(long lastId, long length) {
+            this.lastId = lastId;
+            this.length = length;
+        }
+    }
+
+    protected final SQLiteHelper mDbHelper;
+    protected boolean mCompress = true;
+
+    public ExamExporter(SQLiteHelper helper) {
+        mDbHelper = helper;
+    }
+
+    public ExamExporter setCompress(boolean compress) {
+        mCompress = compress;
+        return this;
+    }
+
+    /**
+     * Adds the exams the file does not have yet. Whatever an interrupted
+     * run left after its last complete page is dropped first.
+     *
+     * @return the last exam id in the file.
+     */
+    public long exportTo(File file) throws IOException {
+        Progress progress = getProgress(file);
+
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.getChannel().truncate(progress.length);
+
+            long last = progress.lastId;
+            while (true) {
+                long pageLast = exportPage(out, last, null);
+                if (pageLast == last) {
+                    break;
+                }
+                last = pageLast;
+
+                out.flush();
+                out.getFD().sync();
+                setProgress(file, new Progress(last, out.getChannel().size()));
+            }
+            return last;
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return how far the file got, as recorded after its last complete page.
+     */
+    public static Progress getProgress(File file) throws IOException {
+        File progress = new File(file.getPath() + PROGRESS_SUFFIX);
+        if (!file.exists() || !progress.exists()) {
+            return new Progress(0, 0);
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(progress), "UTF-8"));
+        try {
+            String[] values = reader.readLine().split(" ");
+            return new Progress(Long.parseLong(values[0]), Long.parseLong(values[1]));
+        } catch (RuntimeException e) {
+            throw new IOException("Unreadable export progress " + progress + ": " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    protected static void setProgress(File file, Progress p) throws IOException {
+        File progress = new File(file.getPath() + PROGRESS_SUFFIX);
+        File tmp = new File(progress.getPath() + ".tmp");
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+        try {
+            writer.write(p.lastId + " " + p.length + "\n");
+        } finally {
+            writer.close();
+        }
+
+        // rename replaces the old record in one step
+        if (!tmp.renameTo(progress)) {
+            throw new IOException("Could not save export progress to " + progress);
+        }
+    }
+
+    /**
+     * Writes exams with afterId < id <= upToId (no upper bound when upToId
+     * is null). Flushes but does not close out.
+     *
+     * @return the last exam id written, or afterId if there was none.
+     */
+    public long export(OutputStream out, long afterId, Long upToId) throws IOException {
+        long last = afterId;
+        while (true) {
+            long pageLast = exportPage(out, last, upToId);
+            if (pageLast == last) {
+                break;
+            }
+            last = pageLast;
+        }
+
+        out.flush();
+
+        return last;
+    }
+
+    /**
+     * Writes the next page as a complete gzip member (or plain lines).
+     *
+     * @return the last exam id written, or afterId if there was none.
+     */
+    protected long exportPage(OutputStream out, long afterId, Long upToId) throws IOException {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        DebugExamTable examTable = mDbHelper.debugExamTable;
+        RefractionTable refractionTable = mDbHelper.refractionTable;
+
+        String range = DebugExamTable.ID + ">?" + (upToId != null ? " AND " + DebugExamTable.ID + "<=?" : "");
+        String[] rangeArgs = upToId != null
+                ? new String[]{String.valueOf(afterId), upToId.toString()}
+                : new String[]{String.valueOf(afterId)};
+
+        Cursor exams = db.query(DebugExamTable.TABLE_NAME, examTable.getEagerProjection(), range, rangeArgs, null, null,
+                DebugExamTable.ID, String.valueOf(PAGE_SIZE));
+
+        if (!exams.moveToLast()) {
+            exams.close();
+            return afterId;
+        }
+        long pageLast = DataUtil.getLong(exams, DebugExamTable.ID);
+        exams.moveToPosition(-1);
+
+        Cursor refractions = db.query(RefractionTable.TABLE_NAME, refractionTable.getEagerProjection(),
+                RefractionTable.DEBUG_EXAM_ID + ">? AND " + RefractionTable.DEBUG_EXAM_ID + "<=?",
+                new String[]{String.valueOf(afterId), String.valueOf(pageLast)}, null, null,
+                RefractionTable.DEBUG_EXAM_ID + "," + RefractionTable.ID);
+
+        List<String> examLazyColumns = getLazyColumnNames(examTable);
+        List<String> refractionLazyColumns = getLazyColumnNames(refractionTable);
+
+        GZIPOutputStream gzip = mCompress ? new GZIPOutputStream(out) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : out, "UTF-8"));
+
+        JsonWriter json = new JsonWriter(writer);
+        // lenient: one top-level object per line
+        json.setLenient(true);
+
+        try {
+            int examIdColumn = exams.getColumnIndex(DebugExamTable.ID);
+            int refractionIdColumn = refractions.getColumnIndex(RefractionTable.ID);
+            int refractionExamColumn = refractions.getColumnIndex(RefractionTable.DEBUG_EXAM_ID);
+            boolean hasRefraction = refractions.moveToNext();
+
+            while (exams.moveToNext()) {
+                long examId = exams.getLong(examIdColumn);
+
+                json.beginObject();
+                writeColumns(json, exams, examTable, examId);
+                writeLazyColumns(json, examTable, examId, examLazyColumns);
+
+                json.name("refractions");
+                json.beginArray();
+                // refractions of exams deleted in between are skipped
+                while (hasRefraction && refractions.getLong(refractionExamColumn) <= examId) {
+                    if (refractions.getLong(refractionExamColumn) == examId) {
+                        json.beginObject();
+                        long refractionId = refractions.getLong(refractionIdColumn);
+                        writeColumns(json, refractions, refractionTable, refractionId);
+                        writeLazyColumns(json, refractionTable, refractionId, refractionLazyColumns);
+                        json.endObject();
+                    }
+                    hasRefraction = refractions.moveToNext();
+                }
+                json.endArray();
+
+                json.endObject();
+                // JsonWriter has no buffer of its own, so this lands right after the object
+                writer.write('\n');
+            }
+        } finally {
+            exams.close();
+            refractions.close();
+        }
+
+        json.flush();
+        writer.flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+
+        return pageLast;
+    }
+
+    protected static List<String> getLazyColumnNames(Table table) {
+        List<String> names = new ArrayList<String>();
+        for (Column c : table.getColumns()) {
+            if (c.lazy) {
+                names.add(c.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Lazy columns hold the large blobs, so they are loaded one at a time.
+     */
+    protected void writeLazyColumns(JsonWriter json, Table table, long id, List<String> columnNames) throws IOException {
+        for (String name : columnNames) {
+            json.name(name);
+            writeBlob(json, table, id, name, table.loadBlob(id, name));
+        }
+    }
+
+    protected void writeColumns(JsonWriter json, Cursor c, Table table, long id) throws IOException {
+        for (int i = 0; i < c.getColumnCount(); i++) {
+            json.name(c.getColumnName(i));
+
+            switch (c.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    json.nullValue();
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    json.value(c.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    json.value(c.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    writeBlob(json, table, id, c.getColumnName(i), c.getBlob(i));
+                    break;
+                default:
+                    json.value(c.getString(i));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Blobs are gzipped text. One that isn't is written as null and logged.
+     */
+    protected void writeBlob(JsonWriter json, Table table, long id, String columnName, byte[] blob) throws IOException {
+        String text = DataUtil.decompress(blob);
+        if (blob != null && text == null) {
+            Log.w(TAG, "Skipping " + table.getName() + "." + columnName + " of row " + id + ": not gzipped text");
+        }
+        json.value(text);
+    }
+}
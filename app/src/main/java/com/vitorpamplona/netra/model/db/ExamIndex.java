@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory summary of every exam (ids, owner, tested date, status and sync
+ * flags) for counters and lookups that would otherwise hit SQLite each time.
+ * Built from one scan on first use and kept current by DebugExamTable after
+ * each committed save or delete. Thread safe.
+ */
+public class ExamIndex {
+
+    public static final String ARCHIVED = "archived";
+
+    public static class Entry {
+        public long id;
+        public String syncId;
+        public String username;
+        public long tested;
+        public String status;
+        public boolean toSyncDebug;
+        public boolean toSyncInsight;
+        public Integer prescriptionSyncId;
+
+        public boolean isArchived() {
+            return ARCHIVED.equals(status);
+        }
+
+        public boolean isPrescribed() {
+            return prescriptionSyncId != null;
+        }
+
+        public boolean isWaitingToSync() {
+            return toSyncDebug || toSyncInsight || (prescriptionSyncId != null && prescriptionSyncId == -1);
+        }
+    }
+
+    protected final SQLiteHelper mDbHelper;
+
+    protected Map<Long, Entry> mById;
+    protected final Map<String, Entry> mBySyncId = new HashMap<String, Entry>();
+
+    public ExamIndex(SQLiteHelper helper) {
+        mDbHelper = helper;
+    }
+
+    protected void ensureLoaded() {
+        if (mById != null) return;
+
+        mById = new HashMap<Long, Entry>();
+        mBySyncId.clear();
+
+        Cursor c = mDbHelper.debugExamTable.findIndexRows();
+        while (c.moveToNext()) {
+            Entry e = new Entry();
+            e.id = DataUtil.getLong(c, DebugExamTable.ID);
+            e.syncId = DataUtil.getString(c, DebugExamTable.SYNC_ID);
+            e.username = DataUtil.getString(c, DebugExamTable.SERVER_USER_NAME);
+            e.tested = toMillis(DataUtil.timestampStringToDate(DataUtil.getString(c, DebugExamTable.TESTED)));
+            e.status = DataUtil.getString(c, DebugExamTable.STATUS);
+            e.toSyncDebug = isTrue(DataUtil.getInteger(c, DebugExamTable.TO_SYNC_DEBUG));
+            e.toSyncInsight = isTrue(DataUtil.getInteger(c, DebugExamTable.TO_SYNC_INSIGHT));
+            e.prescriptionSyncId = DataUtil.getInteger(c, DebugExamTable.PRESCRIPTION_SYNC_ID);
+            put(e);
+        }
+        c.close();
+    }
+
+    protected void put(Entry e) {
+        mById.put(e.id, e);
+        if (e.syncId != null) {
+            mBySyncId.put(e.syncId, e);
+        }
+    }
+
+    /**
+     * Forgets everything; the next query scans the table again.
+     */
+    public synchronized void invalidate() {
+        mById = null;
+        mBySyncId.clear();
+    }
+
+    /**
+     * Applies the columns of a committed save. A partial save of a row the
+     * index does not know yet can't be summarized, so it forces a rescan.
+     */
+    public synchronized void onSaved(long id, ContentValues cv) {
+        if (mById == null) return;
+
+        Entry e = mById.get(id);
+        if (e == null) {
+            if (!cv.containsKey(DebugExamTable.SERVER_USER_NAME)) {
+                invalidate();
+                return;
+            }
+            e = new Entry();
+            e.id = id;
+        }
+
+        if (cv.containsKey(DebugExamTable.SYNC_ID)) {
+            if (e.syncId != null) mBySyncId.remove(e.syncId);
+            e.syncId = cv.getAsString(DebugExamTable.SYNC_ID);
+        }
+        if (cv.containsKey(DebugExamTable.SERVER_USER_NAME)) {
+            e.username = cv.getAsString(DebugExamTable.SERVER_USER_NAME);
+        }
+        if (cv.containsKey(DebugExamTable.TESTED)) {
+            e.tested = toMillis(DataUtil.timestampStringToDate(cv.getAsString(DebugExamTable.TESTED)));
+        }
+        if (cv.containsKey(DebugExamTable.STATUS)) {
+            e.status = cv.getAsString(DebugExamTable.STATUS);
+        }
+        if (cv.containsKey(DebugExamTable.TO_SYNC_DEBUG)) {
+            e.toSyncDebug = Boolean.TRUE.equals(cv.getAsBoolean(DebugExamTable.TO_SYNC_DEBUG));
+        }
+        if (cv.containsKey(DebugExamTable.TO_SYNC_INSIGHT)) {
+            e.toSyncInsight = Boolean.TRUE.equals(cv.getAsBoolean(DebugExamTable.TO_SYNC_INSIGHT));
+        }
+        if (cv.containsKey(DebugExamTable.PRESCRIPTION_SYNC_ID)) {
+            e.prescriptionSyncId = cv.getAsInteger(DebugExamTable.PRESCRIPTION_SYNC_ID);
+        }
+
+        put(e);
+    }
+
+    public synchronized void onSaved(List<Long> ids, ContentValues cv) {
+        for (Long id : ids) {
+            onSaved(id, cv);
+        }
+    }
+
+    public synchronized void onDeleted(long id) {
+        if (mById == null) return;
+
+        Entry e = mById.remove(id);
+        if (e != null && e.syncId != null) {
+            mBySyncId.remove(e.syncId);
+        }
+    }
+
+    public synchronized int countMeasurements(String username) {
+        ensureLoaded();
+        int count = 0;
+        for (Entry e : mById.values()) {
+            if (isOwner(e, username) && !e.isArchived()) count++;
+        }
+        return count;
+    }
+
+    public synchronized int countPrescriptions(String username) {
+        ensureLoaded();
+        int count = 0;
+        for (Entry e : mById.values()) {
+            if (isOwner(e, username) && !e.isArchived() && e.isPrescribed()) count++;
+        }
+        return count;
+    }
+
+    public synchronized int countToSync(String username) {
+        ensureLoaded();
+        int count = 0;
+        for (Entry e : mById.values()) {
+            if (isOwner(e, username) && !e.isArchived() && e.isWaitingToSync()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Exams of the user with this status. A null status counts the exams that have none.
+     */
+    public synchronized int countByStatus(String username, String status) {
+        ensureLoaded();
+        int count = 0;
+        for (Entry e : mById.values()) {
+            if (isOwner(e, username) && (status == null ? e.status == null : status.equals(e.status))) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Ids of the user's exams that are not archived and were tested in [from, to),
+     * newest first like the readings list. Null bounds are open.
+     */
+    public synchronized List<Long> findIds(String username, Date from, Date to) {
+        ensureLoaded();
+
+        List<Long> ids = new ArrayList<Long>();
+        for (Entry e : mById.values()) {
+            if (!isOwner(e, username) || e.isArchived()) continue;
+            if (from != null && e.tested < from.getTime()) continue;
+            if (to != null && e.tested >= to.getTime()) continue;
+            ids.add(e.id);
+        }
+
+        Collections.sort(ids, Collections.<Long>reverseOrder());
+        return ids;
+    }
+
+    public synchronized Long findId(UUID syncId) {
+        ensureLoaded();
+        Entry e = mBySyncId.get(syncId.toString());
+        return e != null ? e.id : null;
+    }
+
+    protected static boolean isOwner(Entry e, String username) {
+        return username != null && username.equals(e.username);
+    }
+
+    protected static boolean isTrue(Integer i) {
+        return i != null && i != 0;
+    }
+
+    protected static long toMillis(Date d) {
+        return d != null ? d.getTime() : 0;
+    }
+}
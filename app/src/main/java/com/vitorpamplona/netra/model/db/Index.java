@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+/**
+ * Secondary index over one or more columns of a table. Created by
+ * SQLiteHelper.createTable after the table itself.
+ */
+public class Index {
+
+    public static final String SUFFIX = "_idx";
+
+    public final String name;
+    public final String[] columns;
+
+    public Index(String tableName, String... columns) {
+        String name = tableName;
+        for (String c : columns) {
+            name += "_" + c;
+        }
+        this.name = name + SUFFIX;
+        this.columns = columns;
+    }
+
+    public String getCreateSQL(String tableName) {
+        String s = "CREATE INDEX IF NOT EXISTS " + name + " ON " + tableName + " (";
+        for (int i = 0; i < columns.length; i++) {
+            s += columns[i];
+            if (i < columns.length - 1) {
+                s += ",";
+            }
+        }
+        s += ");";
+        return s;
+    }
+
+    public String getDropSQL() {
+        return "DROP INDEX IF EXISTS " + name + ";";
+    }
+}
@@ -26,25 +26,40 @@
 package com.vitorpamplona.netra.model.db;
 
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.vitorpamplona.netra.activity.NetraGApplication;
 import com.vitorpamplona.netra.model.db.objects.Customer;
 import com.vitorpamplona.netra.model.db.objects.DebugExam;
 import com.vitorpamplona.netra.model.db.objects.Refraction;
+import com.vitorpamplona.netra.model.db.sync.SyncServer;
+import com.vitorpamplona.netra.model.db.sync.SyncTarget;
+import com.vitorpamplona.netra.model.db.sync.SyncWorker;
 import com.vitorpamplona.netra.model.db.tables.CustomerTable;
 import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
 import com.vitorpamplona.netra.model.db.tables.RefractionTable;
+import com.vitorpamplona.netra.model.db.tables.SyncOutboxTable;
 import com.vitorpamplona.netra.model.db.tables.Table;
 
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SQLiteHelper extends SQLiteOpenHelper {
 
@@ -52,21 +67,41 @@ public class SQLiteHelper extends SQLiteOpenHelper {
 
     public static final String DATABASE_NAME = "telerx";
     public static final String DEV_DATABASE_NAME = "debug_telerx";
-    public static final int DATABASE_VERSION = 26; // added status field to exams
+    public static final int DATABASE_VERSION = 28; // added sync outbox
 
     public static final String TEMP_SUFFIX = "_temp";
+    public static final int MIGRATION_CHUNK = 500;
 
     protected NetraGApplication mApp;
 
     protected List<Table> mTables = new ArrayList<Table>();
 
+    protected final DatabaseConfig mConfig;
+    protected ExecutorService mWriter;
+    protected MigrationListener mMigrationListener;
+
+    protected SyncServer mSyncServer;
+    protected ExecutorService mSyncer;
+    protected final AtomicBoolean mSyncRequested = new AtomicBoolean();
+    protected final ExamIndex mExamIndex = new ExamIndex(this);
+
     public final DebugExamTable debugExamTable;
     public final RefractionTable refractionTable;
     public final CustomerTable customerTable;
+    public final SyncOutboxTable syncOutboxTable;
 
     public SQLiteHelper(NetraGApplication app, boolean isDev) {
+        this(app, isDev, DatabaseConfig.defaults());
+    }
+
+    public SQLiteHelper(NetraGApplication app, boolean isDev, DatabaseConfig config) {
         super(app, (isDev ? DEV_DATABASE_NAME : DATABASE_NAME), null, DATABASE_VERSION);
         mApp = app;
+        mConfig = config;
+
+        // With WAL the framework keeps a pool of read connections next to the
+        // single write connection, so reads no longer wait for a save.
+        setWriteAheadLoggingEnabled(config.isWriteAheadLogging());
 
         debugExamTable = new DebugExamTable(this);
         mTables.add(debugExamTable);
@@ -76,6 +111,19 @@ public class SQLiteHelper extends SQLiteOpenHelper {
 
         customerTable = new CustomerTable(this);
         mTables.add(customerTable);
+
+        syncOutboxTable = new SyncOutboxTable(this);
+        mTables.add(syncOutboxTable);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        mConfig.applyPragmas(db);
+    }
+
+    public DatabaseConfig getConfig() {
+        return mConfig;
     }
 
     @Override
@@ -97,6 +145,8 @@ public class SQLiteHelper extends SQLiteOpenHelper {
                 upgradeTable(db, t);
             }
 
+            syncOutboxTable.backfill(db);
+
             db.setTransactionSuccessful();
 
         } catch (SQLiteException e) {
@@ -107,6 +157,11 @@ public class SQLiteHelper extends SQLiteOpenHelper {
     }
 
     public DebugExam findDebugExam(UUID id) {
+        Long rowId = mExamIndex.findId(id);
+        if (rowId != null) {
+            return findDebugExam(rowId);
+        }
+
         DebugExam e = new DebugExam();
         e.setSyncId(id);
         debugExamTable.find(e);
@@ -144,6 +199,8 @@ public class SQLiteHelper extends SQLiteOpenHelper {
         public int measurements;
         public int prescriptions;
         public int readyToSync;
+        public int archived;
+        public int testedToday;
     }
 
     public UsageStats stats(String username) {
@@ -151,33 +208,195 @@ public class SQLiteHelper extends SQLiteOpenHelper {
 
         if (username == null) return stats;
 
-        stats.measurements = debugExamTable.countMeasurements(username);
-        stats.prescriptions = debugExamTable.countPrescriptions(username);
-        stats.readyToSync = debugExamTable.countToSyncIds(username);
+        stats.measurements = mExamIndex.countMeasurements(username);
+        stats.prescriptions = mExamIndex.countPrescriptions(username);
+        stats.readyToSync = mExamIndex.countToSync(username);
+        stats.archived = mExamIndex.countByStatus(username, ExamIndex.ARCHIVED);
+        stats.testedToday = mExamIndex.findIds(username, startOfToday(), null).size();
         return stats;
     }
 
+    protected static Date startOfToday() {
+        Calendar today = Calendar.getInstance();
+        today.set(Calendar.HOUR_OF_DAY, 0);
+        today.set(Calendar.MINUTE, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MILLISECOND, 0);
+        return today.getTime();
+    }
+
     public Cursor allIds(String username) {
         return debugExamTable.findAll(username);
     }
 
+    public ExamIndex getExamIndex() {
+        return mExamIndex;
+    }
+
+    public DebugExamSummaryPager examSummaries(String username) {
+        return new DebugExamSummaryPager(this, username);
+    }
+
     public Cursor allCustomerIds(String username) {
         return customerTable.findAll(username);
     }
 
     //** DEBUG SAVE **//
 
+    public UnitOfWork beginWork() {
+        return new UnitOfWork(getWritableDatabase());
+    }
+
+    /**
+     * Queues a write on the single background writer. Writes run one at a
+     * time, in the order they were queued, off the UI thread.
+     */
+    public synchronized void write(Runnable task) {
+        if (mWriter == null) {
+            mWriter = Executors.newSingleThreadExecutor(backgroundThreads(TAG + "-writer"));
+        }
+        mWriter.execute(task);
+    }
+
+    protected static ThreadFactory backgroundThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        };
+    }
+
+    //** SYNC **//
+
+    /**
+     * Where the sync outbox is sent. Until one is set, exams just stay queued.
+     * Setting it also starts draining whatever was queued before.
+     */
+    public synchronized void setSyncServer(SyncServer server) {
+        mSyncServer = server;
+        requestSync();
+    }
+
+    /**
+     * Drains the sync outbox on its own background thread, away from the
+     * writer. Requests made while a run is still waiting to start join it.
+     */
+    public synchronized void requestSync() {
+        if (mSyncServer == null || !mSyncRequested.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (mSyncer == null) {
+            mSyncer = Executors.newSingleThreadExecutor(backgroundThreads(TAG + "-sync"));
+        }
+
+        final SyncWorker worker = new SyncWorker(this, mSyncServer);
+        mSyncer.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSyncRequested.set(false);
+                worker.run();
+            }
+        });
+    }
+
+    /**
+     * Saves on the writer thread and then runs onSaved, if any, on the main thread.
+     * The writer changes the exam while saving it, so do not hand it to other threads
+     * until onSaved runs.
+     */
+    public void saveDebugExamAsync(final DebugExam e, final Runnable onSaved) {
+        write(new Runnable() {
+            @Override
+            public void run() {
+                saveDebugExam(e);
+                if (onSaved != null) {
+                    new Handler(Looper.getMainLooper()).post(onSaved);
+                }
+            }
+        });
+    }
+
     public void saveDebugExam(DebugExam e) {
-        debugExamTable.save(e);
+        UnitOfWork work = beginWork();
+        try {
+            saveDebugExam(e, work);
+            work.setSuccessful();
+        } finally {
+            work.end();
+        }
+    }
+
+    public void saveDebugExam(DebugExam e, UnitOfWork work) {
+        debugExamTable.save(e, work);
 
         for (Refraction r : e.getRefractions().values()) {
-            refractionTable.save(r);
+            refractionTable.save(r, work);
+        }
+    }
+
+    /**
+     * Saves the exam and flags it to be synced, in a single transaction.
+     */
+    public void saveDebugExamToSync(DebugExam e, boolean canDeleteWhenSynced) {
+        UnitOfWork work = beginWork();
+        try {
+            saveDebugExam(e, work);
+            debugExamTable.setToSyncDebug(e, work);
+            debugExamTable.setToSyncInsight(e, work);
+            syncOutboxTable.enqueue(e.getId(), SyncTarget.DEBUG, work);
+            syncOutboxTable.enqueue(e.getId(), SyncTarget.INSIGHT, work);
+            if (canDeleteWhenSynced) {
+                debugExamTable.setReadyToDeleteWhenSync(e, work);
+            }
+            work.setSuccessful();
+        } finally {
+            work.end();
+        }
+
+        requestSync();
+    }
+
+    public void setToSyncPrescription(DebugExam e) {
+        UnitOfWork work = beginWork();
+        try {
+            debugExamTable.setToSyncPrescription(e, work);
+            syncOutboxTable.enqueue(e.getId(), SyncTarget.PRESCRIPTION, work);
+            work.setSuccessful();
+        } finally {
+            work.end();
+        }
+
+        requestSync();
+    }
+
+    /**
+     * Bulk import: every exam and refraction in one transaction.
+     */
+    public void saveDebugExams(List<DebugExam> exams) {
+        UnitOfWork work = beginWork();
+        try {
+            for (DebugExam e : exams) {
+                saveDebugExam(e, work);
+            }
+            work.setSuccessful();
+        } finally {
+            work.end();
         }
     }
 
     public void deleteAll(List<Long> ids) {
-        for (Long id : ids) {
-            debugExamTable.delete(id);
+        UnitOfWork work = beginWork();
+        try {
+            for (Long id : ids) {
+                debugExamTable.delete(id, work);
+            }
+            work.setSuccessful();
+        } finally {
+            work.end();
         }
     }
 
@@ -191,24 +410,7 @@ public class SQLiteHelper extends SQLiteOpenHelper {
 
         s = "CREATE TABLE " + t.getName() + " (";
         for (Iterator<Column> i = t.getColumns().iterator(); i.hasNext(); ) {
-            Column c = i.next();
-            s += c.name + " " + c.type.getSQLiteType();
-
-            if (c.primaryKey) {
-                s += " " + Column.PRIMARY_KEY;
-            }
-
-            if (c.autoincrement) {
-                s += " " + Column.AUTOINCREMENT;
-            }
-
-            if (c.notNull) {
-                s += " " + Column.NOT_NULL;
-            }
-
-            if (c.defaultValue != null) {
-                s += " " + Column.DEFAULT + " " + c.defaultValue;
-            }
+            s += columnDefinition(i.next());
 
             if (i.hasNext()) {
                 s += ",";
@@ -217,48 +419,162 @@ public class SQLiteHelper extends SQLiteOpenHelper {
         s += ");";
 
         db.execSQL(s);
+
+        createIndexes(db, t);
     }
 
-    //TODO: only equipped to handle new columns; modified columns may crash
-    protected void upgradeTable(SQLiteDatabase db, Table t) {
+    protected String columnDefinition(Column c) {
+        String s = c.name + " " + c.type.getSQLiteType();
 
-        if (tableExists(db, t.getName())) {
-            String tempName = t.getName() + TEMP_SUFFIX;
+        if (c.primaryKey) {
+            s += " " + Column.PRIMARY_KEY;
+        }
+
+        if (c.autoincrement) {
+            s += " " + Column.AUTOINCREMENT;
+        }
 
-            dropTable(db, tempName);
-            renameTable(db, t.getName(), tempName);
+        if (c.notNull) {
+            s += " " + Column.NOT_NULL;
+        }
+
+        if (c.defaultValue != null) {
+            s += " " + Column.DEFAULT + " " + c.defaultValue;
+        }
+
+        return s;
+    }
+
+    // Index names are global, so drop any left on the renamed temp table before recreating them.
+    protected void createIndexes(SQLiteDatabase db, Table t) {
+        for (Index index : t.getIndexes()) {
+            db.execSQL(index.getDropSQL());
+            db.execSQL(index.getCreateSQL(t.getName()));
+        }
+    }
+
+    /**
+     * Notified while a table is rebuilt during an upgrade.
+     */
+    public interface MigrationListener {
+        void onCopyProgress(String tableName, long copied, long total);
+    }
+
+    public void setMigrationListener(MigrationListener listener) {
+        mMigrationListener = listener;
+    }
+
+    /**
+     * Columns that were only added are appended in place with ALTER TABLE.
+     * Anything else (a dropped column, a changed type, key, not null or default,
+     * a new column SQLite cannot add) rebuilds the table and copies the rows
+     * over in chunks.
+     */
+    protected void upgradeTable(SQLiteDatabase db, Table t) {
+
+        if (!tableExists(db, t.getName())) {
             createTable(db, t);
+            return;
+        }
+
+        HashMap<String, ColumnInfo> oldColumns = getColumnInfo(db, t.getName());
+        List<Column> added = new ArrayList<Column>();
 
-            HashMap<String, String> oldColumns = getColumnInfo(db, tempName);
-            HashMap<String, String> newColumns = getColumnInfo(db, t.getName());
+        if (isAdditive(t, oldColumns, added)) {
+            for (Column c : added) {
+                db.execSQL("ALTER TABLE " + t.getName() + " ADD COLUMN " + columnDefinition(c));
+            }
+            for (Index index : t.getIndexes()) {
+                db.execSQL(index.getCreateSQL(t.getName()));
+            }
+        } else {
+            rebuildTable(db, t, oldColumns);
+        }
+    }
 
-            newColumns.keySet().retainAll(oldColumns.keySet());
+    protected static boolean isAdditive(Table t, HashMap<String, ColumnInfo> oldColumns, List<Column> added) {
+        if (oldColumns.size() > t.getColumns().size()) {
+            return false;
+        }
 
-            //test for type match
-            ArrayList<String> columns = new ArrayList<String>();
-            for (String key : newColumns.keySet()) {
-                if (oldColumns.get(key).contentEquals(newColumns.get(key))) {
-                    columns.add(key);
+        for (Column c : t.getColumns()) {
+            ColumnInfo old = oldColumns.get(c.name);
+            if (old == null) {
+                if (c.primaryKey || (c.notNull && c.defaultValue == null)) {
+                    return false;
                 }
+                added.add(c);
+            } else if (!old.isDefinedAs(c)) {
+                return false;
             }
+        }
 
-            String colString = "";
-            for (String col : columns) {
-                colString += col + ",";
-            }
-            if (colString.length() > 0) {
+        // every column of the old table must still be in the new one
+        return oldColumns.size() + added.size() == t.getColumns().size();
+    }
 
-                colString = colString.substring(0, colString.length() - 1);
+    protected void rebuildTable(SQLiteDatabase db, Table t, HashMap<String, ColumnInfo> oldColumns) {
+        String tempName = t.getName() + TEMP_SUFFIX;
 
-                db.execSQL("INSERT INTO " + t.getName() + " (" + colString + ") SELECT " + colString + " FROM " + tempName + ";");
+        dropTable(db, tempName);
+        renameTable(db, t.getName(), tempName);
+        createTable(db, t);
+
+        //test for type match
+        ArrayList<String> columns = new ArrayList<String>();
+        for (Column c : t.getColumns()) {
+            ColumnInfo old = oldColumns.get(c.name);
+            if (old != null && old.hasType(c)) {
+                columns.add(c.name);
             }
+        }
 
-            //printTable(db, tempName);
-            //printTable(db, tableName);
+        if (columns.contains(t.getIdName())) {
+            copyInChunks(db, t, tempName, TextUtils.join(",", columns));
+        } else if (!columns.isEmpty()) {
+            String colString = TextUtils.join(",", columns);
+            db.execSQL("INSERT INTO " + t.getName() + " (" + colString + ") SELECT " + colString + " FROM " + tempName + ";");
+        }
 
-            dropTable(db, tempName);
-        } else {
-            createTable(db, t);
+        dropTable(db, tempName);
+    }
+
+    /**
+     * Copies rows in id order, MIGRATION_CHUNK at a time, reporting the progress.
+     * Each chunk is bounded by the ids of the old table, so nothing is recounted.
+     */
+    protected void copyInChunks(SQLiteDatabase db, Table t, String fromTable, String colString) {
+        long total = DatabaseUtils.queryNumEntries(db, fromTable);
+        long copied = 0;
+        long lastId = Long.MIN_VALUE;
+
+        String chunkEnd = "SELECT MAX(" + t.getIdName() + ") FROM (SELECT " + t.getIdName() + " FROM " + fromTable
+                + " WHERE " + t.getIdName() + " > ? ORDER BY " + t.getIdName() + " LIMIT " + MIGRATION_CHUNK + ")";
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + t.getName() + " (" + colString + ") SELECT " + colString
+                + " FROM " + fromTable + " WHERE " + t.getIdName() + " > ? AND " + t.getIdName() + " <= ?");
+
+        try {
+            while (true) {
+                Cursor c = db.rawQuery(chunkEnd, new String[]{Long.toString(lastId)});
+                Long upTo = c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : null;
+                c.close();
+
+                if (upTo == null) {
+                    break;
+                }
+
+                insert.bindLong(1, lastId);
+                insert.bindLong(2, upTo);
+                copied += insert.executeUpdateDelete();
+                lastId = upTo;
+
+                if (mMigrationListener != null) {
+                    mMigrationListener.onCopyProgress(t.getName(), copied, total);
+                }
+                Log.d(TAG, "Migrating " + t.getName() + ": " + copied + "/" + total);
+            }
+        } finally {
+            insert.close();
         }
     }
 
@@ -282,15 +598,42 @@ public class SQLiteHelper extends SQLiteOpenHelper {
         db.execSQL("DROP TABLE IF EXISTS '" + tableName + "'");
     }
 
-    //TODO: use columns notnull(3), dflt_value(4), pk(5)?
-    protected HashMap<String, String> getColumnInfo(SQLiteDatabase db, String tableName) {
-        HashMap<String, String> map = new HashMap<String, String>();
+    /**
+     * A column as the database has it, from PRAGMA table_info.
+     */
+    protected static class ColumnInfo {
+        public final String type;
+        public final boolean notNull;
+        public final String defaultValue;
+        public final boolean primaryKey;
+
+        public ColumnInfo(String type, boolean notNull, String defaultValue, boolean primaryKey) {
+            this.type = type;
+            this.notNull = notNull;
+            this.defaultValue = defaultValue;
+            this.primaryKey = primaryKey;
+        }
+
+        public boolean hasType(Column c) {
+            return type.equalsIgnoreCase(c.type.getSQLiteType());
+        }
+
+        public boolean isDefinedAs(Column c) {
+            return hasType(c)
+                    && notNull == c.notNull
+                    && primaryKey == c.primaryKey
+                    && (defaultValue == null ? c.defaultValue == null : defaultValue.equals(c.defaultValue));
+        }
+    }
+
+    protected HashMap<String, ColumnInfo> getColumnInfo(SQLiteDatabase db, String tableName) {
+        HashMap<String, ColumnInfo> map = new HashMap<String, ColumnInfo>();
 
         Cursor c = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
 
         while (c.moveToNext()) {
-            //1: name, 2: type
-            map.put(c.getString(1), c.getString(2));
+            //1: name, 2: type, 3: notnull, 4: dflt_value, 5: pk
+            map.put(c.getString(1), new ColumnInfo(c.getString(2), c.getInt(3) != 0, c.isNull(4) ? null : c.getString(4), c.getInt(5) != 0));
         }
         c.close();
 
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups many writes in a single transaction and reuses compiled statements
+ * across rows. Get one from SQLiteHelper.beginWork() and always end it:
+ *
+ * <pre>
+ * UnitOfWork work = helper.beginWork();
+ * try {
+ *     ...
+ *     work.setSuccessful();
+ * } finally {
+ *     work.end();
+ * }
+ * </pre>
+ *
+ * Work begun while another is open on the same thread joins it: SQLite
+ * nests the transactions and only the outermost one commits, so tasks
+ * queued with afterCommit wait for it too.
+ *
+ * Not thread safe: use it from the thread that began it.
+ */
+public class UnitOfWork {
+
+    /**
+     * The outermost work open on each thread.
+     */
+    protected static final ThreadLocal<UnitOfWork> sOutermost = new ThreadLocal<UnitOfWork>();
+
+    protected final SQLiteDatabase mDb;
+    protected final UnitOfWork mOuter;
+    protected final Map<String, SQLiteStatement> mStatements = new HashMap<String, SQLiteStatement>();
+    protected final List<Runnable> mAfterCommit = new ArrayList<Runnable>();
+    protected boolean mSuccessful;
+    protected boolean mInnerFailed;
+
+    public UnitOfWork(SQLiteDatabase db) {
+        mDb = db;
+        // Under WAL an immediate transaction lets readers keep going.
+        if (mDb.isWriteAheadLoggingEnabled()) {
+            mDb.beginTransactionNonExclusive();
+        } else {
+            mDb.beginTransaction();
+        }
+
+        mOuter = sOutermost.get();
+        if (mOuter == null) {
+            sOutermost.set(this);
+        }
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return mDb;
+    }
+
+    /**
+     * Compiles the statement the first time it is seen and clears its bindings.
+     */
+    public SQLiteStatement statement(String sql) {
+        SQLiteStatement s = mStatements.get(sql);
+        if (s == null) {
+            s = mDb.compileStatement(sql);
+            mStatements.put(sql, s);
+        }
+        s.clearBindings();
+        return s;
+    }
+
+    public long insert(String table, ContentValues cv) {
+        String sql = "INSERT INTO " + table + " (";
+        String values = "";
+        for (String key : cv.keySet()) {
+            if (values.length() > 0) {
+                sql += ",";
+                values += ",";
+            }
+            sql += key;
+            values += "?";
+        }
+        sql += ") VALUES (" + values + ")";
+
+        SQLiteStatement s = statement(sql);
+        bind(s, cv, 1);
+        return s.executeInsert();
+    }
+
+    public int update(String table, ContentValues cv, String whereClause, String[] whereArgs) {
+        String sql = "UPDATE " + table + " SET ";
+        boolean first = true;
+        for (String key : cv.keySet()) {
+            if (!first) sql += ",";
+            sql += key + "=?";
+            first = false;
+        }
+        sql += " WHERE " + whereClause;
+
+        SQLiteStatement s = statement(sql);
+        int i = bind(s, cv, 1);
+        bind(s, whereArgs, i);
+        return s.executeUpdateDelete();
+    }
+
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        SQLiteStatement s = statement("DELETE FROM " + table + " WHERE " + whereClause);
+        bind(s, whereArgs, 1);
+        return s.executeUpdateDelete();
+    }
+
+    /**
+     * @return the first column of the first row, or null if there are no rows.
+     */
+    public Long queryForLong(String sql, String[] args) {
+        SQLiteStatement s = statement(sql);
+        bind(s, args, 1);
+        try {
+            return s.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return null;
+        }
+    }
+
+    protected int bind(SQLiteStatement s, ContentValues cv, int index) {
+        for (String key : cv.keySet()) {
+            DatabaseUtils.bindObjectToProgram(s, index++, cv.get(key));
+        }
+        return index;
+    }
+
+    protected int bind(SQLiteStatement s, String[] args, int index) {
+        if (args == null) return index;
+        for (String arg : args) {
+            DatabaseUtils.bindObjectToProgram(s, index++, arg);
+        }
+        return index;
+    }
+
+    public void setSuccessful() {
+        mDb.setTransactionSuccessful();
+        mSuccessful = true;
+    }
+
+    /**
+     * Runs the task once the outermost transaction commits; dropped on rollback.
+     */
+    public void afterCommit(Runnable task) {
+        mAfterCommit.add(task);
+    }
+
+    /**
+     * Runs the task after work commits. Without work it waits for the work
+     * open on this thread, if any, and runs right away otherwise.
+     */
+    public static void afterCommit(UnitOfWork work, Runnable task) {
+        if (work == null) {
+            work = sOutermost.get();
+        }
+        if (work == null) {
+            task.run();
+        } else {
+            work.afterCommit(task);
+        }
+    }
+
+    /**
+     * Commits if setSuccessful was called, rolls back otherwise. Nested work
+     * hands its tasks to the outer work, and a failed one rolls it all back.
+     */
+    public void end() {
+        for (SQLiteStatement s : mStatements.values()) {
+            s.close();
+        }
+        mStatements.clear();
+        mDb.endTransaction();
+
+        if (mOuter != null) {
+            if (mSuccessful && !mInnerFailed) {
+                mOuter.mAfterCommit.addAll(mAfterCommit);
+            } else {
+                mOuter.mInnerFailed = true;
+            }
+            mAfterCommit.clear();
+            return;
+        }
+
+        sOutermost.remove();
+
+        if (mSuccessful && !mInnerFailed) {
+            for (Runnable task : mAfterCommit) {
+                task.run();
+            }
+        }
+        mAfterCommit.clear();
+    }
+}
@@ -51,7 +51,7 @@ public class ComputedPrescriptionJsonInterfaceAdapter implements JsonSerializer<
 
     public JsonElement serialize(ComputedPrescription object, Type interfaceType, JsonSerializationContext context) {
         final JsonObject wrapper = new JsonObject();
-        Gson builder = new Gson();
+        Gson builder = GsonProvider.PLAIN;
         wrapper.add("accepted", builder.toJsonTree(object.getAccepted(), object.getAccepted().getClass()));
         wrapper.add("rounded", builder.toJsonTree(object.getRounded(), object.getRounded().getClass()));
         wrapper.add("fitted", builder.toJsonTree(object.getFitted(), object.getFitted().getClass()));
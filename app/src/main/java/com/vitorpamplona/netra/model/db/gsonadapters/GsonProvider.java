@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.gsonadapters;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.vitorpamplona.core.models.ComputedPrescription;
+import com.vitorpamplona.domain.events.Event;
+
+/**
+ * Gson is thread safe and expensive to build, so the app shares one instance
+ * with the adapters for stored exam data registered once.
+ */
+public class GsonProvider {
+
+    private static class Holder {
+        static final Gson INSTANCE = new GsonBuilder()
+                .registerTypeAdapter(Event.class, new TypedJsonInterfaceAdapter<Event>())
+                .registerTypeAdapter(ComputedPrescription.class, new ComputedPrescriptionJsonInterfaceAdapter())
+                .create();
+    }
+
+    // Used inside the adapters, which must not recurse into themselves.
+    static final Gson PLAIN = new Gson();
+
+    public static Gson get() {
+        return Holder.INSTANCE;
+    }
+}
@@ -25,7 +25,6 @@
  */
 package com.vitorpamplona.netra.model.db.gsonadapters;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
@@ -41,8 +40,7 @@ public class TypedJsonInterfaceAdapter<T> implements JsonSerializer<T>, JsonDese
         final JsonObject wrapper = new JsonObject();
         wrapper.addProperty("type", object.getClass().getName());
 
-        Gson builder = new Gson();
-        wrapper.add("data", builder.toJsonTree(object, object.getClass()));
+        wrapper.add("data", GsonProvider.PLAIN.toJsonTree(object, object.getClass()));
         return wrapper;
     }
 
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.objects;
+
+import com.vitorpamplona.netra.model.db.ColumnLoader;
+import com.vitorpamplona.netra.model.db.DataUtil;
+
+/**
+ * Large text column kept in the gzipped form it is stored in. It is only
+ * inflated when the text is read, and only deflated again if it changed.
+ * Columns left out of the select are fetched through a loader on first use.
+ */
+public class CompressedText {
+
+    protected String mText;
+    protected byte[] mCompressed;
+    protected ColumnLoader mLoader;
+
+    public String get() {
+        load();
+        if (mText == null) {
+            mText = mCompressed != null ? DataUtil.decompress(mCompressed) : null;
+            if (mText == null) {
+                mText = "";
+            }
+        }
+        return mText;
+    }
+
+    public void set(String text) {
+        mText = text;
+        mCompressed = null;
+        mLoader = null;
+    }
+
+    public byte[] getCompressed() {
+        load();
+        if (mCompressed == null) {
+            mCompressed = DataUtil.compress(get());
+        }
+        return mCompressed;
+    }
+
+    public void setCompressed(byte[] compressed) {
+        mCompressed = compressed;
+        mText = null;
+        mLoader = null;
+    }
+
+    /**
+     * Defers reading the column until the text is first needed. Ignored if
+     * the value is already here.
+     */
+    public void loadLazily(ColumnLoader loader) {
+        if (mText == null && mCompressed == null) {
+            mLoader = loader;
+        }
+    }
+
+    public boolean isLoaded() {
+        return mLoader == null;
+    }
+
+    protected void load() {
+        if (mLoader != null) {
+            mCompressed = mLoader.load();
+            mLoader = null;
+        }
+    }
+}
@@ -28,16 +28,12 @@ package com.vitorpamplona.netra.model.db.objects;
 import android.database.Cursor;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.vitorpamplona.core.models.ComputedPrescription;
-import com.vitorpamplona.domain.events.Event;
 import com.vitorpamplona.netra.model.ExamResults;
 import com.vitorpamplona.netra.model.Prescription;
 import com.vitorpamplona.netra.model.RecommendedUseType;
 import com.vitorpamplona.netra.model.RefractionType;
 import com.vitorpamplona.netra.model.db.DataUtil;
-import com.vitorpamplona.netra.model.db.gsonadapters.ComputedPrescriptionJsonInterfaceAdapter;
-import com.vitorpamplona.netra.model.db.gsonadapters.TypedJsonInterfaceAdapter;
+import com.vitorpamplona.netra.model.db.gsonadapters.GsonProvider;
 import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
 
 import org.json.JSONObject;
@@ -334,10 +330,7 @@ public class DebugExam extends SQLiteModel {
 
         if (right == null || left == null) return;
 
-        GsonBuilder gsonb = new GsonBuilder()
-                .registerTypeAdapter(Event.class, new TypedJsonInterfaceAdapter<Event>())
-                .registerTypeAdapter(ComputedPrescription.class, new ComputedPrescriptionJsonInterfaceAdapter());
-        Gson gson = gsonb.create();
+        Gson gson = GsonProvider.get();
 
         Refraction r = new Refraction();
         r.setDebugExam(this);
@@ -350,10 +343,10 @@ public class DebugExam extends SQLiteModel {
         r.setRightAdd(right.getAddLens());
 
         if (right.getOriginalData() != null && !right.getOriginalData().testResults().isEmpty()) {
-            r.setRightOriginalData(gson.toJson(right.getOriginalData()));
+            r.setRightOriginalDataCompressed(DataUtil.compressJson(gson, right.getOriginalData(), right.getOriginalData().getClass()));
         }
         if (right.history() != null && !right.history().eventHistory().isEmpty()) {
-            r.setRightHistory(gson.toJson(right.history()));
+            r.setRightHistoryCompressed(DataUtil.compressJson(gson, right.history(), right.history().getClass()));
         }
 
         r.setLeftPd(left.getNosePupilDistance());
@@ -363,10 +356,10 @@ public class DebugExam extends SQLiteModel {
         r.setLeftAdd(left.getAddLens());
 
         if (left.getOriginalData() != null && !left.getOriginalData().testResults().isEmpty()) {
-            r.setLeftOriginalData(gson.toJson(left.getOriginalData()));
+            r.setLeftOriginalDataCompressed(DataUtil.compressJson(gson, left.getOriginalData(), left.getOriginalData().getClass()));
         }
         if (left.history() != null && !left.history().eventHistory().isEmpty()) {
-            r.setLeftHistory(gson.toJson(left.history()));
+            r.setLeftHistoryCompressed(DataUtil.compressJson(gson, left.history(), left.history().getClass()));
         }
 
         setRefraction(r.getRefractionType(), r);
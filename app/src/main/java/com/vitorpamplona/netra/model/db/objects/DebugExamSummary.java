@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.objects;
+
+import android.database.Cursor;
+
+import com.vitorpamplona.netra.model.db.DataUtil;
+import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
+import com.vitorpamplona.netra.model.db.tables.Table;
+
+import java.util.Date;
+
+/**
+ * Read-only projection of a DebugExam with just what the readings list shows.
+ * Built from DebugExamTable.findSummaries, without refraction history or raw data.
+ */
+public class DebugExamSummary {
+
+    protected Long mId;
+    protected Date mTested;
+    protected String mStatus;
+
+    protected String mStudyName;
+    protected Integer mSequenceNumber;
+    protected Date mDateOfBirth;
+
+    protected String mPrescriptionEmail;
+    protected String mPrescriptionPhone;
+    protected Integer mPrescriptionSyncId;
+
+
+    public DebugExamSummary(Cursor c) {
+        updateFromCursor(c);
+    }
+
+    public void updateFromCursor(Cursor c) {
+        mId = DataUtil.getLong(c, Table.ID);
+        mTested = DataUtil.timestampStringToDate(DataUtil.getString(c, DebugExamTable.TESTED));
+        mStatus = DataUtil.getString(c, DebugExamTable.STATUS);
+
+        mStudyName = DataUtil.getString(c, DebugExamTable.STUDY_NAME);
+        mSequenceNumber = DataUtil.getInteger(c, DebugExamTable.SEQUENCE_NUMBER);
+        mDateOfBirth = DataUtil.dateStringToDate(DataUtil.getString(c, DebugExamTable.DATE_OF_BIRTH));
+
+        mPrescriptionEmail = DataUtil.getString(c, DebugExamTable.PRESCRIPTION_EMAIL);
+        mPrescriptionPhone = DataUtil.getString(c, DebugExamTable.PRESCRIPTION_PHONE);
+        mPrescriptionSyncId = DataUtil.getInteger(c, DebugExamTable.PRESCRIPTION_SYNC_ID);
+
+    }
+
+    public Long getId() {
+        return mId;
+    }
+
+    public Date getTested() {
+        return mTested;
+    }
+
+    public String getStatus() {
+        return mStatus == null ? "ok" : mStatus;
+    }
+
+    public String getStudyName() {
+        return mStudyName == null ? "" : mStudyName;
+    }
+
+    public Integer getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    public Date getDateOfBirth() {
+        return mDateOfBirth;
+    }
+
+    public String getPrescriptionEmail() {
+        return mPrescriptionEmail;
+    }
+
+    public String getPrescriptionPhone() {
+        return mPrescriptionPhone;
+    }
+
+    public boolean isPrescribed() {
+        return mPrescriptionSyncId != null && mPrescriptionSyncId > 0;
+    }
+}
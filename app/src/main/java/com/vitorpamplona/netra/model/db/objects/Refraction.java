@@ -30,6 +30,7 @@ import android.database.Cursor;
 import com.vitorpamplona.core.test.TheDoctor;
 import com.vitorpamplona.core.utils.AngleDiff;
 import com.vitorpamplona.netra.model.RefractionType;
+import com.vitorpamplona.netra.model.db.ColumnLoader;
 import com.vitorpamplona.netra.model.db.DataUtil;
 import com.vitorpamplona.netra.model.db.tables.RefractionTable;
 
@@ -51,8 +52,8 @@ public class Refraction extends SQLiteModel {
     protected Float mRightAdd;
     protected Float mRightAcuity;
 
-    protected String mRightOriginalData;
-    protected String mRightHistory;
+    protected final CompressedText mRightOriginalData = new CompressedText();
+    protected final CompressedText mRightHistory = new CompressedText();
 
     protected Float mLeftPd;
     protected Float mLeftSphere;
@@ -61,8 +62,8 @@ public class Refraction extends SQLiteModel {
     protected Float mLeftAdd;
     protected Float mLeftAcuity;
 
-    protected String mLeftOriginalData;
-    protected String mLeftHistory;
+    protected final CompressedText mLeftOriginalData = new CompressedText();
+    protected final CompressedText mLeftHistory = new CompressedText();
 
     public Refraction() {
 
@@ -206,25 +207,43 @@ public class Refraction extends SQLiteModel {
     }
 
     public String getRightOriginalData() {
-        if (mRightOriginalData == null) {
-            mRightOriginalData = "";
-        }
-        return mRightOriginalData;
+        return mRightOriginalData.get();
     }
 
     public void setRightOriginalData(String s) {
-        mRightOriginalData = s;
+        mRightOriginalData.set(s);
+    }
+
+    public byte[] getRightOriginalDataCompressed() {
+        return mRightOriginalData.getCompressed();
+    }
+
+    public void setRightOriginalDataCompressed(byte[] b) {
+        mRightOriginalData.setCompressed(b);
+    }
+
+    public boolean isRightOriginalDataLoaded() {
+        return mRightOriginalData.isLoaded();
     }
 
     public String getRightHistory() {
-        if (mRightHistory == null) {
-            mRightHistory = "";
-        }
-        return mRightHistory;
+        return mRightHistory.get();
     }
 
     public void setRightHistory(String s) {
-        mRightHistory = s;
+        mRightHistory.set(s);
+    }
+
+    public byte[] getRightHistoryCompressed() {
+        return mRightHistory.getCompressed();
+    }
+
+    public void setRightHistoryCompressed(byte[] b) {
+        mRightHistory.setCompressed(b);
+    }
+
+    public boolean isRightHistoryLoaded() {
+        return mRightHistory.isLoaded();
     }
 
     public Float getLeftPd() {
@@ -281,25 +300,43 @@ public class Refraction extends SQLiteModel {
     }
 
     public String getLeftOriginalData() {
-        if (mLeftOriginalData == null) {
-            mLeftOriginalData = "";
-        }
-        return mLeftOriginalData;
+        return mLeftOriginalData.get();
     }
 
     public void setLeftOriginalData(String s) {
-        mLeftOriginalData = s;
+        mLeftOriginalData.set(s);
+    }
+
+    public byte[] getLeftOriginalDataCompressed() {
+        return mLeftOriginalData.getCompressed();
+    }
+
+    public void setLeftOriginalDataCompressed(byte[] b) {
+        mLeftOriginalData.setCompressed(b);
+    }
+
+    public boolean isLeftOriginalDataLoaded() {
+        return mLeftOriginalData.isLoaded();
     }
 
     public String getLeftHistory() {
-        if (mLeftHistory == null) {
-            mLeftHistory = "";
-        }
-        return mLeftHistory;
+        return mLeftHistory.get();
     }
 
     public void setLeftHistory(String s) {
-        mLeftHistory = s;
+        mLeftHistory.set(s);
+    }
+
+    public byte[] getLeftHistoryCompressed() {
+        return mLeftHistory.getCompressed();
+    }
+
+    public void setLeftHistoryCompressed(byte[] b) {
+        mLeftHistory.setCompressed(b);
+    }
+
+    public boolean isLeftHistoryLoaded() {
+        return mLeftHistory.isLoaded();
     }
 
     public Float getPd() {
@@ -334,6 +371,28 @@ public class Refraction extends SQLiteModel {
     }
 
 
+    /**
+     * Heavy columns the cursor did not select are fetched by row id the
+     * first time they are read.
+     */
+    public void loadLazilyFrom(RefractionTable table) {
+        if (getId() == null) {
+            return;
+        }
+        mRightOriginalData.loadLazily(new ColumnLoader(table, getId(), RefractionTable.RIGHT_ORIGINAL_DATA));
+        mRightHistory.loadLazily(new ColumnLoader(table, getId(), RefractionTable.RIGHT_HISTORY));
+        mLeftOriginalData.loadLazily(new ColumnLoader(table, getId(), RefractionTable.LEFT_ORIGINAL_DATA));
+        mLeftHistory.loadLazily(new ColumnLoader(table, getId(), RefractionTable.LEFT_HISTORY));
+    }
+
+    protected static void readSelected(Cursor c, String columnName, CompressedText text) {
+        if (c.getColumnIndex(columnName) >= 0) {
+            text.setCompressed(DataUtil.getByteArray(c, columnName));
+        } else {
+            text.setCompressed(null);
+        }
+    }
+
     @Override
     public void updateFromCursor(Cursor c) {
         super.updateFromCursor(c);
@@ -351,8 +410,8 @@ public class Refraction extends SQLiteModel {
         setRightAdd(DataUtil.getFloat(c, RefractionTable.RIGHT_ADD));
         setRightAcuity(DataUtil.getFloat(c, RefractionTable.RIGHT_ACUITY));
 
-        setRightOriginalData(DataUtil.decompress(DataUtil.getByteArray(c, RefractionTable.RIGHT_ORIGINAL_DATA)));
-        setRightHistory(DataUtil.decompress(DataUtil.getByteArray(c, RefractionTable.RIGHT_HISTORY)));
+        readSelected(c, RefractionTable.RIGHT_ORIGINAL_DATA, mRightOriginalData);
+        readSelected(c, RefractionTable.RIGHT_HISTORY, mRightHistory);
 
         setLeftPd(DataUtil.getFloat(c, RefractionTable.LEFT_PD));
         setLeftSphere(DataUtil.getFloat(c, RefractionTable.LEFT_SPHERE));
@@ -361,8 +420,8 @@ public class Refraction extends SQLiteModel {
         setLeftAdd(DataUtil.getFloat(c, RefractionTable.LEFT_ADD));
         setLeftAcuity(DataUtil.getFloat(c, RefractionTable.LEFT_ACUITY));
 
-        setLeftOriginalData(DataUtil.decompress(DataUtil.getByteArray(c, RefractionTable.LEFT_ORIGINAL_DATA)));
-        setLeftHistory(DataUtil.decompress(DataUtil.getByteArray(c, RefractionTable.LEFT_HISTORY)));
+        readSelected(c, RefractionTable.LEFT_ORIGINAL_DATA, mLeftOriginalData);
+        readSelected(c, RefractionTable.LEFT_HISTORY, mLeftHistory);
 
     }
 
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.sync;
+
+import com.vitorpamplona.netra.model.db.objects.DebugExam;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process stand-in for the sync server. Accepts every exam, hands out
+ * sequential ids and keeps what it received, so the queue can be exercised
+ * against the dev database without a network.
+ */
+public class LocalSyncServer implements SyncServer {
+
+    protected final Map<SyncTarget, List<Long>> mReceived = new EnumMap<SyncTarget, List<Long>>(SyncTarget.class);
+    protected int mNextId = 1;
+    protected int mUploads;
+    protected boolean mOffline;
+
+    @Override
+    public synchronized Map<Long, Integer> upload(SyncTarget target, List<DebugExam> exams) throws IOException {
+        if (mOffline) {
+            throw new IOException("Local sync server is offline");
+        }
+
+        mUploads++;
+
+        List<Long> received = mReceived.get(target);
+        if (received == null) {
+            received = new ArrayList<Long>();
+            mReceived.put(target, received);
+        }
+
+        Map<Long, Integer> accepted = new HashMap<Long, Integer>();
+        for (DebugExam e : exams) {
+            received.add(e.getId());
+            accepted.put(e.getId(), mNextId++);
+        }
+        return accepted;
+    }
+
+    public synchronized void setOffline(boolean offline) {
+        mOffline = offline;
+    }
+
+    public synchronized List<Long> getReceived(SyncTarget target) {
+        List<Long> received = mReceived.get(target);
+        return received != null ? new ArrayList<Long>(received) : new ArrayList<Long>();
+    }
+
+    /**
+     * Number of successful upload calls, i.e. batches.
+     */
+    public synchronized int getUploads() {
+        return mUploads;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.sync;
+
+import com.vitorpamplona.netra.model.db.objects.DebugExam;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public interface SyncServer {
+
+    /**
+     * Sends a batch of exams to one target.
+     *
+     * @return the id of every exam the server accepted, mapped to the id the
+     * server assigned to it (the prescription id for PRESCRIPTION, possibly
+     * null for the others). Exams left out are retried on the next run.
+     */
+    Map<Long, Integer> upload(SyncTarget target, List<DebugExam> exams) throws IOException;
+}
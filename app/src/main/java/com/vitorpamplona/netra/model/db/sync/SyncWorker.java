@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.sync;
+
+import android.util.Log;
+
+import com.vitorpamplona.netra.model.db.SQLiteHelper;
+import com.vitorpamplona.netra.model.db.UnitOfWork;
+import com.vitorpamplona.netra.model.db.objects.DebugExam;
+import com.vitorpamplona.netra.model.db.tables.SyncOutboxTable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the sync outbox: sends pending exams to the server in batches and
+ * commits the resulting sync flags for a whole batch in one transaction.
+ * Run it on a background thread. If the server cannot be reached the whole
+ * run stops, and the next run starts over from the oldest pending exam.
+ * Only exams the server rejects count as a failed attempt.
+ */
+public class SyncWorker implements Runnable {
+
+    public static final String TAG = "SyncWorker";
+
+    public static final int BATCH_SIZE = 25;
+
+    protected final SQLiteHelper mHelper;
+    protected final SyncServer mServer;
+
+    protected boolean mUnreachable;
+
+    public SyncWorker(SQLiteHelper helper, SyncServer server) {
+        mHelper = helper;
+        mServer = server;
+    }
+
+    @Override
+    public void run() {
+        syncAll();
+    }
+
+    /**
+     * @return how many exams were synced, over all targets.
+     */
+    public int syncAll() {
+        mUnreachable = false;
+
+        int synced = 0;
+        for (SyncTarget target : SyncTarget.values()) {
+            synced += sync(target);
+            if (mUnreachable) {
+                break;
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * True if the last run stopped because the server could not be reached.
+     */
+    public boolean isServerUnreachable() {
+        return mUnreachable;
+    }
+
+    public int sync(SyncTarget target) {
+        int synced = 0;
+        long afterId = 0;
+
+        while (true) {
+            List<SyncOutboxTable.Entry> batch = mHelper.syncOutboxTable.findPending(target, afterId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1).id;
+
+            int sent = syncBatch(target, batch);
+            if (sent < 0) {
+                break;
+            }
+            synced += sent;
+        }
+
+        return synced;
+    }
+
+    /**
+     * @return exams synced, or -1 if the server could not be reached.
+     */
+    protected int syncBatch(SyncTarget target, List<SyncOutboxTable.Entry> batch) {
+        List<DebugExam> exams = new ArrayList<DebugExam>(batch.size());
+        List<SyncOutboxTable.Entry> gone = new ArrayList<SyncOutboxTable.Entry>();
+
+        for (SyncOutboxTable.Entry entry : batch) {
+            DebugExam e = mHelper.findDebugExam(entry.examId);
+            if (e.getSyncId() == null) {
+                gone.add(entry);
+            } else {
+                exams.add(e);
+            }
+        }
+
+        Map<Long, Integer> accepted;
+        try {
+            accepted = exams.isEmpty() ? new HashMap<Long, Integer>() : mServer.upload(target, exams);
+        } catch (IOException e) {
+            Log.w(TAG, "Sync of " + target + " failed: " + e.getMessage());
+            mUnreachable = true;
+            accepted = null;
+        }
+
+        List<Long> done = new ArrayList<Long>();
+        Map<Long, Integer> serverIds = new HashMap<Long, Integer>();
+
+        UnitOfWork work = mHelper.beginWork();
+        try {
+            for (SyncOutboxTable.Entry entry : gone) {
+                mHelper.syncOutboxTable.remove(entry, work);
+            }
+
+            for (SyncOutboxTable.Entry entry : batch) {
+                if (gone.contains(entry)) {
+                    continue;
+                }
+                if (accepted == null) {
+                    // not the exam's fault: leave its attempts alone
+                    continue;
+                }
+                if (!accepted.containsKey(entry.examId)) {
+                    mHelper.syncOutboxTable.retryLater(entry, work);
+                } else if (mHelper.syncOutboxTable.remove(entry, work)) {
+                    // Only clear the flag if the exam was not queued again while in flight.
+                    done.add(entry.examId);
+                    serverIds.put(entry.examId, accepted.get(entry.examId));
+                }
+            }
+
+            switch (target) {
+                case DEBUG:
+                    mHelper.debugExamTable.setSyncedDebugIds(done, work);
+                    break;
+                case INSIGHT:
+                    mHelper.debugExamTable.setSyncedInsightIds(done, work);
+                    break;
+                case PRESCRIPTION:
+                    mHelper.debugExamTable.setSyncedPrescriptionIds(serverIds, work);
+                    break;
+            }
+
+            work.setSuccessful();
+        } finally {
+            work.end();
+        }
+
+        return accepted == null ? -1 : done.size();
+    }
+}
@@ -53,12 +53,12 @@ public class CustomerTable extends Table {
         super(helper, new Column[]{
 
                 new Column(ID, Column.ColumnType.INTEGER, true, true, true, null),
-                new Column(SYNC_ID, Column.ColumnType.TEXT),
+                new Column(SYNC_ID, Column.ColumnType.TEXT).indexed(),
 
                 new Column(CREATED, Column.ColumnType.TIMESTAMP),
                 new Column(UPDATED, Column.ColumnType.TIMESTAMP),
                 new Column(SYNCED, Column.ColumnType.TIMESTAMP),
-                new Column(INSIGHT_USER_NAME, Column.ColumnType.TEXT),
+                new Column(INSIGHT_USER_NAME, Column.ColumnType.TEXT).indexed(),
 
                 new Column(TO_SYNC_DEBUG, Column.ColumnType.BOOLEAN),
                 new Column(TO_SYNC_INSIGHT, Column.ColumnType.BOOLEAN),
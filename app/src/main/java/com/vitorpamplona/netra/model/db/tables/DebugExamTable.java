@@ -27,19 +27,24 @@ package com.vitorpamplona.netra.model.db.tables;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.vitorpamplona.netra.model.RecommendedUseType;
 import com.vitorpamplona.netra.model.db.Column;
 import com.vitorpamplona.netra.model.db.Column.ColumnType;
 import com.vitorpamplona.netra.model.db.DataUtil;
+import com.vitorpamplona.netra.model.db.ExamIndex;
 import com.vitorpamplona.netra.model.db.SQLiteHelper;
+import com.vitorpamplona.netra.model.db.UnitOfWork;
 import com.vitorpamplona.netra.model.db.objects.DebugExam;
 import com.vitorpamplona.netra.model.db.objects.SQLiteModel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public class DebugExamTable extends Table {
 
@@ -78,16 +83,16 @@ public class DebugExamTable extends Table {
         super(helper, new Column[]{
 
                 new Column(ID, ColumnType.INTEGER, true, true, true, null),
-                new Column(SYNC_ID, ColumnType.TEXT),
+                new Column(SYNC_ID, ColumnType.TEXT).indexed(),
 
                 new Column(CREATED, ColumnType.TIMESTAMP),
                 new Column(UPDATED, ColumnType.TIMESTAMP),
                 new Column(TESTED, ColumnType.TIMESTAMP),
                 new Column(SYNCED, ColumnType.TIMESTAMP),
 
-                new Column(TO_SYNC_DEBUG, ColumnType.BOOLEAN),
+                new Column(TO_SYNC_DEBUG, ColumnType.BOOLEAN).indexed(),
                 new Column(CAN_DELETE, ColumnType.BOOLEAN),
-                new Column(TO_SYNC_INSIGHT, ColumnType.BOOLEAN),
+                new Column(TO_SYNC_INSIGHT, ColumnType.BOOLEAN).indexed(),
 
                 new Column(STUDY_NAME, ColumnType.TEXT),
                 new Column(SEQUENCE_NUMBER, ColumnType.INTEGER),
@@ -114,8 +119,13 @@ public class DebugExamTable extends Table {
                 new Column(PRESCRIPTION_EMAIL, ColumnType.TEXT),
                 new Column(PRESCRIPTION_PHONE, ColumnType.TEXT),
                 new Column(PRESCRIPTION_RECOMMENDED_USE, ColumnType.TEXT),
-                new Column(PRESCRIPTION_SYNC_ID, ColumnType.INTEGER)
+                new Column(PRESCRIPTION_SYNC_ID, ColumnType.INTEGER).indexed()
         });
+
+        // readings list and dashboard counts
+        addIndex(SERVER_USER_NAME, STATUS);
+        // post-sync cleanup
+        addIndex(CAN_DELETE, TO_SYNC_DEBUG, TO_SYNC_INSIGHT);
     }
 
     @Override
@@ -135,6 +145,26 @@ public class DebugExamTable extends Table {
         return c;
     }
 
+    /**
+     * One page of the readings list: only the exam columns the card shows,
+     * newest first. The page holds at most a few dozen ids from ExamIndex.findIds.
+     */
+    public Cursor findSummaries(List<Long> ids) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        String in = "";
+        String[] selectionArgs = new String[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            in += (i > 0) ? ",?" : "?";
+            selectionArgs[i] = ids.get(i).toString();
+        }
+
+        String[] columns = new String[]{getIdName(), TESTED, STATUS, STUDY_NAME, SEQUENCE_NUMBER, DATE_OF_BIRTH,
+                PRESCRIPTION_EMAIL, PRESCRIPTION_PHONE, PRESCRIPTION_SYNC_ID};
+
+        return db.query(getName(), columns, getIdName() + " IN (" + in + ")", selectionArgs, null, null, getIdName() + " DESC");
+    }
+
     public void resetUserTokenInsight(SQLiteModel m, String newToken) {
         m.setSynced(new Date());
         ContentValues cv = new ContentValues();
@@ -164,8 +194,6 @@ public class DebugExamTable extends Table {
     }
 
     public int countToSyncIds(String username) {
-        List<Long> ids = new ArrayList<Long>();
-
         String selection = SERVER_USER_NAME + "=? AND (" +
                 TO_SYNC_INSIGHT + "=? or " + TO_SYNC_DEBUG + "=? or " + PRESCRIPTION_SYNC_ID + "=?)"
                 + " AND (" + STATUS + " IS NULL OR " + STATUS + "!=?)";
@@ -173,53 +201,35 @@ public class DebugExamTable extends Table {
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), new String[]{getIdName()}, selection, selectionArgs, null, null, null);
-        int ret = c.getCount();
-        c.close();
-
-        //db.close();
-
-        return ret;
+        return (int) DatabaseUtils.queryNumEntries(db, getName(), selection, selectionArgs);
     }
 
     public int countMeasurements(String username) {
-        List<Long> ids = new ArrayList<Long>();
-
         String selection = SERVER_USER_NAME + "=?" + " AND (" + STATUS + " IS NULL OR " + STATUS + "!=?)";
         String[] selectionArgs = new String[]{username, "archived"};
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), new String[]{getIdName()}, selection, selectionArgs, null, null, null);
-        int ret = c.getCount();
-        c.close();
-
-        //db.close();
-
-        return ret;
+        return (int) DatabaseUtils.queryNumEntries(db, getName(), selection, selectionArgs);
     }
 
     public int countPrescriptions(String username) {
-        List<Long> ids = new ArrayList<Long>();
-
         String selection = SERVER_USER_NAME + "=? AND " + PRESCRIPTION_SYNC_ID + " IS NOT NULL " + "AND (" + STATUS + " IS NULL OR " + STATUS + "!=?)";
         String[] selectionArgs = new String[]{username, "archived"};
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), new String[]{getIdName()}, selection, selectionArgs, null, null, null);
-        int ret = c.getCount();
-        c.close();
-
-        //db.close();
-
-        return ret;
+        return (int) DatabaseUtils.queryNumEntries(db, getName(), selection, selectionArgs);
     }
 
     public void setToSyncPrescription(SQLiteModel m) {
+        setToSyncPrescription(m, null);
+    }
+
+    public void setToSyncPrescription(SQLiteModel m, UnitOfWork work) {
         ContentValues cv = new ContentValues();
         cv.put(PRESCRIPTION_SYNC_ID, -1);
-        save(m, cv);
+        save(m, cv, work);
     }
 
     public void setSyncedPrescription(SQLiteModel m, Integer prescriptionId) {
@@ -228,6 +238,61 @@ public class DebugExamTable extends Table {
         save(m, cv);
     }
 
+    public void setSyncedPrescriptionIds(Map<Long, Integer> prescriptionIds, UnitOfWork work) {
+        for (Map.Entry<Long, Integer> e : prescriptionIds.entrySet()) {
+            ContentValues cv = new ContentValues();
+            cv.put(PRESCRIPTION_SYNC_ID, e.getValue());
+            work.update(getName(), cv, getIdName() + "=?", new String[]{e.getKey().toString()});
+            onSaved(Collections.singletonList(e.getKey()), cv, work);
+        }
+    }
+
+    /**
+     * The columns ExamIndex keeps for every exam.
+     */
+    public Cursor findIndexRows() {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        return db.query(getName(), new String[]{ID, SYNC_ID, SERVER_USER_NAME, TESTED, STATUS,
+                TO_SYNC_DEBUG, TO_SYNC_INSIGHT, PRESCRIPTION_SYNC_ID}, null, null, null, null, null);
+    }
+
+    @Override
+    protected void onSaved(final SQLiteModel m, final ContentValues cv, UnitOfWork work) {
+        final ExamIndex index = mDbHelper.getExamIndex();
+        UnitOfWork.afterCommit(work, new Runnable() {
+            @Override
+            public void run() {
+                if (m.getId() != null) {
+                    index.onSaved(m.getId(), cv);
+                } else {
+                    index.invalidate();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onSaved(final List<Long> ids, final ContentValues cv, UnitOfWork work) {
+        final ExamIndex index = mDbHelper.getExamIndex();
+        UnitOfWork.afterCommit(work, new Runnable() {
+            @Override
+            public void run() {
+                index.onSaved(ids, cv);
+            }
+        });
+    }
+
+    protected void onDeleted(final Long id, UnitOfWork work) {
+        final ExamIndex index = mDbHelper.getExamIndex();
+        UnitOfWork.afterCommit(work, new Runnable() {
+            @Override
+            public void run() {
+                index.onDeleted(id);
+            }
+        });
+    }
+
     public List<Long> findToSyncPrescriptionIds() {
         List<Long> ids = new ArrayList<Long>();
 
@@ -282,6 +347,16 @@ public class DebugExamTable extends Table {
         save(m, cv);
     }
 
+    public void delete(Long id, UnitOfWork work) {
+        String[] selectionArgs = new String[]{id.toString()};
+
+        work.delete(RefractionTable.TABLE_NAME, RefractionTable.DEBUG_EXAM_ID + "=?", selectionArgs);
+        work.delete(SyncOutboxTable.TABLE_NAME, SyncOutboxTable.EXAM_ID + "=?", selectionArgs);
+        work.delete(getName(), DebugExamTable.ID + "=?", selectionArgs);
+
+        onDeleted(id, work);
+    }
+
     public void delete(Long id) {
         String[] selectionArgs = new String[]{id.toString()};
 
@@ -291,14 +366,22 @@ public class DebugExamTable extends Table {
 
         db.delete(RefractionTable.TABLE_NAME, selection, selectionArgs);
 
+        db.delete(SyncOutboxTable.TABLE_NAME, SyncOutboxTable.EXAM_ID + "=?", selectionArgs);
+
         selection = DebugExamTable.ID + "=?";
 
         db.delete(getName(), selection, selectionArgs);
 
+        onDeleted(id, null);
+
         //db.close();
     }
 
     public void save(DebugExam m) {
+        save(m, (UnitOfWork) null);
+    }
+
+    public void save(DebugExam m, UnitOfWork work) {
         ContentValues cv = new ContentValues();
 
         //cv.put(ID, m.getId());
@@ -339,6 +422,6 @@ public class DebugExamTable extends Table {
         cv.put(FITTING_QUALITY_LEFT, m.getFittingQualityLeft());
         cv.put(FITTING_QUALITY_RIGHT, m.getFittingQualityRight());
 
-        save(m, cv);
+        save(m, cv, work);
     }
 }
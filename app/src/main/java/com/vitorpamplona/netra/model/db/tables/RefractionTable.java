@@ -34,12 +34,12 @@ import com.vitorpamplona.netra.model.db.Column;
 import com.vitorpamplona.netra.model.db.Column.ColumnType;
 import com.vitorpamplona.netra.model.db.DataUtil;
 import com.vitorpamplona.netra.model.db.SQLiteHelper;
+import com.vitorpamplona.netra.model.db.UnitOfWork;
 import com.vitorpamplona.netra.model.db.objects.DebugExam;
 import com.vitorpamplona.netra.model.db.objects.Refraction;
+import com.vitorpamplona.netra.model.db.objects.SQLiteModel;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class RefractionTable extends Table {
@@ -98,17 +98,17 @@ public class RefractionTable extends Table {
         super(helper, new Column[]{
 
                 new Column(ID, ColumnType.INTEGER, true, true, true, null),
-                new Column(SYNC_ID, ColumnType.TEXT),
+                new Column(SYNC_ID, ColumnType.TEXT).indexed(),
 
                 new Column(CREATED, ColumnType.TIMESTAMP),
                 new Column(UPDATED, ColumnType.TIMESTAMP),
                 new Column(SYNCED, ColumnType.TIMESTAMP),
 
-                new Column(TO_SYNC_DEBUG, ColumnType.BOOLEAN),
-                new Column(TO_SYNC_INSIGHT, ColumnType.BOOLEAN),
+                new Column(TO_SYNC_DEBUG, ColumnType.BOOLEAN).indexed(),
+                new Column(TO_SYNC_INSIGHT, ColumnType.BOOLEAN).indexed(),
                 new Column(CAN_DELETE, ColumnType.BOOLEAN),
 
-                new Column(DEBUG_EXAM_ID, ColumnType.INTEGER),
+                new Column(DEBUG_EXAM_ID, ColumnType.INTEGER).indexed(),
                 new Column(REFRACTION_TYPE, ColumnType.TEXT),
                 new Column(BINOCULAR_ACUITY, ColumnType.REAL),
 
@@ -118,8 +118,8 @@ public class RefractionTable extends Table {
                 new Column(RIGHT_AXIS, ColumnType.REAL),
                 new Column(RIGHT_ADD, ColumnType.REAL),
                 new Column(RIGHT_ACUITY, ColumnType.REAL),
-                new Column(RIGHT_ORIGINAL_DATA, ColumnType.TEXT),
-                new Column(RIGHT_HISTORY, ColumnType.TEXT),
+                new Column(RIGHT_ORIGINAL_DATA, ColumnType.TEXT).lazy(),
+                new Column(RIGHT_HISTORY, ColumnType.TEXT).lazy(),
 
                 new Column(LEFT_PD, ColumnType.REAL),
                 new Column(LEFT_SPHERE, ColumnType.REAL),
@@ -127,8 +127,8 @@ public class RefractionTable extends Table {
                 new Column(LEFT_AXIS, ColumnType.REAL),
                 new Column(LEFT_ADD, ColumnType.REAL),
                 new Column(LEFT_ACUITY, ColumnType.REAL),
-                new Column(LEFT_ORIGINAL_DATA, ColumnType.TEXT),
-                new Column(LEFT_HISTORY, ColumnType.TEXT)
+                new Column(LEFT_ORIGINAL_DATA, ColumnType.TEXT).lazy(),
+                new Column(LEFT_HISTORY, ColumnType.TEXT).lazy()
 
         });
     }
@@ -140,35 +140,42 @@ public class RefractionTable extends Table {
 
     public Map<RefractionType, Refraction> findRefractions(DebugExam e) {
         Map<RefractionType, Refraction> rm = new HashMap<RefractionType, Refraction>();
-        List<Long> ids = new ArrayList<Long>();
 
         String selection = DEBUG_EXAM_ID + "=?";
         String[] selectionArgs = new String[]{e.getId().toString()};
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), new String[]{getIdName()}, selection, selectionArgs, null, null, null);
+        Cursor c = db.query(getName(), getEagerProjection(), selection, selectionArgs, null, null, null);
 
         while (c.moveToNext()) {
-            ids.add(DataUtil.getLong(c, getIdName()));
+            Refraction r = new Refraction();
+            r.updateFromCursor(c);
+            r.loadLazilyFrom(this);
+            r.setDebugExam(e);
+            rm.put(r.getRefractionType(), r);
         }
 
         c.close();
 
         //db.close();
 
-        for (Long id : ids) {
-            Refraction r = new Refraction();
-            r.setId(id);
-            find(r);
-            r.setDebugExam(e);
-            rm.put(r.getRefractionType(), r);
-        }
-
         return rm;
     }
 
+    @Override
+    public void find(SQLiteModel m) {
+        super.find(m);
+        if (m instanceof Refraction) {
+            ((Refraction) m).loadLazilyFrom(this);
+        }
+    }
+
     public void save(Refraction m) {
+        save(m, (UnitOfWork) null);
+    }
+
+    public void save(Refraction m, UnitOfWork work) {
         ContentValues cv = new ContentValues();
 
         //cv.put(ID, m.getId());
@@ -191,8 +198,12 @@ public class RefractionTable extends Table {
         cv.put(RIGHT_AXIS, m.getRightAxis());
         cv.put(RIGHT_ADD, m.getRightAdd());
         cv.put(RIGHT_ACUITY, m.getRightAcuity());
-        cv.put(RIGHT_ORIGINAL_DATA, DataUtil.compress(m.getRightOriginalData()));
-        cv.put(RIGHT_HISTORY, DataUtil.compress(m.getRightHistory()));
+        if (m.isRightOriginalDataLoaded()) {
+            cv.put(RIGHT_ORIGINAL_DATA, m.getRightOriginalDataCompressed());
+        }
+        if (m.isRightHistoryLoaded()) {
+            cv.put(RIGHT_HISTORY, m.getRightHistoryCompressed());
+        }
 
         cv.put(LEFT_PD, m.getLeftPd());
         cv.put(LEFT_SPHERE, m.getLeftSphere());
@@ -200,9 +211,13 @@ public class RefractionTable extends Table {
         cv.put(LEFT_AXIS, m.getLeftAxis());
         cv.put(LEFT_ADD, m.getLeftAdd());
         cv.put(LEFT_ACUITY, m.getLeftAcuity());
-        cv.put(LEFT_ORIGINAL_DATA, DataUtil.compress(m.getLeftOriginalData()));
-        cv.put(LEFT_HISTORY, DataUtil.compress(m.getLeftHistory()));
+        if (m.isLeftOriginalDataLoaded()) {
+            cv.put(LEFT_ORIGINAL_DATA, m.getLeftOriginalDataCompressed());
+        }
+        if (m.isLeftHistoryLoaded()) {
+            cv.put(LEFT_HISTORY, m.getLeftHistoryCompressed());
+        }
 
-        save(m, cv);
+        save(m, cv, work);
     }
 }
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.tables;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.vitorpamplona.netra.model.db.Column;
+import com.vitorpamplona.netra.model.db.Column.ColumnType;
+import com.vitorpamplona.netra.model.db.DataUtil;
+import com.vitorpamplona.netra.model.db.SQLiteHelper;
+import com.vitorpamplona.netra.model.db.UnitOfWork;
+import com.vitorpamplona.netra.model.db.sync.SyncTarget;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Exams waiting to be sent, one row per exam and target. Queuing an exam
+ * that is already waiting does not add a row: it bumps the row's
+ * generation, so an upload that was in flight at the time will not clear it.
+ */
+public class SyncOutboxTable extends Table {
+
+    public static final String TABLE_NAME = "sync_outbox";
+
+    public static final String EXAM_ID = "exam_id";
+    public static final String TARGET = "target";
+    public static final String GENERATION = "generation";
+    public static final String ATTEMPTS = "attempts";
+
+    /**
+     * Rows that failed this many times wait until they are queued again.
+     */
+    public static final int MAX_ATTEMPTS = 10;
+
+    public static class Entry {
+        public final long id;
+        public final long examId;
+        public final int generation;
+
+        public Entry(long id, long examId, int generation) {
+            this.id = id;
+            this.examId = examId;
+            this.generation = generation;
+        }
+    }
+
+    public SyncOutboxTable(SQLiteHelper helper) {
+        super(helper, new Column[]{
+
+                new Column(ID, ColumnType.INTEGER, true, true, true, null),
+                new Column(EXAM_ID, ColumnType.INTEGER),
+                new Column(TARGET, ColumnType.TEXT),
+                new Column(GENERATION, ColumnType.INTEGER),
+                new Column(ATTEMPTS, ColumnType.INTEGER),
+                new Column(UPDATED, ColumnType.TIMESTAMP)
+
+        });
+
+        addIndex(TARGET, EXAM_ID);
+    }
+
+    @Override
+    public String getName() {
+        return SyncOutboxTable.TABLE_NAME;
+    }
+
+    public void enqueue(long examId, SyncTarget target, UnitOfWork work) {
+        String updated = DataUtil.dateToTimestampString(new Date());
+
+        SQLiteStatement s = work.statement("UPDATE " + getName() + " SET " + GENERATION + "=" + GENERATION + "+1, "
+                + ATTEMPTS + "=0, " + UPDATED + "=? WHERE " + TARGET + "=? AND " + EXAM_ID + "=?");
+        s.bindString(1, updated);
+        s.bindString(2, DataUtil.enumToString(target));
+        s.bindLong(3, examId);
+
+        if (s.executeUpdateDelete() == 0) {
+            ContentValues cv = new ContentValues();
+            cv.put(EXAM_ID, examId);
+            cv.put(TARGET, DataUtil.enumToString(target));
+            cv.put(GENERATION, 0);
+            cv.put(ATTEMPTS, 0);
+            cv.put(UPDATED, updated);
+            work.insert(getName(), cv);
+        }
+    }
+
+    /**
+     * Oldest first, after the given outbox id.
+     */
+    public List<Entry> findPending(SyncTarget target, long afterId, int limit) {
+        List<Entry> entries = new ArrayList<Entry>();
+
+        String selection = TARGET + "=? AND " + ATTEMPTS + "<? AND " + getIdName() + ">?";
+        String[] selectionArgs = new String[]{DataUtil.enumToString(target), String.valueOf(MAX_ATTEMPTS), String.valueOf(afterId)};
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        Cursor c = db.query(getName(), new String[]{getIdName(), EXAM_ID, GENERATION}, selection, selectionArgs,
+                null, null, getIdName(), String.valueOf(limit));
+
+        while (c.moveToNext()) {
+            entries.add(new Entry(c.getLong(0), c.getLong(1), c.getInt(2)));
+        }
+
+        c.close();
+
+        return entries;
+    }
+
+    /**
+     * @return false if the exam was queued again since the entry was read.
+     */
+    public boolean remove(Entry entry, UnitOfWork work) {
+        return work.delete(getName(), getIdName() + "=? AND " + GENERATION + "=?",
+                new String[]{String.valueOf(entry.id), String.valueOf(entry.generation)}) > 0;
+    }
+
+    public void retryLater(Entry entry, UnitOfWork work) {
+        SQLiteStatement s = work.statement("UPDATE " + getName() + " SET " + ATTEMPTS + "=" + ATTEMPTS + "+1 WHERE " + getIdName() + "=?");
+        s.bindLong(1, entry.id);
+        s.executeUpdateDelete();
+    }
+
+    public void removeExam(Long examId, UnitOfWork work) {
+        work.delete(getName(), EXAM_ID + "=?", new String[]{examId.toString()});
+    }
+
+    /**
+     * Queues exams that were flagged before the outbox existed.
+     */
+    public void backfill(SQLiteDatabase db) {
+        backfill(db, SyncTarget.DEBUG, TO_SYNC_DEBUG + "=1");
+        backfill(db, SyncTarget.INSIGHT, TO_SYNC_INSIGHT + "=1");
+        backfill(db, SyncTarget.PRESCRIPTION, DebugExamTable.PRESCRIPTION_SYNC_ID + "=-1");
+    }
+
+    protected void backfill(SQLiteDatabase db, SyncTarget target, String flagged) {
+        String t = DataUtil.enumToString(target);
+        db.execSQL("INSERT INTO " + getName() + " (" + EXAM_ID + "," + TARGET + "," + GENERATION + "," + ATTEMPTS + "," + UPDATED + ")"
+                        + " SELECT " + ID + ", ?, 0, 0, ? FROM " + DebugExamTable.TABLE_NAME + " WHERE " + flagged
+                        + " AND " + ID + " NOT IN (SELECT " + EXAM_ID + " FROM " + getName() + " WHERE " + TARGET + "=?)",
+                new Object[]{t, DataUtil.dateToTimestampString(new Date()), t});
+    }
+}
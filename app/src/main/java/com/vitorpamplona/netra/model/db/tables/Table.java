@@ -31,7 +31,9 @@ import android.database.sqlite.SQLiteDatabase;
 
 import com.vitorpamplona.netra.model.db.Column;
 import com.vitorpamplona.netra.model.db.DataUtil;
+import com.vitorpamplona.netra.model.db.Index;
 import com.vitorpamplona.netra.model.db.SQLiteHelper;
+import com.vitorpamplona.netra.model.db.UnitOfWork;
 import com.vitorpamplona.netra.model.db.objects.SQLiteModel;
 
 import java.util.ArrayList;
@@ -61,6 +63,8 @@ public abstract class Table {
     protected final Map<String, Column> mColumnMap = new HashMap<String, Column>();
     protected final List<Column> mColumns = new ArrayList<Column>();
     protected final List<String> mColumnNames = new ArrayList<String>();
+    protected final List<String> mEagerColumnNames = new ArrayList<String>();
+    protected final List<Index> mIndexes = new ArrayList<Index>();
 
     protected SQLiteHelper mDbHelper;
 
@@ -72,9 +76,24 @@ public abstract class Table {
             mColumns.add(c);
             mColumnNames.add(c.name);
             mColumnMap.put(c.name, c);
+
+            if (!c.lazy) {
+                mEagerColumnNames.add(c.name);
+            }
+
+            if (c.indexed) {
+                mIndexes.add(new Index(getName(), c.name));
+            }
         }
     }
 
+    /**
+     * Declares a composite index. Column order matters: equality filters first.
+     */
+    protected void addIndex(String... columns) {
+        mIndexes.add(new Index(getName(), columns));
+    }
+
     public abstract String getName();
 
     public String getIdName() {
@@ -97,6 +116,39 @@ public abstract class Table {
         return mColumnNames;
     }
 
+    /**
+     * Columns to select when loading a model: everything but the lazy ones,
+     * or null (all columns) when the table has none.
+     */
+    public String[] getEagerProjection() {
+        if (mEagerColumnNames.size() == mColumnNames.size()) {
+            return null;
+        }
+        return mEagerColumnNames.toArray(new String[mEagerColumnNames.size()]);
+    }
+
+    public byte[] loadBlob(long id, String columnName) {
+        String selection = getIdName() + "=?";
+        String[] selectionArgs = new String[]{String.valueOf(id)};
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        Cursor c = db.query(getName(), new String[]{columnName}, selection, selectionArgs, null, null, null);
+
+        byte[] ret = null;
+        if (c.moveToFirst()) {
+            ret = DataUtil.getByteArray(c, columnName);
+        }
+
+        c.close();
+
+        return ret;
+    }
+
+    public List<Index> getIndexes() {
+        return mIndexes;
+    }
+
     public Column getColumn(String columnName) {
         return mColumnMap.get(columnName);
     }
@@ -183,43 +235,124 @@ public abstract class Table {
     }
 
     public void setSyncedDebug(SQLiteModel m) {
+        setSyncedDebug(m, null);
+    }
+
+    public void setSyncedDebug(SQLiteModel m, UnitOfWork work) {
         m.setSynced(new Date());
         ContentValues cv = new ContentValues();
         cv.put(TO_SYNC_DEBUG, false);
         cv.put(SYNCED, DataUtil.dateToTimestampString(m.getSynced()));
-        save(m, cv);
+        save(m, cv, work);
+    }
+
+    public void setSyncedDebug(List<? extends SQLiteModel> models) {
+        UnitOfWork work = mDbHelper.beginWork();
+        try {
+            for (SQLiteModel m : models) {
+                setSyncedDebug(m, work);
+            }
+            work.setSuccessful();
+        } finally {
+            work.end();
+        }
     }
 
     public void setSyncedInsight(SQLiteModel m) {
+        setSyncedInsight(m, null);
+    }
+
+    public void setSyncedInsight(SQLiteModel m, UnitOfWork work) {
         m.setSynced(new Date());
         ContentValues cv = new ContentValues();
         cv.put(TO_SYNC_INSIGHT, false);
         cv.put(SYNCED, DataUtil.dateToTimestampString(m.getSynced()));
-        save(m, cv);
+        save(m, cv, work);
+    }
+
+    public void setSyncedInsight(List<? extends SQLiteModel> models) {
+        UnitOfWork work = mDbHelper.beginWork();
+        try {
+            for (SQLiteModel m : models) {
+                setSyncedInsight(m, work);
+            }
+            work.setSuccessful();
+        } finally {
+            work.end();
+        }
+    }
+
+    /**
+     * Bulk version of setSyncedDebug for rows that are not loaded as models.
+     */
+    public void setSyncedDebugIds(List<Long> ids, UnitOfWork work) {
+        ContentValues cv = new ContentValues();
+        cv.put(TO_SYNC_DEBUG, false);
+        cv.put(SYNCED, DataUtil.dateToTimestampString(new Date()));
+        updateIds(cv, ids, work);
+    }
+
+    public void setSyncedInsightIds(List<Long> ids, UnitOfWork work) {
+        ContentValues cv = new ContentValues();
+        cv.put(TO_SYNC_INSIGHT, false);
+        cv.put(SYNCED, DataUtil.dateToTimestampString(new Date()));
+        updateIds(cv, ids, work);
+    }
+
+    // SQLite allows 999 bound variables per statement.
+    protected static final int MAX_IDS_PER_UPDATE = 500;
+
+    protected void updateIds(ContentValues cv, List<Long> ids, UnitOfWork work) {
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+            int to = Math.min(ids.size(), from + MAX_IDS_PER_UPDATE);
+
+            String in = "";
+            String[] args = new String[to - from];
+            for (int i = from; i < to; i++) {
+                in += (i > from) ? ",?" : "?";
+                args[i - from] = ids.get(i).toString();
+            }
+
+            work.update(getName(), cv, getIdName() + " IN (" + in + ")", args);
+        }
+
+        onSaved(ids, cv, work);
     }
 
     //should not be called after every model change
     public void setToSyncDebug(SQLiteModel m) {
+        setToSyncDebug(m, null);
+    }
+
+    public void setToSyncDebug(SQLiteModel m, UnitOfWork work) {
         m.setToSync(true);
         ContentValues cv = new ContentValues();
         cv.put(TO_SYNC_DEBUG, true);
-        save(m, cv);
+        save(m, cv, work);
     }
 
     //should not be called after every model change
     public void setToSyncInsight(SQLiteModel m) {
+        setToSyncInsight(m, null);
+    }
+
+    public void setToSyncInsight(SQLiteModel m, UnitOfWork work) {
         m.setToSync(true);
         ContentValues cv = new ContentValues();
         cv.put(TO_SYNC_INSIGHT, true);
-        save(m, cv);
+        save(m, cv, work);
     }
 
     //should not be called after every model change
     public void setReadyToDeleteWhenSync(SQLiteModel m) {
+        setReadyToDeleteWhenSync(m, null);
+    }
+
+    public void setReadyToDeleteWhenSync(SQLiteModel m, UnitOfWork work) {
         m.setToSync(true);
         ContentValues cv = new ContentValues();
         cv.put(CAN_DELETE, true);
-        save(m, cv);
+        save(m, cv, work);
     }
 
     public void saveCustomerId(SQLiteModel m) {
@@ -229,30 +362,48 @@ public abstract class Table {
     }
 
     public void save(SQLiteModel m, ContentValues cv) {
+        save(m, cv, null);
+    }
+
+    /**
+     * @param work runs the statements inside this unit of work, or on their own if null
+     */
+    public void save(SQLiteModel m, ContentValues cv, UnitOfWork work) {
         m.setUpdated(new Date());
         cv.put(UPDATED, DataUtil.dateToTimestampString(m.getUpdated()));
 
         // in the sqlite db already
         if (m.getId() != null) {
             // m.getSyncId() should not be null in this case
-            update(m, cv);
+            update(m, cv, work);
 
             // syncing from server, *might* be in the sqlite db
         } else if (m.getSyncId() != null) {
-            if (updateBySyncId(m, cv) == 0) {
-                insert(m, cv);
+            if (updateBySyncId(m, cv, work) == 0) {
+                insert(m, cv, work);
             } else {
-                setIdFromSyncId(m);
+                setIdFromSyncId(m, work);
             }
 
             // not in the sqlite db or on the server
         } else {
             m.setSyncId(UUID.randomUUID());
             cv.put(SYNC_ID, m.getSyncId().toString());
-            insert(m, cv);
+            insert(m, cv, work);
         }
         //mDbHelper.printTable(this);
         //print content values?
+
+        onSaved(m, cv, work);
+    }
+
+    /**
+     * Called after every save and bulk update, for tables that mirror rows in memory.
+     */
+    protected void onSaved(SQLiteModel m, ContentValues cv, UnitOfWork work) {
+    }
+
+    protected void onSaved(List<Long> ids, ContentValues cv, UnitOfWork work) {
     }
 
     protected void selectById(SQLiteModel m) {
@@ -262,7 +413,7 @@ public abstract class Table {
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), null, selection, selectionArgs, null, null, null);
+        Cursor c = db.query(getName(), getEagerProjection(), selection, selectionArgs, null, null, null);
 
         if (c.getCount() > 0) {
             c.moveToFirst();
@@ -281,7 +432,7 @@ public abstract class Table {
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), null, selection, selectionArgs, null, null, null);
+        Cursor c = db.query(getName(), getEagerProjection(), selection, selectionArgs, null, null, null);
 
         //TODO: this shouldn't be > 1, but if it is, throw a fit?
         if (c.getCount() > 0) {
@@ -301,7 +452,7 @@ public abstract class Table {
 
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
-        Cursor c = db.query(getName(), null, selection, selectionArgs, null, null, null);
+        Cursor c = db.query(getName(), getEagerProjection(), selection, selectionArgs, null, null, null);
 
         if (c.getCount() > 0) {
             c.moveToFirst();
@@ -313,6 +464,19 @@ public abstract class Table {
         //db.close();
     }
 
+    protected void setIdFromSyncId(SQLiteModel m, UnitOfWork work) {
+        if (work == null) {
+            setIdFromSyncId(m);
+            return;
+        }
+
+        Long id = work.queryForLong("SELECT " + getIdName() + " FROM " + getName() + " WHERE " + getSyncIdName() + "=?",
+                new String[]{m.getSyncId().toString()});
+        if (id != null) {
+            m.setId(id);
+        }
+    }
+
     protected void setIdFromSyncId(SQLiteModel m) {
 
         String selection = getSyncIdName() + "=?";
@@ -333,14 +497,22 @@ public abstract class Table {
     }
 
     protected long insert(SQLiteModel m, ContentValues cv) {
+        return insert(m, cv, null);
+    }
+
+    protected long insert(SQLiteModel m, ContentValues cv, UnitOfWork work) {
         if (m.getCreated() == null) {
             m.setCreated(new Date());
             cv.put(CREATED, DataUtil.dateToTimestampString(m.getCreated()));
         }
 
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
-        long result = db.insert(getName(), null, cv);
+        long result;
+        if (work != null) {
+            result = work.insert(getName(), cv);
+        } else {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            result = db.insert(getName(), null, cv);
+        }
 
         //db.close();
 
@@ -352,16 +524,31 @@ public abstract class Table {
     }
 
     protected int update(SQLiteModel m, ContentValues cv) {
+        return update(m, cv, (UnitOfWork) null);
+    }
+
+    protected int update(SQLiteModel m, ContentValues cv, UnitOfWork work) {
         String whereClause = getIdName() + "=?";
         String[] whereArgs = new String[]{m.getId().toString()};
 
-        return update(m, cv, whereClause, whereArgs);
+        return update(m, cv, whereClause, whereArgs, work);
     }
 
     protected int updateBySyncId(SQLiteModel m, ContentValues cv) {
+        return updateBySyncId(m, cv, null);
+    }
+
+    protected int updateBySyncId(SQLiteModel m, ContentValues cv, UnitOfWork work) {
         String whereClause = getSyncIdName() + "=?";
         String[] whereArgs = new String[]{m.getSyncId().toString()};
 
+        return update(m, cv, whereClause, whereArgs, work);
+    }
+
+    protected int update(SQLiteModel m, ContentValues cv, String whereClause, String[] whereArgs, UnitOfWork work) {
+        if (work != null) {
+            return work.update(getName(), cv, whereClause, whereArgs);
+        }
         return update(m, cv, whereClause, whereArgs);
     }
 
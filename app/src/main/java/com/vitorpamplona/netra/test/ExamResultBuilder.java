@@ -32,6 +32,7 @@ import com.vitorpamplona.core.models.MeridianPower;
 import com.vitorpamplona.core.test.selftestflexiblemeridians.SingleEyeBuilder;
 import com.vitorpamplona.core.test.selftestflexiblemeridians.SingleEyeFullExamBuilder;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+import com.vitorpamplona.core.testdevice.ui.RenderingMetrics;
 import com.vitorpamplona.domain.events.EventHistory;
 import com.vitorpamplona.meridian.lineprofile.FrameDebugData;
 import com.vitorpamplona.meridian.utils.CalibrationManager;
@@ -98,7 +99,9 @@ public class ExamResultBuilder implements SingleEyeFullExamBuilder.BucketChangeL
     }
 
     public String getExportedEventHistory() {
-        return rightEyeHistory.exportEventHistory(new Date()) + leftEyeHistory.exportEventHistory(new Date());
+        Date now = new Date();
+        StringBuilder st = rightEyeHistory.exportEventHistory(now, new StringBuilder());
+        return leftEyeHistory.exportEventHistory(now, st).toString();
     }
 
     public float checkAngleRange(float angle) {
@@ -349,6 +352,10 @@ public class ExamResultBuilder implements SingleEyeFullExamBuilder.BucketChangeL
         getCurrentHistory().addAction("{\"cmd\":\"OnNewDebugInfo\",\"data\":" + newDebugInfo(frameDebugData) + "}");
     }
 
+    public void logRenderingMetrics(RenderingMetrics metrics) {
+        getCurrentHistory().addAction("{\"cmd\":\"OnRenderingMetrics\",\"data\":" + newRenderingMetrics(metrics) + "}");
+    }
+
     public void logCalibrationDone(float angle, float pd, int deviceID, CalibrationManager.DeviceCalibration parameters) {
         getCurrentHistory().addAction("{\"cmd\":\"OnCalibrationDone\",\"angle\":" + angle + ",\"pd\":" + pd + ",\"deviceId\":" + deviceID + "}");
         getCurrentHistory().addAction("{\"cmd\":\"OnNewCalibration\",\"data\":" + newCalibration(parameters) + "}");
@@ -392,7 +399,7 @@ public class ExamResultBuilder implements SingleEyeFullExamBuilder.BucketChangeL
         }
         data.add(qualityRatchet);
 
-        data.add(new JsonPrimitive(f.errorCode));
+        data.add(new JsonPrimitive(f.errorCodeName()));
         data.add(new JsonPrimitive(f.standardDeviationSliderLast30));
         data.add(new JsonPrimitive(f.standardDeviationScrollyLast30));
         data.add(new JsonPrimitive(f.standardDeviationCalibrationDotsLast30));
@@ -401,6 +408,42 @@ public class ExamResultBuilder implements SingleEyeFullExamBuilder.BucketChangeL
         return data.toString();
     }
 
+    public static String newRenderingMetrics(RenderingMetrics m) {
+
+        JsonArray data = new JsonArray();
+
+        data.add(newHistogram(m.frameIntervals()));
+        data.add(new JsonPrimitive(m.jankyFrames()));
+        data.add(new JsonPrimitive(m.missedVsyncs()));
+
+        JsonArray painters = new JsonArray(); // [name, histogram] of each painter
+        for (int i = 0; i < m.painterCount(); i++) {
+            JsonArray painter = new JsonArray();
+            painter.add(new JsonPrimitive(m.painterName(i)));
+            painter.add(newHistogram(m.paintTime(i)));
+            painters.add(painter);
+        }
+        data.add(painters);
+
+        return data.toString();
+    }
+
+    private static JsonArray newHistogram(RenderingMetrics.Histogram h) {
+        JsonArray data = new JsonArray();
+
+        data.add(new JsonPrimitive(h.samples()));
+        data.add(new JsonPrimitive(h.averageMs()));
+        data.add(new JsonPrimitive(h.maxMs()));
+
+        JsonArray counts = new JsonArray(); // one count per RenderingMetrics.BUCKETS_MS, plus the overflow
+        for (int i = 0; i < h.buckets(); i++) {
+            counts.add(new JsonPrimitive(h.count(i)));
+        }
+        data.add(counts);
+
+        return data;
+    }
+
     public static String newCalibration(CalibrationManager.DeviceCalibration p) {
 
         JsonArray data = new JsonArray();
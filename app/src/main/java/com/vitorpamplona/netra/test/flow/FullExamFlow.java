@@ -30,6 +30,7 @@ import android.util.Log;
 import android.view.View;
 
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+import com.vitorpamplona.core.testdevice.ui.RenderingMetrics;
 import com.vitorpamplona.core.utils.AngleDiff;
 import com.vitorpamplona.meridian.lineprofile.FrameDebugData;
 import com.vitorpamplona.meridian.utils.CalibrationManager;
@@ -94,6 +95,8 @@ public class FullExamFlow extends BasicExamFlow implements ControllerListener {
 
     @Override
     public void startExam() {
+        RenderingMetrics.getInstance().reset();
+
         mResultsBuilder.switchEye(false);
         mResultsBuilder.getCurrentAlgorithm().setWorkingMeridian(checkAngleRange(mLastAngle));
 
@@ -301,6 +304,7 @@ public class FullExamFlow extends BasicExamFlow implements ControllerListener {
                     // avoids running changing angle twice in a row.
                     if (mPowerChanged) {
                         if (mResultsBuilder.isCurrentEyeDone()) {
+                            mResultsBuilder.logRenderingMetrics(RenderingMetrics.getInstance());
                             mResultsBuilder.getCurrentHistory().testFinished();
 
                             mResultsBuilder.switchEye(true);
@@ -339,6 +343,7 @@ public class FullExamFlow extends BasicExamFlow implements ControllerListener {
 
                             getContext().findViewById(R.id.progress).setVisibility(View.VISIBLE);
 
+                            mResultsBuilder.logRenderingMetrics(RenderingMetrics.getInstance());
                             mResultsBuilder.getCurrentHistory().testFinished();
 
                             mTestState.updateProgress(Stage.ANGLE_RIGHT, Stage.POST_TEST, 0, 1, 1);
@@ -419,9 +424,7 @@ public class FullExamFlow extends BasicExamFlow implements ControllerListener {
         @Override
         protected Boolean doInBackground(DebugExam... params) {
             for (DebugExam e : params) {
-                NetraGApplication.get().getSqliteHelper().saveDebugExam(e);
-                NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncDebug(e);
-                NetraGApplication.get().getSqliteHelper().debugExamTable.setToSyncInsight(e);
+                NetraGApplication.get().getSqliteHelper().saveDebugExamToSync(e, false);
             }
             return true;
         }
@@ -31,6 +31,7 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+import com.vitorpamplona.core.testdevice.PrismaticCurve;
 import com.vitorpamplona.core.testdevice.PrismaticEffect;
 import com.vitorpamplona.netra.test.ITestActivity;
 import com.vitorpamplona.netra.utils.HardwareUtil;
@@ -43,6 +44,7 @@ public abstract class BaseTestView extends View {
     private boolean testingRightEye = false;
     private Device device;
     PrismaticEffect prismEffect;
+    PrismaticCurve prismCurve;
 
     public BaseTestView(Context context) {
         super(context);
@@ -64,6 +66,7 @@ public abstract class BaseTestView extends View {
         device = d;
 
         prismEffect = new PrismaticEffect(d.tubeLength, d.lensFocalLength, d.defaultPD);
+        prismCurve = prismEffect.curve();
     }
 
     public void setPD(float pd) {
@@ -101,7 +104,7 @@ public abstract class BaseTestView extends View {
     }
 
     public int testPrismShiftPX() {
-        return (int) (prismEffect.testPrismShift(pd()) / getPixelSizeMM());
+        return (int) (prismCurve.testPrismShift(pd()) / getPixelSizeMM());
     }
 
     public float testPositionXPX() {
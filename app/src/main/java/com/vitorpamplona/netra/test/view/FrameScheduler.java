@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.test.view;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Redraws a view on the next vsync, at most once per frame, and only when
+ * asked: after a state change, or again from onDraw while something on
+ * screen is animating. Can be asked from any thread.
+ */
+public class FrameScheduler implements Choreographer.FrameCallback {
+
+    protected final View mView;
+    protected final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // main thread only
+    protected boolean mPosted;
+    protected long mLastFrameTimeNanos;
+
+    private final Runnable mPostFrame = new Runnable() {
+        @Override
+        public void run() {
+            postFrame();
+        }
+    };
+
+    public FrameScheduler(View view) {
+        mView = view;
+    }
+
+    public void requestFrame() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            postFrame();
+        } else {
+            mMainHandler.post(mPostFrame);
+        }
+    }
+
+    protected void postFrame() {
+        if (!mPosted) {
+            mPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mPosted = false;
+        mLastFrameTimeNanos = frameTimeNanos;
+        mView.invalidate();
+    }
+
+    /**
+     * Vsync time of the frame being drawn, in System.nanoTime() base.
+     */
+    public long getLastFrameTimeNanos() {
+        return mLastFrameTimeNanos;
+    }
+
+    public void cancel() {
+        mMainHandler.removeCallbacks(mPostFrame);
+        if (mPosted) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            mPosted = false;
+        }
+    }
+}
@@ -25,7 +25,6 @@
  */
 package com.vitorpamplona.netra.test.view;
 
-import android.app.Activity;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -37,14 +36,17 @@ import android.media.ToneGenerator;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 
+import com.vitorpamplona.core.testdevice.AnimationTimeline;
 import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
 import com.vitorpamplona.core.testdevice.SlitPattern;
+import com.vitorpamplona.core.testdevice.ui.AnimatedPainter;
 import com.vitorpamplona.core.testdevice.ui.BlueScreenPainter;
 import com.vitorpamplona.core.testdevice.ui.CalibrationPainter;
 import com.vitorpamplona.core.testdevice.ui.CanvasPainter;
 import com.vitorpamplona.core.testdevice.ui.CheckMarkPainter;
 import com.vitorpamplona.core.testdevice.ui.LoadDevicePainter;
 import com.vitorpamplona.core.testdevice.ui.PlayIconPainter;
+import com.vitorpamplona.core.testdevice.ui.RenderingMetrics;
 import com.vitorpamplona.core.testdevice.ui.TestPainterAccReady;
 import com.vitorpamplona.netra.R;
 import com.vitorpamplona.netra.activity.NetraGApplication;
@@ -61,6 +63,14 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
     protected Paint mPaint;
     protected CanvasPainter mCanvasPainter;
     protected PlayIconPainter playIcon = new PlayIconPainter();
+    protected FrameScheduler mFrames;
+
+    // vsync of the previous animation frame, 0 when the last frame did not ask for another one.
+    protected long mAnimationFrameNanos;
+
+    protected final Paint mMessageBackgroundPaint = new Paint();
+    protected final Paint mMessageTextPaint = new Paint();
+    protected final Path mMessagePath = new Path();
 
     protected ToneGenerator mToneGenerator = new ToneGenerator(AudioManager.STREAM_MUSIC, ToneGenerator.MAX_VOLUME);
 
@@ -89,6 +99,18 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         mUmbrellaPainter = new TestPainterAccReady(this.getResources(), HardwareUtil.getDeviceDPI(this.getContext()));
         mPaint = new Paint();
         playIcon.setMsg(this.getResources().getString(R.string.play_icon_msg));
+        mFrames = new FrameScheduler(this);
+
+        mMessageBackgroundPaint.setColor(Color.BLACK);
+        mMessageBackgroundPaint.setStrokeWidth(1);
+        mMessageBackgroundPaint.setStyle(Paint.Style.FILL);
+        mMessageBackgroundPaint.setStrokeJoin(Paint.Join.ROUND);    // set the join to round you want
+        mMessageBackgroundPaint.setStrokeCap(Paint.Cap.ROUND);
+        mMessageBackgroundPaint.setPathEffect(new CornerPathEffect(10));
+        mMessageBackgroundPaint.setAntiAlias(true);
+        mMessageBackgroundPaint.setDither(true);
+
+        mMessageTextPaint.setTextSize(dpToPixels(context, 16));
 
         mSliderDisplacement = 0;
     }
@@ -97,6 +119,7 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
     public void setSliderDisplacement(float value) {
         mUmbrellaPainter.activatePDFinder();
         mSliderDisplacement = value;
+        invalidateView();
     }
 
     public void redraw() {
@@ -119,13 +142,23 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         invalidateView();
     }
 
+    /**
+     * Asks for one frame. Animations keep asking from onDraw while they run.
+     */
     public void invalidateView() {
-        ((Activity) this.getContext()).runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                invalidate();
-            }
-        });
+        mFrames.requestFrame();
+    }
+
+    @Override
+    public void setTestingRightEye(boolean testingRightEye) {
+        super.setTestingRightEye(testingRightEye);
+        invalidateView();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mFrames.cancel();
+        super.onDetachedFromWindow();
     }
 
     public float setPowerClosestTo(float power) {
@@ -151,6 +184,7 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         if (mUmbrellaPosition.isActive()) {
             mUmbrellaPainter.activateLineAligner();
             mUmbrellaPosition.reducePitch();
+            invalidateView();
             return mUmbrellaPosition.computeMeridianPower();
         }
         return Float.NaN;
@@ -195,6 +229,7 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         if (mUmbrellaPosition.isActive()) {
             mUmbrellaPainter.activateLineAligner();
             mUmbrellaPosition.increasePitch();
+            invalidateView();
             return mUmbrellaPosition.computeMeridianPower();
         }
         return Float.NaN;
@@ -219,6 +254,7 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         canvas.drawColor(Color.rgb(0, 0, 0));
 
         if (getDevice() == null) {
+            mAnimationFrameNanos = 0;
             return;
         }
 
@@ -226,14 +262,25 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
             if (!isRunningTheTest()) {
                 // Blue screen to start camera.
                 canvas.drawColor(Color.rgb(0, 0, 150));
-
-                invalidateView();
+                mAnimationFrameNanos = 0;
                 return;
             }
         }
 
+        RenderingMetrics metrics = RenderingMetrics.getInstance();
+        long frameNanos = mFrames.getLastFrameTimeNanos();
+        if (mAnimationFrameNanos > 0) {
+            metrics.recordFrameInterval(frameNanos - mAnimationFrameNanos);
+        }
+
+        // one step for every fade and text animation, before anything is painted
+        AnimationTimeline timeline = AnimationTimeline.getInstance();
+        timeline.tick(frameNanos > 0 ? frameNanos / 1000000 : timeline.time());
+
+        long paintStart = System.nanoTime();
         mCanvasPainter.paint(canvas, getDevice(), testingRightEye(), mUmbrellaPosition.getWorkingPair(), positionYPX(),
                 toPX(mSliderDisplacement) + testPositionXPX(), toPX(mSliderDisplacement) + idlePositionXPX(), 1);
+        metrics.recordPaint(mCanvasPainter, System.nanoTime() - paintStart);
 
         if (training) {
             drawTraining(canvas);
@@ -245,7 +292,13 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
             drawCancel(canvas);
         }
 
-        invalidateView();
+        if (timeline.isAnimating()
+                || mCanvasPainter instanceof AnimatedPainter && ((AnimatedPainter) mCanvasPainter).isAnimating()) {
+            mAnimationFrameNanos = frameNanos;
+            invalidateView();
+        } else {
+            mAnimationFrameNanos = 0;
+        }
     }
 
     public static int dpToPixels(Context context, float dp) {
@@ -255,23 +308,13 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
     }
 
     public void drawMessage(Canvas canvas, String msg, int color) {
-        Paint paint = new Paint();
-
-        paint.setColor(Color.BLACK);
-        paint.setStrokeWidth(1);
-        paint.setStyle(Paint.Style.FILL);
-        paint.setStrokeJoin(Paint.Join.ROUND);    // set the join to round you want
-        paint.setStrokeCap(Paint.Cap.ROUND);
-        paint.setPathEffect(new CornerPathEffect(10));
-        paint.setAntiAlias(true);
-        paint.setDither(true);
-
         float centerX = getWidth() / 2 - 10;
         float radiusXOnHalfY = dpToPixels(this.getContext(), 140 / 3);
         float radiusY = dpToPixels(this.getContext(), 105 / 3);
         float radiusX = dpToPixels(this.getContext(), 180 / 3);
 
-        Path path = new Path();
+        Path path = mMessagePath;
+        path.reset();
         path.moveTo(centerX, getHeight() - radiusY);
         path.lineTo(centerX - radiusXOnHalfY, getHeight() - radiusY / 2);
         path.lineTo(centerX - radiusX, getHeight());
@@ -279,11 +322,10 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         path.lineTo(centerX + radiusXOnHalfY, getHeight() - radiusY / 2);
         path.lineTo(centerX, getHeight() - radiusY);
 
-        canvas.drawPath(path, paint);
+        canvas.drawPath(path, mMessageBackgroundPaint);
 
-        paint = new Paint();
+        Paint paint = mMessageTextPaint;
         paint.setColor(color);
-        paint.setTextSize(dpToPixels(this.getContext(), 16));
         canvas.save();
         canvas.translate(centerX, getHeight() - 10);
         float size = paint.measureText(msg, 0, msg.length());
@@ -293,23 +335,13 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
     }
 
     public void drawMessageOtherSide(Canvas canvas, String msg, int color) {
-        Paint paint = new Paint();
-
-        paint.setColor(Color.BLACK);
-        paint.setStrokeWidth(1);
-        paint.setStyle(Paint.Style.FILL);
-        paint.setStrokeJoin(Paint.Join.ROUND);    // set the join to round you want
-        paint.setStrokeCap(Paint.Cap.ROUND);
-        paint.setPathEffect(new CornerPathEffect(10));
-        paint.setAntiAlias(true);
-        paint.setDither(true);
-
         float centerX = getWidth() / 2 - 10;
         float radiusXOnHalfY = dpToPixels(this.getContext(), 140 / 3);
         float radiusY = dpToPixels(this.getContext(), 105 / 3);
         float radiusX = dpToPixels(this.getContext(), 180 / 3);
 
-        Path path = new Path();
+        Path path = mMessagePath;
+        path.reset();
         path.moveTo(centerX, radiusY);
         path.lineTo(centerX - radiusXOnHalfY, radiusY / 2);
         path.lineTo(centerX - radiusX, 0);
@@ -317,11 +349,10 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
         path.lineTo(centerX + radiusXOnHalfY, radiusY / 2);
         path.lineTo(centerX, radiusY);
 
-        canvas.drawPath(path, paint);
+        canvas.drawPath(path, mMessageBackgroundPaint);
 
-        paint = new Paint();
+        Paint paint = mMessageTextPaint;
         paint.setColor(color);
-        paint.setTextSize(dpToPixels(this.getContext(), 16));
         canvas.save();
         canvas.translate(centerX, 40);
         float size = paint.measureText(msg, 0, msg.length());
@@ -372,6 +403,7 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
 
     public void setDoingPDMeasurement(boolean doing) {
         mUmbrellaPainter.setAvoidConvergence(doing);
+        invalidateView();
     }
 
     public void setScreen(Screen s) {
@@ -403,7 +435,7 @@ public class UmbrellaTestView extends BaseTestView implements NETRAView {
             default:
                 break;
         }
-        invalidate();
+        invalidateView();
     }
 
 
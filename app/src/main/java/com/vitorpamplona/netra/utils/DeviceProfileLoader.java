@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.vitorpamplona.core.testdevice.DeviceDataset;
+import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+import com.vitorpamplona.netra.model.db.gsonadapters.GsonProvider;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads extra device profiles from a JSON array in the assets, so a new hardware batch can
+ * ship as a data file instead of new entries in DeviceDataset. Profiles without their optics
+ * geometry or camera calibration are skipped and logged. viewToRun can't be set from the file.
+ */
+public class DeviceProfileLoader {
+
+    private static final String TAG = "DeviceProfileLoader";
+
+    public static final String PROFILES_ASSET = "devices.json";
+
+    public static void loadFromAssets(Context ctx) {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(ctx.getAssets().open(PROFILES_ASSET), "UTF-8");
+            load(reader);
+        } catch (FileNotFoundException e) {
+            // No extra profiles in this build.
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read " + PROFILES_ASSET, e);
+        } catch (JsonParseException e) {
+            Log.e(TAG, "Invalid profiles in " + PROFILES_ASSET, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the profiles registered.
+     */
+    public static List<Device> load(Reader json) {
+        JsonElement root = new JsonParser().parse(json);
+        if (!root.isJsonArray()) {
+            throw new JsonParseException("Expected an array of device profiles");
+        }
+
+        Gson gson = GsonProvider.get();
+        JsonArray array = root.getAsJsonArray();
+
+        List<Device> devices = new ArrayList<Device>();
+        for (int i = 0; i < array.size(); i++) {
+            Device d;
+            try {
+                d = gson.fromJson(array.get(i), Device.class);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Skipping profile " + i + ": " + e.getMessage());
+                continue;
+            }
+
+            String problem = d != null ? validate(d) : "empty";
+            if (problem != null) {
+                Log.w(TAG, "Skipping profile " + i + ": " + problem);
+                continue;
+            }
+
+            devices.add(d);
+        }
+
+        if (!devices.isEmpty()) {
+            DeviceDataset.register(devices);
+        }
+        return devices;
+    }
+
+    /**
+     * @return what is wrong with the profile, or null if it can be used.
+     */
+    public static String validate(Device d) {
+        if (d.id <= 0) return "missing id";
+
+        if (!(d.tubeLength > 0)) return "missing tubeLength";
+        if (!(d.lensFocalLength > 0)) return "missing lensFocalLength";
+        if (!(d.lensEyeDistance > 0)) return "missing lensEyeDistance";
+        if (!(d.slitDistance > 0)) return "missing slitDistance";
+
+        if (d.previewFrameSize == null) return "missing previewFrameSize";
+        if (d.calibrationType == null) return "missing calibrationType";
+        if (d.deltaMeridianFromCalibration == null) return "missing deltaMeridianFromCalibration";
+        if (d.deltaScrollyFromCalibration == null) return "missing deltaScrollyFromCalibration";
+        if (d.deltaPDRectTopLeftFromCalibration == null) return "missing deltaPDRectTopLeftFromCalibration";
+        if (d.deltaPDRectBottomRigthFromCalibration == null) return "missing deltaPDRectBottomRigthFromCalibration";
+        if (d.calibrationRectTopLeft == null) return "missing calibrationRectTopLeft";
+        if (d.calibrationRectBottomRight == null) return "missing calibrationRectBottomRight";
+
+        return null;
+    }
+}
@@ -33,7 +33,6 @@ import android.hardware.SensorManager;
 import android.widget.Toast;
 
 import com.vitorpamplona.core.testdevice.DeviceModelSettings;
-import com.vitorpamplona.core.utils.DeviceModelParser;
 
 public class DeviceSensorManager {
     public float lowLightThreshold = 1;
@@ -52,8 +51,7 @@ public class DeviceSensorManager {
         mSensorManager = (SensorManager) ctx.getSystemService(Context.SENSOR_SERVICE);
         mLightSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
 
-        String nameOfDevice = DeviceModelParser.getDeviceName();
-        DeviceModelSettings lightLevels = new DeviceModelSettings(nameOfDevice);
+        DeviceModelSettings lightLevels = DeviceModelSettings.current();
 
         if (lightLevels != null) {
             lowLightThreshold = lightLevels.getLowLightThreshold();
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.fitting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.vitorpamplona.core.models.AstigmaticLensParams;
+import com.vitorpamplona.core.models.MeridianPower;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class BatchSinusoidalFittingTest {
+
+    private static class Block {
+        float[] angles;
+        float[] powers;
+        int[] offsets;
+
+        Block(List<? extends Collection<MeridianPower>> exams) {
+            offsets = new int[exams.size() + 1];
+            for (int e = 0; e < exams.size(); e++) {
+                offsets[e + 1] = offsets[e] + exams.get(e).size();
+            }
+
+            angles = new float[offsets[exams.size()]];
+            powers = new float[offsets[exams.size()]];
+            int i = 0;
+            for (Collection<MeridianPower> exam : exams) {
+                for (MeridianPower m : exam) {
+                    angles[i] = m.getAngle();
+                    powers[i] = m.getPower();
+                    i++;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesCurveFitting() {
+        SyntheticExamGenerator generator = new SyntheticExamGenerator(3);
+        List<Collection<MeridianPower>> exams = new ArrayList<Collection<MeridianPower>>();
+        for (int i = 0; i < 200; i++) {
+            exams.add(TestUtils.map(generator.next().netraRaw).values());
+        }
+
+        Block block = new Block(exams);
+        float[] out = new float[3 * exams.size()];
+        new BatchSinusoidalFitting().fit(block.angles, block.powers, block.offsets, out);
+
+        SinusoidalFitting fitting = new SinusoidalFitting();
+        for (int e = 0; e < exams.size(); e++) {
+            AstigmaticLensParams expected = fitting.curveFitting(exams.get(e));
+            assertEquals(expected.getSphere(), out[3 * e + AstigmaticLensFunction.SPHERICAL], 0.0001);
+            assertEquals(expected.getCylinder(), out[3 * e + AstigmaticLensFunction.CYLINDRICAL], 0.0001);
+            assertEquals(expected.getAxis(), out[3 * e + AstigmaticLensFunction.AXIS], 0.001);
+        }
+    }
+
+    @Test
+    public void testRangeAndSmallExams() {
+        List<Collection<MeridianPower>> exams = new ArrayList<Collection<MeridianPower>>();
+        exams.add(new ArrayList<MeridianPower>());
+
+        List<MeridianPower> two = new ArrayList<MeridianPower>();
+        two.add(new MeridianPower(10, -1));
+        two.add(new MeridianPower(100, -3));
+        exams.add(two);
+
+        exams.add(TestUtils.map(new SyntheticExamGenerator(5).next().netraRaw).values());
+
+        Block block = new Block(exams);
+        float[] out = new float[3 * exams.size()];
+        BatchSinusoidalFitting batch = new BatchSinusoidalFitting();
+        batch.fit(block.angles, block.powers, block.offsets, 0, 2, out);
+
+        assertEquals(0, out[0], 0);
+        assertEquals(0, out[1], 0);
+
+        AstigmaticLensParams guess = new SinusoidalFitting().guessPrescription(two);
+        assertEquals(guess.getSphere(), out[3], 0);
+        assertEquals(guess.getCylinder(), out[4], 0);
+        assertEquals(guess.getAxis(), out[5], 0);
+
+        // third exam was outside the range
+        assertEquals(0, out[6], 0);
+        assertEquals(0, out[7], 0);
+        assertEquals(0, out[8], 0);
+
+        batch.fit(block.angles, block.powers, block.offsets, 2, 3, out);
+        assertTrue(out[7] < 0);
+    }
+
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.fitting;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.vitorpamplona.core.models.AstigmaticLensParams;
+import com.vitorpamplona.core.models.MeridianPower;
+import com.vitorpamplona.core.test.Acceptance;
+import com.vitorpamplona.core.test.BestRounding;
+import com.vitorpamplona.core.utils.CollectionUtils;
+import com.vitorpamplona.core.utils.FloatHashMap;
+import com.vitorpamplona.utils.ConsoleProgressBar;
+
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Re-scores exported exam datasets with the current fitting constants.
+ *
+ * Each exam goes through fit -> outlier removal -> rounding -> acceptance in its own task, so the
+ * whole dataset is spread across all cores. The input is a JSON array in the same shape as
+ * {@link TestUtils.Case}. The report is written as CSV when the output file ends in .csv and as
+ * JSON otherwise.
+ *
+ * Usage: ExamReprocessor input.json output.csv [threads]
+ */
+public class ExamReprocessor {
+
+    static FourierDomainAnalysis f = new FourierDomainAnalysis();
+
+    int threads;
+
+    public ExamReprocessor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ExamReprocessor(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Result of reprocessing one exam. Timings are in nanoseconds.
+     */
+    public static class Result {
+        int mobId;
+        int dongs;
+        int meridians;
+
+        AstigmaticLensParams fitted;
+        AstigmaticLensParams enhanced;
+        AstigmaticLensParams rounded;
+        AstigmaticLensParams accepted;
+        AstigmaticLensParams original;
+        AstigmaticLensParams subjective;
+
+        float qualityOfFit;
+        int outliers;
+
+        float vddOriginal;
+        float vddFitted;
+        float vddEnhanced;
+        float vddRounded;
+        float sphEqDiff;
+
+        long fitNanos;
+        long outlierNanos;
+        long roundNanos;
+        long acceptanceNanos;
+    }
+
+    /**
+     * Runs the full pipeline for a single exam. Safe to call from multiple threads as long as
+     * each call gets its own case: all mutable state (outlier flags) lives in the meridians built here.
+     */
+    public static Result process(TestUtils.Case c) {
+        Result r = new Result();
+        r.mobId = c.mobId;
+        r.dongs = c.dongs;
+        r.original = c.netraResult;
+        r.subjective = c.subjAdjustment;
+
+        FloatHashMap<MeridianPower> data = TestUtils.map(c.netraRaw);
+        Collection<MeridianPower> meridians = data.values();
+        r.meridians = meridians.size();
+
+        long start = System.nanoTime();
+        r.fitted = new SinusoidalFitting().curveFitting(meridians);
+        long fitted = System.nanoTime();
+        r.enhanced = new OutlierRemoval().run(meridians, c.dongs, r.fitted, null);
+        long enhanced = System.nanoTime();
+        r.rounded = new BestRounding().round25(r.enhanced, meridians, c.dongs, null);
+        long rounded = System.nanoTime();
+        if (c.usage != null) {
+            r.accepted = new Acceptance().compute(c.currentRx, c.usingGlasses, r.rounded, c.usage, c.age);
+        } else {
+            r.accepted = r.rounded;
+        }
+        long accepted = System.nanoTime();
+
+        r.fitNanos = fitted - start;
+        r.outlierNanos = enhanced - fitted;
+        r.roundNanos = rounded - enhanced;
+        r.acceptanceNanos = accepted - rounded;
+
+        r.qualityOfFit = new QualityOfFit().compute(meridians, c.dongs, r.rounded);
+        r.outliers = new QualityOfFit().countOutliers(meridians);
+
+        if (c.subjAdjustment != null) {
+            if (c.netraResult != null)
+                r.vddOriginal = f.diff(c.netraResult, c.subjAdjustment);
+            r.vddFitted = f.diff(r.fitted, c.subjAdjustment);
+            r.vddEnhanced = f.diff(r.enhanced, c.subjAdjustment);
+            r.vddRounded = f.diff(r.rounded, c.subjAdjustment);
+            r.sphEqDiff = r.rounded.sphEquivalent() - c.subjAdjustment.sphEquivalent();
+        }
+
+        return r;
+    }
+
+    /**
+     * Reprocesses all cases in parallel. Results keep the order of the input.
+     */
+    public List<Result> run(List<TestUtils.Case> cases, boolean showProgress) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>(cases.size());
+            for (final TestUtils.Case c : cases) {
+                futures.add(pool.submit(() -> process(c)));
+            }
+
+            List<Result> results = new ArrayList<Result>(cases.size());
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+                if (showProgress)
+                    ConsoleProgressBar.printProgBar(results.size() / (double) futures.size());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static List<TestUtils.Case> read(Reader reader) {
+        return new Gson().fromJson(reader, new TypeToken<List<TestUtils.Case>>() {
+        }.getType());
+    }
+
+    public static void writeJson(List<Result> results, Writer writer) {
+        new GsonBuilder().setPrettyPrinting().create().toJson(results, writer);
+    }
+
+    public static void writeCsv(List<Result> results, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("mobId,dongs,meridians,outliers,qualityOfFit,"
+                + "fittedSph,fittedCyl,fittedAxis,enhancedSph,enhancedCyl,enhancedAxis,"
+                + "roundedSph,roundedCyl,roundedAxis,acceptedSph,acceptedCyl,acceptedAxis,"
+                + "vddOriginal,vddFitted,vddEnhanced,vddRounded,sphEqDiff,"
+                + "fitNanos,outlierNanos,roundNanos,acceptanceNanos");
+        for (Result r : results) {
+            out.println(String.format(Locale.US, "%d,%d,%d,%d,%.4f,%s,%s,%s,%s,%.4f,%.4f,%.4f,%.4f,%.4f,%d,%d,%d,%d",
+                    r.mobId, r.dongs, r.meridians, r.outliers, r.qualityOfFit,
+                    csv(r.fitted), csv(r.enhanced), csv(r.rounded), csv(r.accepted),
+                    r.vddOriginal, r.vddFitted, r.vddEnhanced, r.vddRounded, r.sphEqDiff,
+                    r.fitNanos, r.outlierNanos, r.roundNanos, r.acceptanceNanos));
+        }
+        out.flush();
+    }
+
+    private static String csv(AstigmaticLensParams p) {
+        return String.format(Locale.US, "%.2f,%.2f,%.0f", p.getSphere(), p.getCylinder(), p.getAxis());
+    }
+
+    public static void printSummary(List<Result> results, long wallNanos) {
+        if (results.isEmpty()) return;
+
+        List<Float> vddOriginal = new ArrayList<Float>();
+        List<Float> vddRounded = new ArrayList<Float>();
+        List<Float> pipelineMillis = new ArrayList<Float>();
+        for (Result r : results) {
+            vddOriginal.add(r.vddOriginal);
+            vddRounded.add(r.vddRounded);
+            pipelineMillis.add((r.fitNanos + r.outlierNanos + r.roundNanos + r.acceptanceNanos) / 1000000f);
+        }
+
+        CollectionUtils<Float> utils = new CollectionUtils<Float>();
+        System.out.println("");
+        System.out.println("Exams        " + results.size() + " in " + (wallNanos / 1000000) + "ms");
+        System.out.println("OrigVDD      " + utils.avgSTD(vddOriginal).toString() + "D");
+        System.out.println("RoundedVDD   " + utils.avgSTD(vddRounded).toString() + "D");
+        System.out.println("Per Exam     " + utils.avgSTD(pipelineMillis).toString() + "ms");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println("Usage: ExamReprocessor <input.json> <output.csv|output.json> [threads]");
+            return;
+        }
+
+        ExamReprocessor reprocessor = args.length > 2
+                ? new ExamReprocessor(Integer.parseInt(args[2]))
+                : new ExamReprocessor();
+
+        List<TestUtils.Case> cases;
+        try (Reader reader = new FileReader(args[0])) {
+            cases = read(reader);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = reprocessor.run(cases, true);
+        long wall = System.nanoTime() - start;
+
+        try (Writer writer = new FileWriter(args[1])) {
+            if (args[1].endsWith(".csv"))
+                writeCsv(results, writer);
+            else
+                writeJson(results, writer);
+        }
+
+        printSummary(results, wall);
+    }
+}
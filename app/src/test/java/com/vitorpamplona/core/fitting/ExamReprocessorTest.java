@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.fitting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.vitorpamplona.core.models.AstigmaticLensParams;
+import com.vitorpamplona.core.models.EyeGlassesUsageType;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class ExamReprocessorTest {
+
+    TestUtils.Case c1007OD = new TestUtils.Case(
+            1007,
+            1,
+            new HashMap<Integer, Float>() {{
+                put(123, 1.4042268f);
+                put(85, 0.9176471f);
+                put(166, 0.606688f);
+                put(144, 1.0092691f);
+                put(11, 0.42732924f);
+                put(57, 0.76406115f);
+                put(102, -0.1666865f);
+                put(34, 0.59959596f);
+            }},
+            new AstigmaticLensParams(1.25f, -0.75f, 110.0f),
+            new AstigmaticLensParams(1.25f, 0.0f, 0.0f), 100
+    );
+
+    TestUtils.Case c607OD = new TestUtils.Case(
+            607,
+            0,
+            new HashMap<Integer, Float>() {{
+                put(122, -4.120558f);
+                put(144, -4.8643246f);
+                put(55, -4.666124f);
+                put(168, -5.095322f);
+                put(100, -4.5438204f);
+                put(10, -5.2602324f);
+                put(32, -4.559549f);
+                put(78, -4.6272607f);
+            }},
+            new AstigmaticLensParams(-4.5f, -0.25f, 95.0f),
+            new AstigmaticLensParams(-4.25f, -0.75f, 105.0f)
+    );
+
+    @Test
+    public void testParallelMatchesSequentialPipeline() throws Exception {
+        List<TestUtils.Case> cases = new ArrayList<TestUtils.Case>();
+        for (int i = 0; i < 20; i++) {
+            cases.add(i % 2 == 0 ? c1007OD : c607OD);
+        }
+
+        List<ExamReprocessor.Result> results = new ExamReprocessor(4).run(cases, false);
+
+        assertEquals(cases.size(), results.size());
+        for (int i = 0; i < cases.size(); i++) {
+            TestUtils.Case c = cases.get(i);
+            AstigmaticLensParams expected = TestUtils.compute(c.netraRaw, c.dongs);
+            ExamReprocessor.Result r = results.get(i);
+
+            assertEquals(c.mobId, r.mobId);
+            assertEquals(expected.getSphere(), r.rounded.getSphere(), 0.001);
+            assertEquals(expected.getCylinder(), r.rounded.getCylinder(), 0.001);
+            assertEquals(expected.getAxis(), r.rounded.getAxis(), 0.001);
+            assertEquals(TestUtils.calculateRecomputedVDDDiff(c), r.vddRounded, 0.001);
+        }
+    }
+
+    @Test
+    public void testReadsExportedCasesAndWritesCsv() throws Exception {
+        String json = "[{\"mobId\":1007,\"dongs\":1,"
+                + "\"netraRaw\":{\"123\":1.4042268,\"85\":0.9176471,\"166\":0.606688,\"144\":1.0092691,"
+                + "\"11\":0.42732924,\"57\":0.76406115,\"102\":-0.1666865,\"34\":0.59959596},"
+                + "\"netraResult\":{\"sphere\":1.25,\"cylinder\":-0.75,\"axis\":110},"
+                + "\"subjAdjustment\":{\"sphere\":1.25,\"cylinder\":0,\"axis\":0},"
+                + "\"usage\":\"FAR\",\"age\":30}]";
+
+        List<TestUtils.Case> cases = ExamReprocessor.read(new StringReader(json));
+
+        assertEquals(1, cases.size());
+        assertEquals(8, cases.get(0).netraRaw.size());
+        assertEquals(EyeGlassesUsageType.FAR, cases.get(0).usage);
+
+        List<ExamReprocessor.Result> results = new ExamReprocessor(1).run(cases, false);
+        assertTrue(results.get(0).accepted != null);
+
+        StringWriter csv = new StringWriter();
+        ExamReprocessor.writeCsv(results, csv);
+
+        String[] lines = csv.toString().trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].startsWith("1007,1,8,"));
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.fitting;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.vitorpamplona.core.models.AstigmaticLensParams;
+import com.vitorpamplona.core.utils.AngleDiff;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic exams from a ground truth prescription, in the same shape as the
+ * {@link TestUtils.Case}s copied from real datasets.
+ *
+ * Meridians are spread evenly over 180 degrees (like the 22.5 degree buckets of the device),
+ * moved by a random angle jitter and measured with Gaussian noise. Some meridians can be turned
+ * into outliers and each exam gets a random number of user errors (dongs). The reported result of
+ * each exam is what the current fitting, outlier removal and rounding make of its measurements.
+ *
+ * The generator is an endless, seeded iterator: the same seed always yields the same exams and
+ * nothing is kept in memory between exams.
+ *
+ * Usage: SyntheticExamGenerator output.json count [seed]
+ */
+public class SyntheticExamGenerator implements Iterator<TestUtils.Case> {
+
+    Random random;
+
+    int meridians = 8;
+    float angleJitter = 3f;
+    float noise = 0.25f;
+
+    float outlierProbability = 0.1f;
+    int maxOutliers = 2;
+    float outlierMagnitude = 1.5f;
+
+    int maxUserErrors = 2;
+
+    // Fixed ground truth. When null, a random prescription is drawn for each exam.
+    AstigmaticLensParams truth;
+
+    float minSphere = -8f;
+    float maxSphere = 4f;
+    float minCylinder = -4f;
+
+    int nextId = 1;
+
+    public SyntheticExamGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public SyntheticExamGenerator meridians(int meridians) {
+        this.meridians = meridians;
+        return this;
+    }
+
+    public SyntheticExamGenerator angleJitter(float degrees) {
+        this.angleJitter = degrees;
+        return this;
+    }
+
+    public SyntheticExamGenerator noise(float diopters) {
+        this.noise = diopters;
+        return this;
+    }
+
+    /**
+     * Each meridian has {@code probability} of being an outlier, up to {@code max} per exam.
+     * An outlier is off by at least {@code magnitude} diopters, to either side.
+     */
+    public SyntheticExamGenerator outliers(float probability, int max, float magnitude) {
+        this.outlierProbability = probability;
+        this.maxOutliers = max;
+        this.outlierMagnitude = magnitude;
+        return this;
+    }
+
+    public SyntheticExamGenerator maxUserErrors(int maxUserErrors) {
+        this.maxUserErrors = maxUserErrors;
+        return this;
+    }
+
+    public SyntheticExamGenerator truth(AstigmaticLensParams truth) {
+        this.truth = truth;
+        return this;
+    }
+
+    /**
+     * Ranges for random ground truths, in 0.25D steps. Axis is drawn in 5 degree steps.
+     */
+    public SyntheticExamGenerator population(float minSphere, float maxSphere, float minCylinder) {
+        this.truth = null;
+        this.minSphere = minSphere;
+        this.maxSphere = maxSphere;
+        this.minCylinder = minCylinder;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return true;
+    }
+
+    @Override
+    public TestUtils.Case next() {
+        AstigmaticLensParams real = truth != null ? truth : randomPrescription();
+
+        boolean[] isOutlier = pickOutliers();
+        int outliers = 0;
+        for (boolean o : isOutlier) if (o) outliers++;
+
+        Map<Integer, Float> raw = new HashMap<Integer, Float>();
+        int[] knownOutliers = new int[outliers];
+        int currentOutlier = 0;
+
+        float offset = random.nextFloat() * (180f / meridians);
+        for (int i = 0; i < meridians; i++) {
+            float angle = offset + i * (180f / meridians) + (float) (random.nextGaussian() * angleJitter);
+            int bucket = Math.round(AngleDiff.angle0to180(angle)) % 180;
+
+            // Two meridians cannot share the same integer angle in a Case.
+            while (raw.containsKey(bucket)) {
+                bucket = (bucket + 1) % 180;
+            }
+
+            float power = real.interpolate(bucket) + (float) (random.nextGaussian() * noise);
+
+            if (isOutlier[i]) {
+                float sign = random.nextBoolean() ? 1 : -1;
+                power += sign * (outlierMagnitude + random.nextFloat() * outlierMagnitude);
+                knownOutliers[currentOutlier++] = bucket;
+            }
+
+            raw.put(bucket, power);
+        }
+
+        int dongs = maxUserErrors > 0 ? random.nextInt(maxUserErrors + 1) : 0;
+
+        // What the app would have reported for these measurements.
+        AstigmaticLensParams netraResult = TestUtils.compute(raw, dongs);
+
+        return new TestUtils.Case(nextId++, dongs, raw, netraResult, real, knownOutliers);
+    }
+
+    /**
+     * Draws how many meridians are outliers first and then which ones, so a binding
+     * {@code maxOutliers} does not favor the first meridians.
+     */
+    private boolean[] pickOutliers() {
+        int count = 0;
+        for (int i = 0; i < meridians; i++) {
+            if (random.nextFloat() < outlierProbability) count++;
+        }
+        count = Math.min(count, maxOutliers);
+
+        // Partial Fisher-Yates: the first count positions end up as a uniform sample.
+        int[] order = new int[meridians];
+        for (int i = 0; i < meridians; i++) order[i] = i;
+        boolean[] isOutlier = new boolean[meridians];
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(meridians - i);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+            isOutlier[order[i]] = true;
+        }
+        return isOutlier;
+    }
+
+    private AstigmaticLensParams randomPrescription() {
+        int sphSteps = (int) ((maxSphere - minSphere) / 0.25f);
+        int cylSteps = (int) (-minCylinder / 0.25f);
+
+        float sph = minSphere + random.nextInt(sphSteps + 1) * 0.25f;
+        float cyl = -random.nextInt(cylSteps + 1) * 0.25f;
+        float axis = cyl == 0 ? 0 : random.nextInt(36) * 5f;
+
+        return new AstigmaticLensParams(sph, cyl, axis);
+    }
+
+    /**
+     * Streams {@code count} exams as a JSON array readable by {@link ExamReprocessor#read}.
+     */
+    public void write(int count, Writer out) throws IOException {
+        Gson gson = new Gson();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        for (int i = 0; i < count; i++) {
+            gson.toJson(next(), TestUtils.Case.class, writer);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SyntheticExamGenerator <output.json> <count> [seed]");
+            return;
+        }
+
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        try (Writer out = new FileWriter(args[0])) {
+            new SyntheticExamGenerator(seed).write(Integer.parseInt(args[1]), out);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.fitting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.vitorpamplona.core.models.AstigmaticLensParams;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class SyntheticExamGeneratorTest {
+
+    @Test
+    public void testSameSeedSameExams() {
+        SyntheticExamGenerator g1 = new SyntheticExamGenerator(7);
+        SyntheticExamGenerator g2 = new SyntheticExamGenerator(7);
+
+        for (int i = 0; i < 100; i++) {
+            TestUtils.Case c1 = g1.next();
+            TestUtils.Case c2 = g2.next();
+            assertEquals(c1.netraRaw, c2.netraRaw);
+            assertEquals(c1.dongs, c2.dongs);
+            assertEquals(c1.subjAdjustment.toString(), c2.subjAdjustment.toString());
+        }
+    }
+
+    @Test
+    public void testNoiseFreeExamsFitTheTruth() {
+        AstigmaticLensParams real = new AstigmaticLensParams(-2.25f, -1.50f, 35f);
+        SyntheticExamGenerator generator = new SyntheticExamGenerator(1)
+                .truth(real)
+                .meridians(16)
+                .noise(0)
+                .angleJitter(0)
+                .outliers(0, 0, 0)
+                .maxUserErrors(0);
+
+        for (int i = 0; i < 10; i++) {
+            TestUtils.Case c = generator.next();
+            assertEquals(16, c.netraRaw.size());
+            assertEquals(0, c.dongs);
+
+            AstigmaticLensParams fitted = TestUtils.fit(c.netraRaw);
+            assertEquals(real.getSphere(), fitted.getSphere(), 0.05);
+            assertEquals(real.getCylinder(), fitted.getCylinder(), 0.05);
+            assertEquals(real.getAxis(), fitted.getAxis(), 1);
+        }
+    }
+
+    @Test
+    public void testOutliersAreInjectedAndReported() {
+        AstigmaticLensParams real = new AstigmaticLensParams(-1f, 0, 0);
+        SyntheticExamGenerator generator = new SyntheticExamGenerator(3)
+                .truth(real)
+                .noise(0)
+                .outliers(1, 2, 2f);
+
+        TestUtils.Case c = generator.next();
+        assertEquals(2, c.knownOutliers.length);
+        for (int angle : c.knownOutliers) {
+            assertTrue(Math.abs(c.netraRaw.get(angle) - real.getSphere()) >= 2f);
+        }
+    }
+
+    @Test
+    public void testCappedOutliersAreSpreadOverAllMeridians() {
+        SyntheticExamGenerator generator = new SyntheticExamGenerator(11)
+                .angleJitter(0)
+                .outliers(1, 2, 2f);
+
+        int total = 0;
+        int upperHalf = 0;
+        for (int i = 0; i < 500; i++) {
+            for (int angle : generator.next().knownOutliers) {
+                total++;
+                if (angle >= 90) upperHalf++;
+            }
+        }
+
+        assertEquals(1000, total);
+        assertEquals(0.5, upperHalf / (double) total, 0.1);
+    }
+
+    @Test
+    public void testCasesCarryAReportedResult() {
+        SyntheticExamGenerator generator = new SyntheticExamGenerator(9);
+
+        for (int i = 0; i < 20; i++) {
+            TestUtils.Case c = generator.next();
+            assertEquals(TestUtils.compute(c.netraRaw, c.dongs).toString(), c.netraResult.toString());
+            assertTrue(TestUtils.calculateOriginalVDDDiff(c) >= 0);
+        }
+    }
+
+    @Test
+    public void testWritesExamsTheReprocessorCanRead() throws Exception {
+        StringWriter out = new StringWriter();
+        new SyntheticExamGenerator(5).write(20, out);
+
+        List<TestUtils.Case> cases = ExamReprocessor.read(new StringReader(out.toString()));
+        assertEquals(20, cases.size());
+
+        List<ExamReprocessor.Result> results = new ExamReprocessor(2).run(cases, false);
+        assertEquals(20, results.size());
+    }
+}
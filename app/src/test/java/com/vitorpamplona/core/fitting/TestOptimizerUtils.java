@@ -30,15 +30,19 @@ import com.vitorpamplona.core.models.MeridianPower;
 import com.vitorpamplona.core.test.BestRounding;
 import com.vitorpamplona.core.utils.CollectionUtils;
 import com.vitorpamplona.core.utils.FloatHashMap;
-import com.vitorpamplona.utils.CascadingFors;
-import com.vitorpamplona.utils.ConsoleProgressBar;
+import com.vitorpamplona.utils.ParameterSweep;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class TestOptimizerUtils {
     static DecimalFormat formatter = new DecimalFormat("+0.00;-0.00");
@@ -76,7 +80,112 @@ public class TestOptimizerUtils {
                 " \t Diff:" + p1Real;
     }
 
+    /**
+     * Everything that does not depend on the thresholds being optimized: the meridians, the basic
+     * fit, its quality and all outlier options. Outlier options mark their meridians when applied,
+     * so each thread works on its own {@link #copy()}.
+     */
+    public static class PrecomputedCase {
+        TestUtils.Case c;
+        List<MeridianPower> meridians;
+        AstigmaticLensParams basicFit;
+        List<Outlier> options;
+        double qualityOfFit;
+
+        public PrecomputedCase(TestUtils.Case c) {
+            this.c = c;
+            this.meridians = new ArrayList<MeridianPower>(map(c.netraRaw).values());
+            this.basicFit = new SinusoidalFitting().curveFitting(meridians);
+            this.options = new OutlierRemoval().calculateOptions(meridians, c.dongs, basicFit);
+            if (options != null) {
+                Collections.sort(options);
+            }
+            this.qualityOfFit = new QualityOfFit().compute(meridians, c.dongs, basicFit);
+        }
+
+        private PrecomputedCase() {
+        }
+
+        public PrecomputedCase copy() {
+            PrecomputedCase copy = new PrecomputedCase();
+            copy.c = c;
+            copy.basicFit = basicFit;
+            copy.qualityOfFit = qualityOfFit;
+
+            Map<MeridianPower, MeridianPower> clones = new IdentityHashMap<MeridianPower, MeridianPower>();
+            copy.meridians = new ArrayList<MeridianPower>(meridians.size());
+            for (MeridianPower m : meridians) {
+                MeridianPower clone = new MeridianPower(m.getAngle(), m.getPower());
+                clones.put(m, clone);
+                copy.meridians.add(clone);
+            }
+
+            if (options != null) {
+                copy.options = new ArrayList<Outlier>(options.size());
+                for (Outlier o : options) {
+                    copy.options.add(new Outlier(o.fitted, o.qualityOfFit, clones.get(o.removed), o.removed2nd == null ? null : clones.get(o.removed2nd)));
+                }
+            }
+            return copy;
+        }
+
+        /**
+         * Runs outlier removal and rounding with the given thresholds, in the order of
+         * {@link #ROUNDING_PARAMETERS}.
+         */
+        public AstigmaticLensParams round(double[] p) {
+            for (MeridianPower m : meridians) {
+                m.setOutlier(false);
+            }
+
+            AstigmaticLensParams enhancedFit = basicFit;
+            if (options != null) {
+                enhancedFit = new OutlierRemoval().run(options, basicFit, qualityOfFit, null,
+                        p[4], p[5], p[6], p[7], p[8]);
+            }
+
+            return new BestRounding().round(enhancedFit, meridians, c.dongs,
+                    null, 0.25f, 5,
+                    p[0], p[1], p[2], p[3]);
+        }
+    }
+
+    // Defaults
+    //public static final double IGNORE_CYL_IF_UNDER = 0.35f;
+    //public static final double REDUCE_CYL_BY_0_25_WITH_FIT_MORE_THAN = 0.06f;
+    //public static final double REDUCE_CYL_BY_0_50_WITH_FIT_MORE_THAN = 0.25f;
+    //public static final double REDUCE_CYL_BY_HALF_WITH_FIT_MORE_THAN = 0.50f;
+    //public static final double BIGGEST_PUSH_SMALL_CYLS = 0.40f;
+    //public static final double BIGGEST_PUSH_LARGE_CYLS = 0.70f;
+    //public static final double MIN_STD_DEV_MULTIPLIER_TO_PUSH_AXIS = 2.5;
+    //public static final double DIFFERENCE_TO_CONSIDER_AN_OUTLIER = 1.25f;
+    //public static final double MIN_DEFORMING_FIT_QUALITY = 0.42f;
+    public static final List<ParameterSweep.Dimension> ROUNDING_PARAMETERS = Arrays.asList(
+            new ParameterSweep.Dimension(0.35, 0.35, 0.1),    // ignoreCylIfUnder
+            new ParameterSweep.Dimension(0.06, 0.06, 0.01),   // reduceCylBy025
+            new ParameterSweep.Dimension(0.25, 0.25, 0.05),   // reduceCylBy050
+            new ParameterSweep.Dimension(0.25, 0.50, 0.25),   // reduceCylByHalfAfter
+            new ParameterSweep.Dimension(0.40, 0.40, 0.10),   // biggestPushSmallCyls
+            new ParameterSweep.Dimension(0.70, 0.70, 0.10),   // biggestPushLargeCyls
+            new ParameterSweep.Dimension(2.5, 2.5, 0.50),     // minStdDevMultiplierToPushAxis
+            new ParameterSweep.Dimension(1.25, 1.25, 0.25),   // differenceToConsiderAnOutlier
+            new ParameterSweep.Dimension(0.42, 0.42, 0.02)    // minDeformingFitQuality
+    );
+
+    public static final int SCORE_VDD = 0;
+    public static final int SCORE_SPH_EQ = 1;
+    public static final int SCORE_ABS_SPH_EQ = 2;
+
     public static void optimizeRoundingParameters(Collection<TestUtils.Case> data) {
+        try {
+            optimizeRoundingParameters(data, ROUNDING_PARAMETERS, ParameterSweep.GRID_SEARCH, null);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void optimizeRoundingParameters(Collection<TestUtils.Case> data, List<ParameterSweep.Dimension> parameters,
+                                                  ParameterSweep.Strategy strategy, File checkpoint) throws IOException, InterruptedException, ExecutionException {
         // Base Calculations
         List<Float> vectorDifferencesOriginal = new ArrayList<Float>();
         List<Float> sphEqDifferencesOriginal = new ArrayList<Float>();
@@ -90,29 +199,20 @@ public class TestOptimizerUtils {
         List<Float> sphEqDifferencesJustDefaultFitting = new ArrayList<Float>();
         List<Float> absSphEqDifferencesJustDefaultFitting = new ArrayList<Float>();
 
-        List<Integer> mobIds = new ArrayList<>();
-        Map<TestUtils.Case, AstigmaticLensParams> basicFits = new HashMap<TestUtils.Case, AstigmaticLensParams>();
-        Map<TestUtils.Case, List<Outlier>> options = new HashMap<TestUtils.Case, List<Outlier>>();
+        // CACHE: fits and outlier options are computed only once per case.
+        final List<PrecomputedCase> precomputed = new ArrayList<PrecomputedCase>();
 
-        Map<TestUtils.Case, AstigmaticLensParams> enhancedFits = new HashMap<TestUtils.Case, AstigmaticLensParams>();
         for (TestUtils.Case c : data) {
-            mobIds.add(c.mobId);
-
             vectorDifferencesOriginal.add(TestUtils.calculateOriginalVDDDiff(c));
             sphEqDifferencesOriginal.add(TestUtils.calculateOriginalSphEqDiff(c));
             absSphEqDifferencesOriginal.add(Math.abs(TestUtils.calculateOriginalSphEqDiff(c)));
 
-            AstigmaticLensParams basicFit = new SinusoidalFitting().curveFitting(map(c.netraRaw).values());
+            PrecomputedCase pc = new PrecomputedCase(c);
+            precomputed.add(pc);
 
-            // CACHE
-            basicFits.put(c, basicFit);
-
-            options.put(c, new OutlierRemoval().calculateOptions(map(c.netraRaw).values(), c.dongs, basicFit));
-
-            AstigmaticLensParams enhancedFit = new OutlierRemoval().run(options.get(c), basicFit, new QualityOfFit().compute(map(c.netraRaw).values(), c.dongs, basicFit), null);
-            enhancedFits.put(c, enhancedFit);
-
-            AstigmaticLensParams rounded = new BestRounding().round25(enhancedFit, map(c.netraRaw).values(), c.dongs, null);
+            AstigmaticLensParams basicFit = pc.basicFit;
+            AstigmaticLensParams enhancedFit = pc.options == null ? basicFit : new OutlierRemoval().run(pc.options, basicFit, pc.qualityOfFit, null);
+            AstigmaticLensParams rounded = new BestRounding().round25(enhancedFit, pc.meridians, c.dongs, null);
 
             vectorDifferencesCurrentDefaults.add(f.diff(rounded, c.subjAdjustment));
             sphEqDifferencesCurrentDefaults.add(rounded.sphEquivalent() - c.subjAdjustment.sphEquivalent());
@@ -121,137 +221,86 @@ public class TestOptimizerUtils {
             vectorDifferencesJustDefaultFitting.add(f.diff(basicFit, c.subjAdjustment));
             sphEqDifferencesJustDefaultFitting.add(basicFit.sphEquivalent() - c.subjAdjustment.sphEquivalent());
             absSphEqDifferencesJustDefaultFitting.add(Math.abs(basicFit.sphEquivalent() - c.subjAdjustment.sphEquivalent()));
-
-            /*
-            if (vectorDifferencesCurrentDefaults.get(vectorDifferencesCurrentDefaults.size()-1) > 0.10
-                    && (Math.abs(c.netraResult.getSphere() - rounded.getSphere()) > 0.26
-                        || Math.abs(c.netraResult.getCylinder() - rounded.getCylinder()) > 0.26 ))
-                System.out.println(debug(c.mobId, c.netraResult, rounded, enhancedFit, basicFit, c.subjAdjustment));
-            else
-                System.out.println("\n");
-                */
         }
 
         CollectionUtils<Float> utils = new CollectionUtils<Float>();
 
-        Mins minVDD = new Mins();
-        Mins minSphEq = new Mins();
-        Mins minAbsSphEq = new Mins();
-
-        final CollectionUtils.AvgStdPair[] minRecompVDD = {new CollectionUtils.AvgStdPair(999, 999)};
-        final CollectionUtils.AvgStdPair[] minRecompSphEq = {new CollectionUtils.AvgStdPair(999, 999)};
-        final CollectionUtils.AvgStdPair[] minRecompABSSphEq = {new CollectionUtils.AvgStdPair(999, 999)};
-
-        // Defaults
-        //public static final double IGNORE_CYL_IF_UNDER = 0.35f;
-        //public static final double REDUCE_CYL_BY_0_25_WITH_FIT_MORE_THAN = 0.06f;
-        //public static final double REDUCE_CYL_BY_0_50_WITH_FIT_MORE_THAN = 0.25f;
-        //public static final double REDUCE_CYL_BY_HALF_WITH_FIT_MORE_THAN = 0.50f;
-        CascadingFors.For ignoreCylIfUnderFor = new CascadingFors.For(0.35, 0.35, 0.1);
-        CascadingFors.For reduceCylBy025 = new CascadingFors.For(0.06, 0.06, 0.01);
-        CascadingFors.For reduceCylBy050 = new CascadingFors.For(0.25, 0.25, 0.05);
-        CascadingFors.For reduceCylByHalfAfter = new CascadingFors.For(0.25, 0.50, 0.25);
-
-        //Defaults
-        //public static final double BIGGEST_PUSH_SMALL_CYLS = 0.40f;
-        //public static final double BIGGEST_PUSH_LARGE_CYLS = 0.70f;
-        //public static final double MIN_STD_DEV_MULTIPLIER_TO_PUSH_AXIS = 2.5;
-        //public static final double DIFFERENCE_TO_CONSIDER_AN_OUTLIER = 1.25f;
-        //public static final double MIN_DEFORMING_FIT_QUALITY = 0.42f;
-        CascadingFors.For biggestPushSmallCyls = new CascadingFors.For(0.40, 0.40, 0.10);
-        CascadingFors.For biggestPushLargeCyls = new CascadingFors.For(0.70, 0.70, 0.10);
-        CascadingFors.For minStdDevMultiplierToPushAxis = new CascadingFors.For(2.5, 2.5, 0.50);
-        CascadingFors.For differenceToConsiderAnOutlier = new CascadingFors.For(1.25, 1.25, 0.25);
-        CascadingFors.For minDeformingFitQuality = new CascadingFors.For(0.42, 0.42, 0.02);
-
-        CascadingFors fs = new CascadingFors(
-                ignoreCylIfUnderFor, reduceCylBy025, reduceCylBy050, reduceCylByHalfAfter,
-                biggestPushSmallCyls, biggestPushLargeCyls, minStdDevMultiplierToPushAxis,
-                differenceToConsiderAnOutlier, minDeformingFitQuality);
-
-        Collection<TestUtils.Case> finalData = data;
-        fs.run(() -> {
-            List<Float> vectorDifferencesRecomputed = new ArrayList<Float>();
-            List<Float> sphEqDifferencesRecomputed = new ArrayList<Float>();
-            List<Float> absSphEqDifferencesRecomputed = new ArrayList<Float>();
-            for (TestUtils.Case c : finalData) {
-                AstigmaticLensParams enhancedFit = new OutlierRemoval().run(
-                        options.get(c), basicFits.get(c), new QualityOfFit().compute(map(c.netraRaw).values(), c.dongs, basicFits.get(c)), null,
-                        biggestPushSmallCyls.value, biggestPushLargeCyls.value, minStdDevMultiplierToPushAxis.value,
-                        differenceToConsiderAnOutlier.value, minDeformingFitQuality.value);
-
-                AstigmaticLensParams rounded = new BestRounding().round(enhancedFit, map(c.netraRaw).values(), c.dongs,
-                        null, 0.25f, 5,
-                        ignoreCylIfUnderFor.value, reduceCylBy025.value, reduceCylBy050.value, reduceCylByHalfAfter.value);
-
-                vectorDifferencesRecomputed.add(f.diff(rounded, c.subjAdjustment));
-                sphEqDifferencesRecomputed.add(rounded.sphEquivalent() - c.subjAdjustment.sphEquivalent());
-                absSphEqDifferencesRecomputed.add(Math.abs(rounded.sphEquivalent() - c.subjAdjustment.sphEquivalent()));
-            }
-            CollectionUtils.AvgStdPair recompVDD = utils.avgSTD(vectorDifferencesRecomputed);
-            CollectionUtils.AvgStdPair recompSphEq = utils.avgSTD(sphEqDifferencesRecomputed);
-            CollectionUtils.AvgStdPair recompABSSphEq = utils.avgSTD(absSphEqDifferencesRecomputed);
-
-            if (recompVDD.avg * recompVDD.std < (minRecompVDD[0].avg * minRecompVDD[0].std)) {
-                minRecompVDD[0] = recompVDD;
-                minVDD.minIgnoreCylIfUnder = ignoreCylIfUnderFor.value;
-                minVDD.minReduceCylByHalfAfter = reduceCylByHalfAfter.value;
-                minVDD.minReduceCylBy050 = reduceCylBy050.value;
-                minVDD.minReduceCylBy025 = reduceCylBy025.value;
-                minVDD.minBiggestPushSmallCyls = biggestPushSmallCyls.value;
-                minVDD.minBiggestPushLargeCyls = biggestPushLargeCyls.value;
-                minVDD.minMinStdDevMultiplierToPushAxis = minStdDevMultiplierToPushAxis.value;
-                minVDD.minDifferenceToConsiderAnOutlier = differenceToConsiderAnOutlier.value;
-                minVDD.minMinDeformingFitQuality = minDeformingFitQuality.value;
+        // Each thread gets its own copy of the cached cases since rounding depends on the outlier flags.
+        final ThreadLocal<List<PrecomputedCase>> perThread = new ThreadLocal<List<PrecomputedCase>>() {
+            @Override
+            protected List<PrecomputedCase> initialValue() {
+                List<PrecomputedCase> copies = new ArrayList<PrecomputedCase>(precomputed.size());
+                for (PrecomputedCase pc : precomputed) {
+                    copies.add(pc.copy());
+                }
+                return copies;
             }
+        };
 
-            if (Math.abs(recompSphEq.avg) * recompSphEq.std < (Math.abs(minRecompSphEq[0].avg) * minRecompSphEq[0].std)) {
-                minRecompSphEq[0] = recompSphEq;
-                minSphEq.minIgnoreCylIfUnder = ignoreCylIfUnderFor.value;
-                minSphEq.minReduceCylByHalfAfter = reduceCylByHalfAfter.value;
-                minSphEq.minReduceCylBy050 = reduceCylBy050.value;
-                minSphEq.minReduceCylBy025 = reduceCylBy025.value;
-                minSphEq.minBiggestPushSmallCyls = biggestPushSmallCyls.value;
-                minSphEq.minBiggestPushLargeCyls = biggestPushLargeCyls.value;
-                minSphEq.minMinStdDevMultiplierToPushAxis = minStdDevMultiplierToPushAxis.value;
-                minSphEq.minDifferenceToConsiderAnOutlier = differenceToConsiderAnOutlier.value;
-                minSphEq.minMinDeformingFitQuality = minDeformingFitQuality.value;
-            }
-
-            if (recompABSSphEq.avg * recompABSSphEq.std < (minRecompABSSphEq[0].avg * minRecompABSSphEq[0].std)) {
-                minRecompABSSphEq[0] = recompABSSphEq;
-                minAbsSphEq.minIgnoreCylIfUnder = ignoreCylIfUnderFor.value;
-                minAbsSphEq.minReduceCylByHalfAfter = reduceCylByHalfAfter.value;
-                minAbsSphEq.minReduceCylBy050 = reduceCylBy050.value;
-                minAbsSphEq.minReduceCylBy025 = reduceCylBy025.value;
-                minAbsSphEq.minBiggestPushSmallCyls = biggestPushSmallCyls.value;
-                minAbsSphEq.minBiggestPushLargeCyls = biggestPushLargeCyls.value;
-                minAbsSphEq.minMinStdDevMultiplierToPushAxis = minStdDevMultiplierToPushAxis.value;
-                minAbsSphEq.minDifferenceToConsiderAnOutlier = differenceToConsiderAnOutlier.value;
-                minAbsSphEq.minMinDeformingFitQuality = minDeformingFitQuality.value;
-            }
+        ParameterSweep sweep = new ParameterSweep(parameters).showProgress(true);
+        if (checkpoint != null) {
+            sweep.checkpoint(checkpoint);
+        }
 
-            ConsoleProgressBar.printProgBar(fs.progress());
+        sweep.run(strategy, point -> {
+            CollectionUtils.AvgStdPair[] pairs = evaluate(perThread.get(), point);
+            return new double[]{
+                    pairs[SCORE_VDD].avg * pairs[SCORE_VDD].std,
+                    Math.abs(pairs[SCORE_SPH_EQ].avg) * pairs[SCORE_SPH_EQ].std,
+                    pairs[SCORE_ABS_SPH_EQ].avg * pairs[SCORE_ABS_SPH_EQ].std
+            };
         });
 
+        Mins minVDD = new Mins(sweep.best(SCORE_VDD));
+        Mins minSphEq = new Mins(sweep.best(SCORE_SPH_EQ));
+        Mins minAbsSphEq = new Mins(sweep.best(SCORE_ABS_SPH_EQ));
+
         System.out.println("");
         System.out.println("OrigVDD      " + utils.avgSTD(vectorDifferencesOriginal).toString() + "D");
         System.out.println("CurrVDD      " + utils.avgSTD(vectorDifferencesCurrentDefaults).toString() + "D");
         System.out.println("BFitVDD      " + utils.avgSTD(vectorDifferencesJustDefaultFitting).toString() + "D");
-        System.out.println("MinVDD       " + minRecompVDD[0].toString() + "D" + " with " + minVDD.toString());
+        System.out.println("MinVDD       " + minPair(perThread.get(), sweep.best(SCORE_VDD), SCORE_VDD) + "D" + " with " + minVDD.toString());
         System.out.println("");
         System.out.println("OrigSphEq    " + utils.avgSTD(sphEqDifferencesOriginal).toString() + "D");
         System.out.println("CurrSphEq    " + utils.avgSTD(sphEqDifferencesCurrentDefaults).toString() + "D");
         System.out.println("BFitSphEq    " + utils.avgSTD(sphEqDifferencesJustDefaultFitting).toString() + "D");
-        System.out.println("MinSphEq     " + minRecompSphEq[0].toString() + "D" + " with " + minSphEq.toString());
+        System.out.println("MinSphEq     " + minPair(perThread.get(), sweep.best(SCORE_SPH_EQ), SCORE_SPH_EQ) + "D" + " with " + minSphEq.toString());
         System.out.println("");
         System.out.println("OrigAbsSphEq " + utils.avgSTD(absSphEqDifferencesOriginal).toString() + "D");
         System.out.println("CurrAbsSphEq " + utils.avgSTD(absSphEqDifferencesCurrentDefaults).toString() + "D");
         System.out.println("BFitAbsSphEq " + utils.avgSTD(absSphEqDifferencesJustDefaultFitting).toString() + "D");
-        System.out.println("MinAbsSphEq  " + minRecompABSSphEq[0].toString() + "D" + " with " + minAbsSphEq.toString());
+        System.out.println("MinAbsSphEq  " + minPair(perThread.get(), sweep.best(SCORE_ABS_SPH_EQ), SCORE_ABS_SPH_EQ) + "D" + " with " + minAbsSphEq.toString());
         System.out.println("");
     }
 
+    /**
+     * VDD, SphEq and Absolute SphEq differences to the subjective refraction for one set of thresholds.
+     */
+    public static CollectionUtils.AvgStdPair[] evaluate(List<PrecomputedCase> cases, double[] point) {
+        List<Float> vectorDifferencesRecomputed = new ArrayList<Float>();
+        List<Float> sphEqDifferencesRecomputed = new ArrayList<Float>();
+        List<Float> absSphEqDifferencesRecomputed = new ArrayList<Float>();
+        for (PrecomputedCase pc : cases) {
+            AstigmaticLensParams rounded = pc.round(point);
+
+            vectorDifferencesRecomputed.add(f.diff(rounded, pc.c.subjAdjustment));
+            sphEqDifferencesRecomputed.add(rounded.sphEquivalent() - pc.c.subjAdjustment.sphEquivalent());
+            absSphEqDifferencesRecomputed.add(Math.abs(rounded.sphEquivalent() - pc.c.subjAdjustment.sphEquivalent()));
+        }
+
+        CollectionUtils<Float> utils = new CollectionUtils<Float>();
+        return new CollectionUtils.AvgStdPair[]{
+                utils.avgSTD(vectorDifferencesRecomputed),
+                utils.avgSTD(sphEqDifferencesRecomputed),
+                utils.avgSTD(absSphEqDifferencesRecomputed)
+        };
+    }
+
+    private static String minPair(List<PrecomputedCase> cases, double[] point, int score) {
+        if (point == null) return new CollectionUtils.AvgStdPair(999, 999).toString();
+        return evaluate(cases, point)[score].toString();
+    }
+
     public static class Mins {
         double minIgnoreCylIfUnder = 0;
         double minReduceCylByHalfAfter = 0;
@@ -265,6 +314,22 @@ public class TestOptimizerUtils {
 
         static DecimalFormat formatter2 = new DecimalFormat(" 0.00;-0.00");
 
+        public Mins() {
+        }
+
+        public Mins(double[] p) {
+            if (p == null) return;
+            minIgnoreCylIfUnder = p[0];
+            minReduceCylBy025 = p[1];
+            minReduceCylBy050 = p[2];
+            minReduceCylByHalfAfter = p[3];
+            minBiggestPushSmallCyls = p[4];
+            minBiggestPushLargeCyls = p[5];
+            minMinStdDevMultiplierToPushAxis = p[6];
+            minDifferenceToConsiderAnOutlier = p[7];
+            minMinDeformingFitQuality = p[8];
+        }
+
         public String toString() {
             return formatter2.format(minIgnoreCylIfUnder) + "\t" +
                     formatter2.format(minReduceCylBy025) + "\t" +
@@ -30,6 +30,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.vitorpamplona.core.models.AstigmaticLensParams;
+import com.vitorpamplona.core.models.EyeGlassesUsageType;
 import com.vitorpamplona.core.models.MeridianPower;
 import com.vitorpamplona.core.test.BestRounding;
 import com.vitorpamplona.core.utils.CollectionUtils;
@@ -389,6 +390,12 @@ public class TestUtils {
         AstigmaticLensParams subjAdjustment;
         int[] knownOutliers;
 
+        // Optional acceptance inputs, only present in exported datasets.
+        AstigmaticLensParams currentRx;
+        boolean usingGlasses;
+        EyeGlassesUsageType usage;
+        int age;
+
         public Case(int mobId, int dongs, Map<Integer, Float> netraRaw, AstigmaticLensParams netraResult, AstigmaticLensParams subjAdjustment, int... knownOutliers) {
             this.mobId = mobId;
             this.dongs = dongs;
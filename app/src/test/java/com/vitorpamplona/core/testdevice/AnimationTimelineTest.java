@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21)
+public class AnimationTimelineTest {
+
+    static class CountingAnimation implements AnimationTimeline.Animation {
+        int frames;
+        long lastTime;
+        final int length;
+
+        CountingAnimation(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public boolean advance(long frameTimeMillis) {
+            frames++;
+            lastTime = frameTimeMillis;
+            return frames < length;
+        }
+    }
+
+    @Test
+    public void testAllAnimationsShareTheFrameTime() {
+        AnimationTimeline timeline = new AnimationTimeline();
+        CountingAnimation shortOne = new CountingAnimation(1);
+        CountingAnimation longOne = new CountingAnimation(3);
+
+        assertTrue(timeline.add(shortOne));
+        assertTrue(timeline.add(longOne));
+        assertTrue(timeline.add(longOne));
+
+        assertTrue(timeline.tick(100));
+        assertEquals(100, shortOne.lastTime);
+        assertEquals(100, longOne.lastTime);
+
+        // the short one left after its only frame
+        assertTrue(timeline.tick(116));
+        assertEquals(1, shortOne.frames);
+        assertEquals(2, longOne.frames);
+
+        // time never runs backwards
+        assertFalse(timeline.tick(50));
+        assertEquals(116, longOne.lastTime);
+        assertFalse(timeline.isAnimating());
+    }
+
+    @Test
+    public void testCapacity() {
+        AnimationTimeline timeline = new AnimationTimeline();
+
+        for (int i = 0; i < AnimationTimeline.MAX_ANIMATIONS; i++) {
+            assertTrue(timeline.add(new CountingAnimation(10)));
+        }
+        CountingAnimation extra = new CountingAnimation(10);
+        assertFalse(timeline.add(extra));
+
+        timeline.tick(1);
+        assertEquals(0, extra.frames);
+    }
+
+    @Test
+    public void testRemove() {
+        AnimationTimeline timeline = new AnimationTimeline();
+        CountingAnimation animation = new CountingAnimation(10);
+
+        timeline.add(animation);
+        timeline.remove(animation);
+
+        assertFalse(timeline.tick(1));
+        assertEquals(0, animation.frames);
+    }
+}
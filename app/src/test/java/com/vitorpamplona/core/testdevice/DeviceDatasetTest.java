@@ -29,12 +29,14 @@ package com.vitorpamplona.core.testdevice;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -569,6 +571,31 @@ public class DeviceDatasetTest {
         assertNotNull(DeviceDataset.get(10000));
     }
 
+    @Test
+    public void testProfilesAreShared() {
+        DeviceDataset.Device d = DeviceDataset.get(404);
+        Assert.assertSame(d, DeviceDataset.get(404));
+
+        // 404 is not registered and borrows the profile of 403 under its own id.
+        Assert.assertEquals(404, d.id);
+        Assert.assertEquals(DeviceDataset.get(403).tubeLength, d.tubeLength, 0.0001);
+    }
+
+    @After
+    public void tearDown() {
+        DeviceDataset.unregister(Collections.singletonList(900000l));
+    }
+
+    @Test
+    public void testRegisterNewBatch() {
+        DeviceDataset.Device batch = new DeviceDataset.Device(900000l, "Injection", "Batch", "LaunchPad", 130.0f, 75f, 15f, 0.85f, 22.5f, 62f, 5.5f, 7.5f, -15.0f, DeviceDataset.Device.LEFT, DeviceDataset.Device.PD_IN_SLIDE, DeviceDataset.Device.ACCURACY_JUST_MOVING, DeviceDataset.Device.EYES_ONE_AT_A_TIME, 20, 1, false, null, DeviceDataset.Device.DEVICE_TYPE_DEFAULT, DeviceDataset.Device.MASK_ROTATE_AUTO);
+        DeviceDataset.register(Collections.singletonList(batch));
+
+        Assert.assertSame(batch, DeviceDataset.get(900000l));
+        Assert.assertEquals(130.0f, DeviceDataset.get(900010l).tubeLength, 0.0001);
+        Assert.assertEquals(900010l, DeviceDataset.get(900010l).id);
+    }
+
     public void assertEquals(String msg, DeviceDataset.Device d, DeviceDataset.Device d2) {
         Assert.assertEquals(msg, d.id, d2.id);
         Assert.assertEquals(msg, d.what, d2.what);
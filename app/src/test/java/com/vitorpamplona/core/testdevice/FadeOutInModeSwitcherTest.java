@@ -26,6 +26,8 @@
 package com.vitorpamplona.core.testdevice;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -413,4 +415,27 @@ public class FadeOutInModeSwitcherTest {
         assertEquals(-0.4, switcher.computeAlpha(), 0.01);
 
     }
+
+    @Test
+    public void testAdvancingOncePerFrame() {
+        MockClock clock = new MockClock(1000);
+        FadeOutInModeSwitcher switcher = new FadeOutInModeSwitcher(100, 50, -1);
+        switcher.setClock(clock);
+
+        switcher.start();
+        assertTrue(switcher.isAnimating());
+
+        assertTrue(switcher.advance(1050));
+        assertEquals(-0.5, switcher.getAlpha(), 0.01);
+
+        // a frame timed before the start does not move the fade back
+        assertTrue(switcher.advance(900));
+        assertEquals(-0.5, switcher.getAlpha(), 0.01);
+
+        assertTrue(switcher.advance(1125));
+        assertEquals(0.5, switcher.getAlpha(), 0.01);
+
+        assertFalse(switcher.advance(1150));
+        assertEquals(1.0, switcher.getAlpha(), 0.01);
+    }
 }
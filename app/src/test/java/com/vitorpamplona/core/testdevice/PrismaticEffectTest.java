@@ -67,6 +67,32 @@ public class PrismaticEffectTest {
         Assert.assertEquals(75, effect.localFocalLength(62 + 5f), 0.1);
         Assert.assertEquals(75, effect.localFocalLength(62 - 5f), 0.1);
     }
+
+    @Test
+    public void testCurveMatchesEquations() {
+        PrismaticEffect effect = new PrismaticEffect(125, 71, 67, 62);
+        PrismaticCurve curve = effect.curve();
+
+        for (float pd = 40; pd <= 80; pd += 0.37f) {
+            Assert.assertEquals(effect.prism(pd), curve.prism(pd), 0.01);
+            Assert.assertEquals(effect.testPrismShift(pd), curve.testPrismShift(pd), 0.001);
+        }
+
+        // outside of the sampled range
+        Assert.assertEquals(effect.testPrismShift(30f), curve.testPrismShift(30f), 0.0001);
+    }
+
+    @Test
+    public void testPdForShift() {
+        PrismaticEffect effect = new PrismaticEffect(125, 75, 62);
+        PrismaticCurve curve = effect.curve();
+
+        Assert.assertEquals(62, curve.pdForShift(0), 0.01);
+        Assert.assertEquals(70.1, curve.pdForShift(effect.testPrismShift(70.1f)), 0.01);
+        Assert.assertEquals(50.0, curve.pdForShift(effect.testPrismShift(50.0f)), 0.01);
+
+        Assert.assertTrue(Float.isNaN(curve.pdForShift(effect.testPrismShift(30f))));
+    }
 	
 	/*
 	@Test
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class SlitPatternTest {
+
+    public static final float DPI = 450f;
+
+    private SlitPattern newPattern(float angle) {
+        DeviceDataset.Device dev = DeviceDataset.get(333L);
+        SlitPattern pattern = new SlitPattern(DPI);
+        pattern.reset(DPI, dev.tubeLength, dev.lensFocalLength, dev.lensEyeDistance, dev.slitDistance);
+        pattern.setAngle(angle);
+        return pattern;
+    }
+
+    @Test
+    public void testTableMatchesPixelWalk() {
+        for (float angle = 0; angle < 180; angle += 15) {
+            for (float target = -12; target <= 12; target += 0.25f) {
+                SlitPattern table = newPattern(angle);
+                table.setGivenValue(target);
+
+                SlitPattern walk = newPattern(angle);
+                float presc = walk.computeMeridianPower();
+                if (Math.abs(target - presc) >= 0.1) {
+                    walk.walkToGivenValue(target, presc);
+                }
+
+                // same pixel step; positions only differ by float accumulation along the walk
+                assertEquals("angle " + angle + " target " + target,
+                        walk.computeMeridianPower(), table.computeMeridianPower(), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void testTableIsMonotonic() {
+        SlitPowerTable table = newPattern(45).getPowerTable();
+
+        assertTrue(table.size() > 100);
+        for (int i = 1; i < table.size(); i++) {
+            assertTrue(table.power(i) > table.power(i - 1));
+        }
+    }
+
+    @Test
+    public void testNearestStep() {
+        SlitPowerTable table = newPattern(90).getPowerTable();
+
+        for (float target = -10; target <= 10; target += 0.1f) {
+            int i = table.nearest(target, 0);
+            float best = Float.MAX_VALUE;
+            for (int j = 0; j < table.size(); j++) {
+                best = Math.min(best, Math.abs(table.power(j) - target));
+            }
+            assertEquals(best, Math.abs(table.power(i) - target), 0);
+        }
+
+        assertEquals(-1, table.nearest(SlitPowerTable.MAX_DIOPTERS * 2, 0));
+    }
+}
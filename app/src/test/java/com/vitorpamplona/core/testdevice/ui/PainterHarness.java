@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+import android.graphics.Bitmap;
+
+import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+import com.vitorpamplona.core.testdevice.Pair;
+import com.vitorpamplona.core.testdevice.SlitPattern;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives painters headless, the way UmbrellaTestView does on a phone, against a RecordingCanvas
+ * backed by an offscreen bitmap. Each rendered frame reports its draw calls, the bytes allocated
+ * by the painting thread and, optionally, the display list to compare against a golden file.
+ *
+ * Goldens live in src/test/resources/golden and a missing one fails the test. Run the tests with
+ * -DupdateGoldens=true to write new goldens or rewrite them after an intended change.
+ */
+public class PainterHarness {
+
+    public static final File GOLDEN_DIR = new File("src/test/resources/golden");
+
+    // The meridian the lines are drawn at.
+    public static final float ANGLE = 45;
+
+    public static class Frame {
+        public final int[] counts = new int[RecordingCanvas.Op.values().length];
+        public int drawCalls;
+        public long allocatedBytes; // -1 when the JVM cannot tell
+        public String displayList;
+
+        public int count(RecordingCanvas.Op op) {
+            return counts[op.ordinal()];
+        }
+    }
+
+    private final Device device;
+    private final Pair workingPair;
+    private final RecordingCanvas canvas;
+
+    private final float middleX;
+    private final float testY;
+    private final float idleY;
+
+    public PainterHarness(Device device, float displayDPI, int width, int height) {
+        this.device = device;
+        SlitPattern pattern = new SlitPattern(displayDPI);
+        pattern.reset(displayDPI, device.tubeLength, device.lensFocalLength, device.lensEyeDistance, device.slitDistance);
+        pattern.setAngle(ANGLE);
+        this.workingPair = pattern.getWorkingPair();
+        this.canvas = new RecordingCanvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+
+        // Landscape, one half of the screen per eye.
+        this.middleX = height / 2f;
+        this.testY = width / 4f;
+        this.idleY = width * 3 / 4f;
+    }
+
+    public Frame render(CanvasPainter painter, boolean rightEye, float alpha) {
+        return render(painter, rightEye, alpha, false);
+    }
+
+    public Frame render(CanvasPainter painter, boolean rightEye, float alpha, boolean recordDisplayList) {
+        Frame frame = new Frame();
+        canvas.reset(recordDisplayList);
+
+        long before = allocatedBytes();
+        painter.paint(canvas, device, rightEye, workingPair, middleX, testY, idleY, alpha);
+        long after = allocatedBytes();
+
+        frame.allocatedBytes = before < 0 ? -1 : after - before;
+        for (RecordingCanvas.Op op : RecordingCanvas.Op.values()) {
+            frame.counts[op.ordinal()] = canvas.count(op);
+        }
+        frame.drawCalls = canvas.drawCalls();
+        frame.displayList = canvas.displayList();
+        return frame;
+    }
+
+    /**
+     * Renders a few frames first so that recorded layers and caches are in place, then averages
+     * the allocations of the next ones. The last frame is returned with the average.
+     */
+    public Frame renderSteady(CanvasPainter painter, boolean rightEye, float alpha, int warmUp, int frames) {
+        for (int i = 0; i < warmUp; i++) {
+            render(painter, rightEye, alpha);
+        }
+
+        Frame last = null;
+        long allocated = 0;
+        for (int i = 0; i < frames; i++) {
+            last = render(painter, rightEye, alpha);
+            allocated = last.allocatedBytes < 0 ? -1 : allocated + last.allocatedBytes;
+            if (allocated < 0) break;
+        }
+
+        last.allocatedBytes = allocated < 0 ? -1 : allocated / frames;
+        return last;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static void assertMatchesGolden(String name, Frame frame) throws IOException {
+        File golden = new File(GOLDEN_DIR, name + ".txt");
+
+        if (Boolean.getBoolean("updateGoldens")) {
+            write(golden, frame.displayList);
+            return;
+        }
+
+        assertTrue("Missing golden " + golden + ". Run with -DupdateGoldens=true to record it.", golden.exists());
+
+        assertEquals("Display list of " + name + " changed. Run with -DupdateGoldens=true if that was intended.",
+                read(golden), frame.displayList);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+        } finally {
+            in.close();
+        }
+        return new String(data, "UTF-8");
+    }
+}
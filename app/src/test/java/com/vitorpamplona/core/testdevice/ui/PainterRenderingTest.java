@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+import android.graphics.Bitmap;
+
+import com.vitorpamplona.core.testdevice.DeviceDataset;
+import com.vitorpamplona.core.testdevice.ui.PainterHarness.Frame;
+import com.vitorpamplona.core.testdevice.ui.RecordingCanvas.Op;
+import com.vitorpamplona.core.testdevice.ui.convergence.ConvergenceLockPainter;
+import com.vitorpamplona.core.testdevice.ui.lines.GunLinesPainterAccReady;
+import com.vitorpamplona.core.testdevice.ui.pdmeasurement.GreenPdTestPainter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draw call and allocation budgets of the exam painters. A change that makes a painter issue more
+ * calls or allocate more per frame has to update these numbers on purpose.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class PainterRenderingTest {
+
+    private static final float DPI = 320;
+
+    private PainterHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new PainterHarness(DeviceDataset.get(404), DPI, 1920, 1080);
+    }
+
+    @Test
+    public void testCalibrationIsASingleFill() {
+        Frame frame = harness.render(new CalibrationPainter(), true, 1);
+
+        assertEquals(1, frame.drawCalls);
+        assertEquals(1, frame.count(Op.COLOR));
+    }
+
+    @Test
+    public void testPdTestReplaysItsMarkers() {
+        Frame frame = harness.renderSteady(new GreenPdTestPainter(), true, 1, 1, 10);
+
+        // background, two recorded marker layers and the ring
+        assertEquals(4, frame.drawCalls);
+        assertEquals(2, frame.count(Op.PICTURE));
+        assertEquals(1, frame.count(Op.CIRCLE));
+    }
+
+    @Test
+    public void testGunLinesAreFourPaths() {
+        Frame frame = harness.renderSteady(new GunLinesPainterAccReady(DPI), true, 1, 1, 10);
+
+        assertEquals(4, frame.drawCalls);
+        assertEquals(4, frame.count(Op.PATH));
+    }
+
+    @Test
+    public void testConvergenceOnlyDrawsParticlesOneByOne() {
+        ConvergenceLockPainter painter = newConvergencePainter();
+        Frame frame = harness.renderSteady(painter, true, 1, 1, 10);
+
+        // per eye: markers and rails layers, the cross and the mask with its black hole
+        assertEquals(4, frame.count(Op.PICTURE));
+        assertEquals(6, frame.count(Op.LINE));
+        assertEquals(2, frame.count(Op.BITMAP));
+        assertEquals(0, frame.count(Op.ARC));
+
+        // everything else is a particle, at most 64 of them
+        assertTrue(frame.drawCalls <= 16 + 64);
+    }
+
+    @Test
+    public void testGoldenDisplayLists() throws Exception {
+        PainterHarness.assertMatchesGolden("calibration", harness.render(new CalibrationPainter(), true, 1, true));
+        PainterHarness.assertMatchesGolden("green_pd_test_right", harness.render(new GreenPdTestPainter(), true, 1, true));
+        PainterHarness.assertMatchesGolden("gun_lines_right", harness.render(new GunLinesPainterAccReady(DPI), true, 1, true));
+        PainterHarness.assertMatchesGolden("gun_lines_left", harness.render(new GunLinesPainterAccReady(DPI), false, 0.5f, true));
+    }
+
+    /**
+     * Bytes a steady frame may allocate on the painting thread. Most of it is Robolectric's own
+     * bookkeeping for each call, so the budgets are the measured numbers with about twice the room.
+     */
+    @Test
+    public void testSteadyFramesStayWithinAllocationBudget() {
+        assertAllocatesAtMost(4 * 1024, new CalibrationPainter());
+        assertAllocatesAtMost(8 * 1024, new GreenPdTestPainter());
+        assertAllocatesAtMost(80 * 1024, new GunLinesPainterAccReady(DPI));
+        assertAllocatesAtMost(32 * 1024, newConvergencePainter());
+    }
+
+    private void assertAllocatesAtMost(long budget, CanvasPainter painter) {
+        Frame frame = harness.renderSteady(painter, true, 1, 5, 60);
+
+        // -1 when the JVM cannot count allocations per thread
+        if (frame.allocatedBytes >= 0) {
+            assertTrue(painter.getClass().getSimpleName() + " allocated " + frame.allocatedBytes + " bytes per frame",
+                    frame.allocatedBytes <= budget);
+        }
+    }
+
+    private ConvergenceLockPainter newConvergencePainter() {
+        return new ConvergenceLockPainter(Bitmap.createBitmap(500, 458, Bitmap.Config.ALPHA_8), DPI);
+    }
+}
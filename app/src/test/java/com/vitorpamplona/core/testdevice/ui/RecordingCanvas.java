@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowCanvas;
+
+import java.util.Locale;
+
+/**
+ * Software canvas that counts the draw calls it receives and, when asked, writes them down as a
+ * display list: one line per call with its arguments and paint, plus the save, restore, translate
+ * and rotate calls in between. Calls that the framework forwards from one overload to another are
+ * only counted once.
+ */
+public class RecordingCanvas extends Canvas {
+
+    public enum Op {
+        COLOR, LINE, LINES, RECT, ROUND_RECT, CIRCLE, OVAL, ARC, PATH, TEXT, BITMAP, PICTURE
+    }
+
+    private final int[] counts = new int[Op.values().length];
+    private int depth;
+
+    private StringBuilder displayList;
+
+    public RecordingCanvas(Bitmap bitmap) {
+        super(bitmap);
+    }
+
+    public void reset(boolean recordDisplayList) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        displayList = recordDisplayList ? new StringBuilder() : null;
+
+        // The shadow keeps every call it ever saw, which would show up as allocations of later frames.
+        ((ShadowCanvas) Shadow.extract(this)).resetCanvasHistory();
+    }
+
+    public int count(Op op) {
+        return counts[op.ordinal()];
+    }
+
+    public int drawCalls() {
+        int total = 0;
+        for (int c : counts) {
+            total += c;
+        }
+        return total;
+    }
+
+    public String displayList() {
+        return displayList == null ? null : displayList.toString();
+    }
+
+    private boolean begin(Op op) {
+        if (depth++ > 0) return false;
+
+        counts[op.ordinal()]++;
+        return displayList != null;
+    }
+
+    private void end() {
+        depth--;
+    }
+
+    private void log(String label, Paint paint, float... args) {
+        displayList.append(label);
+        for (float a : args) {
+            displayList.append(' ').append(String.format(Locale.US, "%.1f", a));
+        }
+        if (paint != null) {
+            displayList.append(String.format(Locale.US, " #%08x %s %.1f", paint.getColor(), paint.getStyle(), paint.getStrokeWidth()));
+        }
+        displayList.append('\n');
+    }
+
+    private void logMatrix(String label, float... args) {
+        if (displayList != null && depth == 0) log(label, null, args);
+    }
+
+    @Override
+    public int save() {
+        logMatrix("SAVE");
+        return super.save();
+    }
+
+    @Override
+    public void restore() {
+        logMatrix("RESTORE");
+        super.restore();
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        logMatrix("TRANSLATE", dx, dy);
+        super.translate(dx, dy);
+    }
+
+    @Override
+    public void rotate(float degrees) {
+        logMatrix("ROTATE", degrees);
+        super.rotate(degrees);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        try {
+            if (begin(Op.COLOR)) displayList.append(String.format(Locale.US, "COLOR #%08x\n", color));
+            super.drawColor(color);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        try {
+            if (begin(Op.COLOR)) displayList.append(String.format(Locale.US, "COLOR #%08x %s\n", color, mode));
+            super.drawColor(color, mode);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        try {
+            if (begin(Op.LINE)) log("LINE", paint, startX, startY, stopX, stopY);
+            super.drawLine(startX, startY, stopX, stopY, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawLines(float[] pts, Paint paint) {
+        try {
+            if (begin(Op.LINES)) log("LINES", paint, pts);
+            super.drawLines(pts, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        try {
+            if (begin(Op.RECT)) log("RECT", paint, rect.left, rect.top, rect.right, rect.bottom);
+            super.drawRect(rect, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        try {
+            if (begin(Op.RECT)) log("RECT", paint, left, top, right, bottom);
+            super.drawRect(left, top, right, bottom, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        try {
+            if (begin(Op.ROUND_RECT)) log("ROUND_RECT", paint, rect.left, rect.top, rect.right, rect.bottom, rx, ry);
+            super.drawRoundRect(rect, rx, ry, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        try {
+            if (begin(Op.CIRCLE)) log("CIRCLE", paint, cx, cy, radius);
+            super.drawCircle(cx, cy, radius, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        try {
+            if (begin(Op.OVAL)) log("OVAL", paint, oval.left, oval.top, oval.right, oval.bottom);
+            super.drawOval(oval, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+        try {
+            if (begin(Op.ARC)) log("ARC", paint, oval.left, oval.top, oval.right, oval.bottom, startAngle, sweepAngle);
+            super.drawArc(oval, startAngle, sweepAngle, useCenter, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        try {
+            if (begin(Op.PATH)) {
+                RectF bounds = new RectF();
+                path.computeBounds(bounds, true);
+                log("PATH", paint, bounds.left, bounds.top, bounds.right, bounds.bottom);
+            }
+            super.drawPath(path, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, Paint paint) {
+        try {
+            if (begin(Op.TEXT)) {
+                log("TEXT '" + text + "'", paint, x, y, paint.getTextSize());
+            }
+            super.drawText(text, x, y, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        try {
+            if (begin(Op.BITMAP)) log("BITMAP", paint, left, top, bitmap.getWidth(), bitmap.getHeight());
+            super.drawBitmap(bitmap, left, top, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        try {
+            if (begin(Op.BITMAP)) log("BITMAP", paint, dst.left, dst.top, dst.right, dst.bottom);
+            super.drawBitmap(bitmap, src, dst, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        try {
+            if (begin(Op.BITMAP)) log("BITMAP", paint, bitmap.getWidth(), bitmap.getHeight());
+            super.drawBitmap(bitmap, matrix, paint);
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void drawPicture(Picture picture) {
+        try {
+            if (begin(Op.PICTURE)) log("PICTURE", null, picture.getWidth(), picture.getHeight());
+            super.drawPicture(picture);
+        } finally {
+            end();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21)
+public class RenderingMetricsTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void testFrameIntervalBuckets() {
+        RenderingMetrics metrics = new RenderingMetrics();
+
+        metrics.recordFrameInterval(16 * MS);
+        metrics.recordFrameInterval(17 * MS);
+        metrics.recordFrameInterval(200 * MS);
+        metrics.recordFrameInterval(0);
+
+        RenderingMetrics.Histogram frames = metrics.frameIntervals();
+        assertEquals(3, frames.samples());
+        assertEquals(1, frames.count(4)); // <= 16ms
+        assertEquals(1, frames.count(5)); // <= 24ms
+        assertEquals(1, frames.count(RenderingMetrics.BUCKETS_MS.length));
+        assertEquals(200f, frames.maxMs(), 0.001);
+        assertEquals(77.666f, frames.averageMs(), 0.001);
+    }
+
+    @Test
+    public void testMissedVsyncs() {
+        RenderingMetrics metrics = new RenderingMetrics();
+
+        metrics.recordFrameInterval(RenderingMetrics.FRAME_NANOS);
+        metrics.recordFrameInterval(RenderingMetrics.FRAME_NANOS * 3 / 2 - 1);
+        metrics.recordFrameInterval(RenderingMetrics.FRAME_NANOS * 2);
+        metrics.recordFrameInterval(RenderingMetrics.FRAME_NANOS * 4);
+
+        assertEquals(2, metrics.jankyFrames());
+        assertEquals(4, metrics.missedVsyncs());
+    }
+
+    @Test
+    public void testPaintTimesPerPainter() {
+        RenderingMetrics metrics = new RenderingMetrics();
+
+        metrics.recordPaint("a string", 1 * MS);
+        metrics.recordPaint("another", 3 * MS);
+        metrics.recordPaint(Integer.valueOf(1), 5 * MS);
+
+        assertEquals(2, metrics.painterCount());
+        assertEquals("String", metrics.painterName(0));
+        assertEquals(2, metrics.paintTime(0).samples());
+        assertEquals(2f, metrics.paintTime(0).averageMs(), 0.001);
+        assertEquals("Integer", metrics.painterName(1));
+
+        metrics.reset();
+        assertEquals(0, metrics.painterCount());
+        assertEquals(0, metrics.frameIntervals().samples());
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class StaticLayerTest {
+
+    private int recordings;
+
+    private final StaticLayer layer = new StaticLayer(new StaticLayer.Recorder() {
+        @Override
+        public void record(Canvas canvas, float size) {
+            recordings++;
+        }
+    });
+
+    @Test
+    public void testRecordsOnlyWhenTheKeyChanges() {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+
+        layer.draw(canvas, null, 320, 10, 50);
+        layer.draw(canvas, null, 320, 10, 50);
+        assertEquals(1, recordings);
+
+        layer.draw(canvas, null, 320, 20, 50);
+        assertEquals(2, recordings);
+
+        layer.draw(canvas, null, 320, true, 20, 50);
+        assertEquals(3, recordings);
+    }
+
+    @Test
+    public void testLargerExtentRecordsAgain() {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+
+        layer.draw(canvas, null, 320, 10, 50);
+        layer.draw(canvas, null, 320, 10, 80);
+        assertEquals(2, recordings);
+
+        layer.draw(canvas, null, 320, 10, 80);
+        assertEquals(2, recordings);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.core.testdevice.ui.convergence.particlesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.vitorpamplona.core.testdevice.ParticleSystem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class ParticleSystemTest {
+
+    @Test
+    public void testValidAngles() {
+        assertFalse(ParticleSystem.isLegalDirectionInDegrees(0));
+        assertTrue(ParticleSystem.isLegalDirectionInDegrees(26));
+        assertFalse(ParticleSystem.isLegalDirectionInDegrees(45));
+        assertTrue(ParticleSystem.isLegalDirectionInDegrees(65));
+        assertTrue(ParticleSystem.isLegalDirectionInDegrees(90));
+        assertTrue(ParticleSystem.isLegalDirectionInDegrees(120));
+        assertFalse(ParticleSystem.isLegalDirectionInDegrees(135));
+        assertTrue(ParticleSystem.isLegalDirectionInDegrees(160));
+        assertFalse(ParticleSystem.isLegalDirectionInDegrees(179));
+    }
+
+    @Test
+    public void testClosedFormMatchesStepping() {
+        ParticleSystem system = new ParticleSystem(10, 10, 15, 0);
+        // a single batch of fresh particles at the start distance
+        system.warmUp(0, 20, 10);
+        assertEquals(ParticleSystem.PARTICLES_PER_SPAWN, system.size());
+
+        for (int steps = 1; steps <= 200; steps++) {
+            system.step(10);
+
+            for (int i = 0; i < system.size(); i++) {
+                assertEquals(ParticleSystem.START_DISTANCE - system.distance(i), ParticleSystem.travelled(steps, 10), 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void testSpawnRequestsAreCoalesced() {
+        ParticleSystem system = new ParticleSystem(10, 1, 15, 30);
+
+        system.requestSpawn();
+        system.requestSpawn();
+        system.requestSpawn();
+        system.step(0);
+        assertEquals(ParticleSystem.PARTICLES_PER_SPAWN, system.size());
+
+        // more than one alive, so the next request is dropped
+        system.requestSpawn();
+        system.step(0);
+        assertEquals(ParticleSystem.PARTICLES_PER_SPAWN, system.size());
+    }
+
+    @Test
+    public void testWarmUpPlacesEveryBatch() {
+        ParticleSystem system = new ParticleSystem(64, 50, 15, 30);
+        system.warmUp(200, 20, 10);
+
+        assertEquals(22, system.size());
+        for (int i = 0; i < system.size(); i++) {
+            assertTrue(system.distance(i) < ParticleSystem.START_DISTANCE + 0.01);
+            assertTrue(system.distance(i) > ParticleSystem.START_DISTANCE - ParticleSystem.travelled(200, 10) - 0.01);
+        }
+    }
+
+    @Test
+    public void testParticlesAreRemovedInTheCenter() {
+        ParticleSystem system = new ParticleSystem(10, 10, 15, 400);
+        system.requestSpawn();
+        system.step(0);
+        assertEquals(2, system.size());
+
+        for (int i = 0; i < 10000 && system.size() > 0; i++) {
+            system.step(10);
+        }
+
+        assertEquals(0, system.size());
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.meridian.lineprofile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.vitorpamplona.meridian.imgproc.lineprofile.ErrorCode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class FrameDebugHistoryTest {
+
+    @Test
+    public void testFrameRingKeepsLastFrames() {
+        FrameDebugHistory history = new FrameDebugHistory(3, 3);
+        FrameDebugData frame = new FrameDebugData();
+
+        for (int i = 1; i <= 5; i++) {
+            frame.numberOfFramesInTest = i;
+            frame.signalQualityRatchet[0] = i * 10;
+            frame.errorCode = ErrorCode.SUCCESS;
+            history.record(frame);
+        }
+
+        assertEquals(3, history.frameCount());
+        assertEquals(5, history.frame(0).numberOfFramesInTest);
+        assertEquals(4, history.frame(1).numberOfFramesInTest);
+        assertEquals(3, history.frame(2).numberOfFramesInTest);
+        assertEquals(30, history.frame(2).signalQualityRatchet[0]);
+        assertEquals(5, history.count(ErrorCode.SUCCESS));
+    }
+
+    @Test
+    public void testFailuresSkipSuccessAndWrap() {
+        FrameDebugHistory history = new FrameDebugHistory(1, 2);
+
+        history.logCalibrationComplete();
+        history.logFailure(ErrorCode.SUCCESS, 1);
+        assertEquals(1, history.failureCount());
+        assertNull(history.failureCode(0));
+        assertEquals("0: CALIBRATION COMPLETE", history.formatFailure(0));
+
+        history.logFailure(ErrorCode.RAF_NO_DOTS, 2);
+        history.logFailure(ErrorCode.NOT_ENOUGH_LIGHT, 3);
+
+        assertEquals(2, history.failureCount());
+        assertEquals(ErrorCode.NOT_ENOUGH_LIGHT, history.failureCode(0));
+        assertEquals("2: RAF_NO_DOTS", history.formatFailure(1));
+    }
+
+    @Test
+    public void testSortByCount() {
+        FrameDebugHistory history = new FrameDebugHistory(0, 0);
+        FrameDebugData frame = new FrameDebugData();
+
+        ErrorCode[] codes = {ErrorCode.RAF_ONE_DOT, ErrorCode.SUCCESS, ErrorCode.SUCCESS, ErrorCode.RAF_ONE_DOT, ErrorCode.SUCCESS, ErrorCode.SLF_NO_DOT_FOUND};
+        for (ErrorCode code : codes) {
+            frame.errorCode = code;
+            history.record(frame);
+        }
+
+        assertEquals(3, history.sortByCount());
+        assertEquals(ErrorCode.SUCCESS, history.sortedCode(0));
+        assertEquals(ErrorCode.RAF_ONE_DOT, history.sortedCode(1));
+        assertEquals(ErrorCode.SLF_NO_DOT_FOUND, history.sortedCode(2));
+
+        history.reset();
+        assertEquals(0, history.sortByCount());
+    }
+
+}
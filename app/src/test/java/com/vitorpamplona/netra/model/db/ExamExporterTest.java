@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.vitorpamplona.netra.activity.NetraGApplication;
+import com.vitorpamplona.netra.model.RefractionType;
+import com.vitorpamplona.netra.model.db.objects.DebugExam;
+import com.vitorpamplona.netra.model.db.objects.Refraction;
+import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
+import com.vitorpamplona.netra.model.db.tables.RefractionTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, application = com.vitorpamplona.netra.activity.NetraGTestApplication.class)
+public class ExamExporterTest {
+
+    private SQLiteHelper helper;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        helper = NetraGApplication.get().getSqliteHelper(true);
+        file = File.createTempFile("exams", ".ndjson.gz");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ExamExporter.PROGRESS_SUFFIX).delete();
+    }
+
+    private List<DebugExam> saveExams(int count) {
+        List<DebugExam> exams = new ArrayList<DebugExam>();
+        for (int i = 0; i < count; i++) {
+            DebugExam e = new DebugExam();
+            e.setUserName("tester");
+
+            Refraction r = new Refraction();
+            r.setDebugExam(e);
+            r.setRefractionType(RefractionType.NETRA);
+            r.setRightSphere(-1.25f);
+            r.setRightHistory("[\"right " + i + "\"]");
+            r.setLeftOriginalData("{\"left\":" + i + "}");
+            e.setRefraction(RefractionType.NETRA, r);
+
+            exams.add(e);
+        }
+        helper.saveDebugExams(exams);
+        return exams;
+    }
+
+    private List<JsonObject> readBack(boolean compressed) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (compressed) {
+            in = new GZIPInputStream(in);
+        }
+
+        List<JsonObject> lines = new ArrayList<JsonObject>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            JsonParser parser = new JsonParser();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(parser.parse(line).getAsJsonObject());
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private void assertExported(List<DebugExam> exams, List<JsonObject> lines) {
+        assertEquals(exams.size(), lines.size());
+        for (int i = 0; i < exams.size(); i++) {
+            JsonObject line = lines.get(i);
+            assertEquals(exams.get(i).getId().longValue(), line.get(DebugExamTable.ID).getAsLong());
+
+            JsonArray refractions = line.getAsJsonArray("refractions");
+            assertEquals(1, refractions.size());
+
+            JsonObject r = refractions.get(0).getAsJsonObject();
+            Refraction saved = exams.get(i).getRefraction(RefractionType.NETRA);
+            assertEquals(saved.getRightHistory(), r.get(RefractionTable.RIGHT_HISTORY).getAsString());
+            assertEquals(saved.getLeftOriginalData(), r.get(RefractionTable.LEFT_ORIGINAL_DATA).getAsString());
+            // unset texts are stored as compressed empty strings
+            assertEquals("", r.get(RefractionTable.LEFT_HISTORY).getAsString());
+            assertEquals(-1.25, r.get(RefractionTable.RIGHT_SPHERE).getAsDouble(), 0.0001);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<DebugExam> exams = saveExams(ExamExporter.PAGE_SIZE + 5);
+
+        long last = new ExamExporter(helper).exportTo(file);
+
+        assertEquals(exams.get(exams.size() - 1).getId().longValue(), last);
+        assertEquals(last, ExamExporter.getProgress(file).lastId);
+        assertExported(exams, readBack(true));
+    }
+
+    @Test
+    public void testRoundTripUncompressed() throws IOException {
+        List<DebugExam> exams = saveExams(3);
+
+        new ExamExporter(helper).setCompress(false).exportTo(file);
+
+        assertExported(exams, readBack(false));
+    }
+
+    @Test
+    public void testResumeAddsOnlyNewExams() throws IOException {
+        List<DebugExam> exams = saveExams(ExamExporter.PAGE_SIZE + 5);
+        ExamExporter exporter = new ExamExporter(helper);
+        exporter.exportTo(file);
+
+        exams.addAll(saveExams(7));
+        long last = exporter.exportTo(file);
+
+        assertEquals(exams.get(exams.size() - 1).getId().longValue(), last);
+        assertExported(exams, readBack(true));
+
+        // nothing new
+        long length = file.length();
+        assertEquals(last, exporter.exportTo(file));
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void testResumeAfterInterruptedPage() throws IOException {
+        List<DebugExam> exams = saveExams(4);
+        ExamExporter exporter = new ExamExporter(helper);
+        exporter.exportTo(file);
+
+        // an interrupted run: half a gzip member after the last complete page
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0});
+        out.close();
+
+        exams.addAll(saveExams(2));
+        exporter.exportTo(file);
+
+        assertExported(exams, readBack(true));
+    }
+}
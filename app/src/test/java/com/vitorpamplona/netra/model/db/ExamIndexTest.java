@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+
+import com.vitorpamplona.netra.activity.NetraGApplication;
+import com.vitorpamplona.netra.model.db.objects.DebugExam;
+import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, application = com.vitorpamplona.netra.activity.NetraGTestApplication.class)
+public class ExamIndexTest {
+
+    private static final String USER = "tester";
+    private static final String OTHER = "someone";
+
+    private SQLiteHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = NetraGApplication.get().getSqliteHelper(true);
+    }
+
+    private DebugExam exam(String username, String status) {
+        DebugExam e = new DebugExam();
+        e.setUserName(username);
+        e.setStatus(status);
+        return e;
+    }
+
+    private DebugExam exam(String username, String status, long tested) {
+        DebugExam e = exam(username, status);
+        e.setTested(new Date(tested));
+        return e;
+    }
+
+    private static long day(int day) {
+        return 1500000000000L + day * 24 * 3600 * 1000L;
+    }
+
+    private List<Long> sqlIds(String username, Date from, Date to) {
+        String sql = "SELECT " + DebugExamTable.ID + " FROM " + DebugExamTable.TABLE_NAME
+                + " WHERE " + DebugExamTable.SERVER_USER_NAME + "=? AND (" + DebugExamTable.STATUS + " IS NULL OR "
+                + DebugExamTable.STATUS + "!=?) AND " + DebugExamTable.TESTED + ">=? AND " + DebugExamTable.TESTED + "<?"
+                + " ORDER BY " + DebugExamTable.ID + " DESC";
+        Cursor c = helper.getReadableDatabase().rawQuery(sql, new String[]{username, ExamIndex.ARCHIVED,
+                DataUtil.dateToTimestampString(from), DataUtil.dateToTimestampString(to)});
+
+        List<Long> ids = new ArrayList<Long>();
+        while (c.moveToNext()) {
+            ids.add(c.getLong(0));
+        }
+        c.close();
+        return ids;
+    }
+
+    private List<Long> sqlIds(String username) {
+        Cursor c = helper.allIds(username);
+
+        List<Long> ids = new ArrayList<Long>();
+        while (c.moveToNext()) {
+            ids.add(c.getLong(0));
+        }
+        c.close();
+        return ids;
+    }
+
+    private int sqlCountByStatus(String username, String status) {
+        if (status == null) {
+            return (int) DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), DebugExamTable.TABLE_NAME,
+                    DebugExamTable.SERVER_USER_NAME + "=? AND " + DebugExamTable.STATUS + " IS NULL", new String[]{username});
+        }
+        return (int) DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), DebugExamTable.TABLE_NAME,
+                DebugExamTable.SERVER_USER_NAME + "=? AND " + DebugExamTable.STATUS + "=?", new String[]{username, status});
+    }
+
+    private void assertMatchesSql(String username) {
+        ExamIndex index = helper.getExamIndex();
+        assertEquals(helper.debugExamTable.countMeasurements(username), index.countMeasurements(username));
+        assertEquals(helper.debugExamTable.countPrescriptions(username), index.countPrescriptions(username));
+        assertEquals(helper.debugExamTable.countToSyncIds(username), index.countToSync(username));
+    }
+
+    private void assertMatchesSql() {
+        assertMatchesSql(USER);
+        assertMatchesSql(OTHER);
+    }
+
+    @Test
+    public void testCountsMatchSql() {
+        helper.saveDebugExam(exam(USER, null));
+        helper.saveDebugExam(exam(USER, ExamIndex.ARCHIVED));
+        helper.saveDebugExamToSync(exam(USER, null), false);
+        helper.saveDebugExamToSync(exam(USER, ExamIndex.ARCHIVED), false);
+        helper.saveDebugExam(exam(OTHER, null));
+
+        DebugExam prescribed = exam(USER, null);
+        helper.saveDebugExam(prescribed);
+        helper.setToSyncPrescription(prescribed);
+
+        // loaded from one scan
+        helper.getExamIndex().invalidate();
+        assertMatchesSql();
+        assertEquals(3, helper.getExamIndex().countMeasurements(USER));
+        assertEquals(1, helper.getExamIndex().countPrescriptions(USER));
+        assertEquals(2, helper.getExamIndex().countToSync(USER));
+    }
+
+    @Test
+    public void testCountsFollowSavesAndDeletes() {
+        // loads the index before the writes below
+        assertMatchesSql();
+
+        DebugExam e = exam(USER, null);
+        helper.saveDebugExamToSync(e, false);
+        assertMatchesSql();
+
+        helper.setToSyncPrescription(e);
+        assertMatchesSql();
+
+        helper.debugExamTable.setSyncedPrescription(e, 42);
+        assertMatchesSql();
+
+        e.setStatus(ExamIndex.ARCHIVED);
+        helper.saveDebugExam(e);
+        assertMatchesSql();
+
+        helper.deleteAll(Collections.singletonList(e.getId()));
+        assertMatchesSql();
+        assertNull(helper.getExamIndex().findId(e.getSyncId()));
+    }
+
+    @Test
+    public void testFindIdMatchesSql() {
+        DebugExam e = exam(USER, null);
+        helper.saveDebugExam(e);
+
+        long sqlId = DatabaseUtils.longForQuery(helper.getReadableDatabase(),
+                "SELECT " + DebugExamTable.ID + " FROM " + DebugExamTable.TABLE_NAME + " WHERE " + DebugExamTable.SYNC_ID + "=?",
+                new String[]{e.getSyncId().toString()});
+
+        assertEquals(Long.valueOf(sqlId), helper.getExamIndex().findId(e.getSyncId()));
+    }
+
+    @Test
+    public void testCountByStatusMatchesSql() {
+        helper.saveDebugExam(exam(USER, null));
+        helper.saveDebugExam(exam(USER, ExamIndex.ARCHIVED));
+        helper.saveDebugExam(exam(USER, ExamIndex.ARCHIVED));
+        helper.saveDebugExam(exam(USER, "reviewed"));
+        helper.saveDebugExam(exam(OTHER, ExamIndex.ARCHIVED));
+
+        for (boolean rescan : new boolean[]{false, true}) {
+            if (rescan) helper.getExamIndex().invalidate();
+
+            for (String status : new String[]{null, ExamIndex.ARCHIVED, "reviewed", "unknown"}) {
+                assertEquals(sqlCountByStatus(USER, status), helper.getExamIndex().countByStatus(USER, status));
+                assertEquals(sqlCountByStatus(OTHER, status), helper.getExamIndex().countByStatus(OTHER, status));
+            }
+        }
+        assertEquals(2, helper.getExamIndex().countByStatus(USER, ExamIndex.ARCHIVED));
+    }
+
+    @Test
+    public void testFindIdsMatchesSql() {
+        // loads the index before the writes below
+        assertEquals(0, helper.getExamIndex().findIds(USER, null, null).size());
+
+        for (int d = 0; d < 10; d++) {
+            helper.saveDebugExam(exam(USER, null, day(d)));
+            helper.saveDebugExam(exam(OTHER, null, day(d)));
+        }
+        helper.saveDebugExam(exam(USER, ExamIndex.ARCHIVED, day(4)));
+        // out of order, so ids and dates disagree
+        helper.saveDebugExam(exam(USER, null, day(2)));
+
+        for (boolean rescan : new boolean[]{false, true}) {
+            if (rescan) helper.getExamIndex().invalidate();
+
+            assertEquals(sqlIds(USER), helper.getExamIndex().findIds(USER, null, null));
+            assertEquals(sqlIds(OTHER), helper.getExamIndex().findIds(OTHER, null, null));
+
+            Date from = new Date(day(2));
+            Date to = new Date(day(5));
+            List<Long> range = helper.getExamIndex().findIds(USER, from, to);
+            assertEquals(sqlIds(USER, from, to), range);
+            assertEquals(4, range.size());
+
+            assertEquals(sqlIds(USER, from, new Date(day(100))), helper.getExamIndex().findIds(USER, from, null));
+            assertEquals(sqlIds(USER, new Date(0), to), helper.getExamIndex().findIds(USER, null, to));
+        }
+    }
+
+    @Test
+    public void testSummaryPagesFollowTheIndex() {
+        int count = DebugExamSummaryPager.PAGE_SIZE + 3;
+        for (int i = 0; i < count; i++) {
+            helper.saveDebugExam(exam(USER, null, day(i)));
+        }
+        helper.saveDebugExam(exam(USER, ExamIndex.ARCHIVED, day(1)));
+
+        DebugExamSummaryPager pager = helper.examSummaries(USER);
+        List<Long> ids = sqlIds(USER);
+
+        assertEquals(count, pager.getCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals(ids.get(i), pager.get(i).getId());
+        }
+
+        DebugExam added = exam(USER, null, day(count));
+        helper.saveDebugExam(added);
+        pager.invalidate();
+        assertEquals(count + 1, pager.getCount());
+        assertEquals(added.getId(), pager.get(0).getId());
+    }
+
+    @Test
+    public void testStatsMatchSql() {
+        helper.saveDebugExam(exam(USER, null, System.currentTimeMillis()));
+        helper.saveDebugExam(exam(USER, null, day(0)));
+        helper.saveDebugExam(exam(USER, ExamIndex.ARCHIVED, System.currentTimeMillis()));
+
+        SQLiteHelper.UsageStats stats = helper.stats(USER);
+
+        assertEquals(helper.debugExamTable.countMeasurements(USER), stats.measurements);
+        assertEquals(sqlCountByStatus(USER, ExamIndex.ARCHIVED), stats.archived);
+        assertEquals(sqlIds(USER, SQLiteHelper.startOfToday(), new Date(System.currentTimeMillis() + 3600 * 1000L)).size(), stats.testedToday);
+        assertEquals(1, stats.testedToday);
+    }
+
+    @Test
+    public void testNestedWorkWaitsForOuterCommit() {
+        assertMatchesSql();
+
+        UnitOfWork outer = helper.beginWork();
+        try {
+            // commits its own nested transaction...
+            helper.saveDebugExam(exam(USER, null));
+            assertEquals(0, helper.getExamIndex().countMeasurements(USER));
+            // ...but the outer one rolls back
+        } finally {
+            outer.end();
+        }
+
+        assertEquals(0, helper.debugExamTable.countMeasurements(USER));
+        assertMatchesSql();
+    }
+
+    @Test
+    public void testFailedNestedWorkDropsOuterTasks() {
+        assertMatchesSql();
+
+        UnitOfWork outer = helper.beginWork();
+        try {
+            helper.saveDebugExam(exam(USER, null), outer);
+
+            UnitOfWork inner = helper.beginWork();
+            inner.end();
+
+            outer.setSuccessful();
+        } finally {
+            outer.end();
+        }
+
+        assertEquals(0, helper.debugExamTable.countMeasurements(USER));
+        assertMatchesSql();
+    }
+}
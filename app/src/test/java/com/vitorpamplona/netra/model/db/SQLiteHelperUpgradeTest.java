@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.vitorpamplona.netra.model.db.Column.ColumnType;
+import com.vitorpamplona.netra.model.db.SQLiteHelper.ColumnInfo;
+import com.vitorpamplona.netra.model.db.tables.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class SQLiteHelperUpgradeTest {
+
+    private SQLiteHelper helper;
+    private SQLiteDatabase db;
+    private final List<Long> progress = new ArrayList<Long>();
+
+    @Before
+    public void setUp() {
+        helper = new SQLiteHelper(null, true);
+        helper.setMigrationListener(new SQLiteHelper.MigrationListener() {
+            @Override
+            public void onCopyProgress(String tableName, long copied, long total) {
+                assertEquals("test", tableName);
+                progress.add(copied);
+            }
+        });
+        db = SQLiteDatabase.create(null);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    static Table table(Column... columns) {
+        return new Table(null, columns) {
+            @Override
+            public String getName() {
+                return "test";
+            }
+        };
+    }
+
+    static HashMap<String, ColumnInfo> oldColumns(Column... columns) {
+        HashMap<String, ColumnInfo> map = new HashMap<String, ColumnInfo>();
+        for (Column c : columns) {
+            map.put(c.name, new ColumnInfo(c.type.getSQLiteType(), c.notNull, c.defaultValue, c.primaryKey));
+        }
+        return map;
+    }
+
+    static Column id() {
+        return new Column("id", ColumnType.INTEGER, true, true, false, null);
+    }
+
+    static Column text(String name) {
+        return new Column(name, ColumnType.TEXT);
+    }
+
+    @Test
+    public void testSameSchemaIsAdditive() {
+        List<Column> added = new ArrayList<Column>();
+
+        assertTrue(SQLiteHelper.isAdditive(table(id(), text("name")), oldColumns(id(), text("name")), added));
+        assertTrue(added.isEmpty());
+    }
+
+    @Test
+    public void testNewNullableColumnsAreAdded() {
+        List<Column> added = new ArrayList<Column>();
+        Column note = text("note");
+        Column count = new Column("count", ColumnType.INTEGER, false, false, true, "0");
+
+        HashMap<String, ColumnInfo> old = oldColumns();
+        old.put("id", new ColumnInfo("INTEGER", false, null, true));
+
+        assertTrue(SQLiteHelper.isAdditive(table(id(), note, count), old, added));
+        assertEquals(2, added.size());
+        assertTrue(added.contains(note));
+        assertTrue(added.contains(count));
+    }
+
+    @Test
+    public void testNewNotNullWithoutDefaultRebuilds() {
+        Column required = new Column("required", ColumnType.TEXT, false, false, true, null);
+
+        assertFalse(SQLiteHelper.isAdditive(table(id(), required), oldColumns(id()), new ArrayList<Column>()));
+    }
+
+    @Test
+    public void testNewPrimaryKeyRebuilds() {
+        assertFalse(SQLiteHelper.isAdditive(table(id()), oldColumns(new Column("other", ColumnType.INTEGER)), new ArrayList<Column>()));
+    }
+
+    @Test
+    public void testChangedTypeRebuilds() {
+        assertFalse(SQLiteHelper.isAdditive(table(id(), text("name")),
+                oldColumns(id(), new Column("name", ColumnType.REAL)), new ArrayList<Column>()));
+    }
+
+    @Test
+    public void testChangedConstraintsRebuild() {
+        Column notNull = new Column("name", ColumnType.TEXT, false, false, true, "''");
+        Column withDefault = new Column("name", ColumnType.TEXT, false, false, false, "'x'");
+        Column otherDefault = new Column("name", ColumnType.TEXT, false, false, false, "'y'");
+        Column key = new Column("name", ColumnType.TEXT, true, false, false, null);
+
+        assertFalse(SQLiteHelper.isAdditive(table(id(), notNull), oldColumns(id(), text("name")), new ArrayList<Column>()));
+        assertFalse(SQLiteHelper.isAdditive(table(id(), text("name")), oldColumns(id(), notNull), new ArrayList<Column>()));
+        assertFalse(SQLiteHelper.isAdditive(table(id(), withDefault), oldColumns(id(), text("name")), new ArrayList<Column>()));
+        assertFalse(SQLiteHelper.isAdditive(table(id(), withDefault), oldColumns(id(), otherDefault), new ArrayList<Column>()));
+        assertFalse(SQLiteHelper.isAdditive(table(id(), key), oldColumns(id(), text("name")), new ArrayList<Column>()));
+    }
+
+    @Test
+    public void testDroppedColumnRebuilds() {
+        assertFalse(SQLiteHelper.isAdditive(table(id()),
+                oldColumns(id(), text("gone")), new ArrayList<Column>()));
+
+        // same count, but a column was swapped for another
+        assertFalse(SQLiteHelper.isAdditive(table(id(), text("b"), text("c")),
+                oldColumns(id(), text("a"), text("b")), new ArrayList<Column>()));
+    }
+
+    @Test
+    public void testReadsConstraintsFromTheDatabase() {
+        Column name = new Column("name", ColumnType.TEXT, false, false, true, "'x'");
+        helper.createTable(db, table(id(), name));
+
+        HashMap<String, ColumnInfo> columns = helper.getColumnInfo(db, "test");
+
+        assertTrue(columns.get("id").isDefinedAs(id()));
+        assertTrue(columns.get("name").isDefinedAs(name));
+        assertFalse(columns.get("name").isDefinedAs(text("name")));
+    }
+
+    @Test
+    public void testAddsColumnsInPlace() {
+        db.execSQL("CREATE TABLE test (id integer primary key autoincrement, name text)");
+        db.execSQL("INSERT INTO test (id, name) VALUES (5, 'five')");
+        db.execSQL("INSERT INTO test (id, name) VALUES (9, 'nine')");
+
+        Column count = new Column("count", ColumnType.INTEGER, false, false, true, "0").indexed();
+        helper.upgradeTable(db, table(id(), text("name"), count));
+
+        // no rebuild
+        assertTrue(progress.isEmpty());
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND tbl_name = 'test' AND name = 'test_count_idx'", null));
+
+        Cursor c = db.rawQuery("SELECT id, name, count FROM test ORDER BY id", null);
+        try {
+            assertEquals(2, c.getCount());
+            c.moveToFirst();
+            assertEquals(5, c.getLong(0));
+            assertEquals("five", c.getString(1));
+            assertEquals(0, c.getInt(2));
+            c.moveToNext();
+            assertEquals(9, c.getLong(0));
+            assertEquals("nine", c.getString(1));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void testRebuildCopiesEveryRowInChunks() {
+        db.execSQL("CREATE TABLE test (id integer primary key autoincrement, name text, gone text)");
+
+        int rows = 2 * SQLiteHelper.MIGRATION_CHUNK + 7;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < rows; i++) {
+                // gaps between the ids
+                db.execSQL("INSERT INTO test (id, name, gone) VALUES (?, ?, 'x')", new Object[]{3 * i + 1, "row" + i});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        helper.upgradeTable(db, table(id(), text("name")));
+
+        assertEquals(3, progress.size());
+        assertEquals(Long.valueOf(rows), progress.get(2));
+        assertFalse(helper.tableExists(db, "test" + SQLiteHelper.TEMP_SUFFIX));
+        assertFalse(helper.getColumnInfo(db, "test").containsKey("gone"));
+
+        Cursor c = db.rawQuery("SELECT id, name FROM test ORDER BY id", null);
+        try {
+            assertEquals(rows, c.getCount());
+            for (int i = 0; c.moveToNext(); i++) {
+                assertEquals(3 * i + 1, c.getLong(0));
+                assertEquals("row" + i, c.getString(1));
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void testChangedConstraintIsApplied() {
+        db.execSQL("CREATE TABLE test (id integer primary key autoincrement, name text)");
+        db.execSQL("INSERT INTO test (id, name) VALUES (3, 'three')");
+
+        Column name = new Column("name", ColumnType.TEXT, false, false, true, "''");
+        helper.upgradeTable(db, table(id(), name));
+
+        assertEquals(1, progress.size());
+        assertTrue(helper.getColumnInfo(db, "test").get("name").isDefinedAs(name));
+        assertEquals("three", DatabaseUtils.stringForQuery(db, "SELECT name FROM test WHERE id = 3", null));
+    }
+}
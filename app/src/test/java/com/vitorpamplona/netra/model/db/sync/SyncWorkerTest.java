@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.model.db.sync;
+
+import android.database.DatabaseUtils;
+
+import com.vitorpamplona.netra.activity.NetraGApplication;
+import com.vitorpamplona.netra.model.db.SQLiteHelper;
+import com.vitorpamplona.netra.model.db.objects.DebugExam;
+import com.vitorpamplona.netra.model.db.tables.DebugExamTable;
+import com.vitorpamplona.netra.model.db.tables.SyncOutboxTable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, application = com.vitorpamplona.netra.activity.NetraGTestApplication.class)
+public class SyncWorkerTest {
+
+    private SQLiteHelper helper;
+    private DebugExam exam;
+
+    @Before
+    public void setUp() {
+        helper = NetraGApplication.get().getSqliteHelper(true);
+
+        exam = new DebugExam();
+        helper.saveDebugExamToSync(exam, false);
+    }
+
+    private List<SyncOutboxTable.Entry> pending(SyncTarget target) {
+        return helper.syncOutboxTable.findPending(target, 0, 10);
+    }
+
+    private long flag(String column) {
+        return DatabaseUtils.longForQuery(helper.getReadableDatabase(),
+                "SELECT " + column + " FROM " + DebugExamTable.TABLE_NAME + " WHERE id=?",
+                new String[]{exam.getId().toString()});
+    }
+
+    @Test
+    public void testSyncRemovesFromOutbox() {
+        LocalSyncServer server = new LocalSyncServer();
+
+        assertEquals(1, pending(SyncTarget.DEBUG).size());
+        assertEquals(1, pending(SyncTarget.INSIGHT).size());
+
+        assertEquals(2, new SyncWorker(helper, server).syncAll());
+
+        assertEquals(exam.getId(), server.getReceived(SyncTarget.DEBUG).get(0));
+        assertEquals(exam.getId(), server.getReceived(SyncTarget.INSIGHT).get(0));
+        assertTrue(pending(SyncTarget.DEBUG).isEmpty());
+        assertTrue(pending(SyncTarget.INSIGHT).isEmpty());
+        assertEquals(0, flag(DebugExamTable.TO_SYNC_DEBUG));
+        assertEquals(0, flag(DebugExamTable.TO_SYNC_INSIGHT));
+
+        // nothing left to send
+        assertEquals(0, new SyncWorker(helper, server).syncAll());
+        assertEquals(2, server.getUploads());
+    }
+
+    @Test
+    public void testQueuedAgainWhileInFlight() {
+        // The exam changes while its upload is on the way: the server got the old version.
+        SyncServer server = new LocalSyncServer() {
+            @Override
+            public synchronized Map<Long, Integer> upload(SyncTarget target, List<DebugExam> exams) throws IOException {
+                Map<Long, Integer> accepted = super.upload(target, exams);
+                if (target == SyncTarget.DEBUG && getUploads() == 1) {
+                    helper.saveDebugExamToSync(exam, false);
+                }
+                return accepted;
+            }
+        };
+
+        SyncWorker worker = new SyncWorker(helper, server);
+        worker.syncAll();
+
+        assertEquals(1, pending(SyncTarget.DEBUG).size());
+        assertEquals(1, flag(DebugExamTable.TO_SYNC_DEBUG));
+
+        worker.syncAll();
+
+        assertTrue(pending(SyncTarget.DEBUG).isEmpty());
+        assertEquals(0, flag(DebugExamTable.TO_SYNC_DEBUG));
+    }
+
+    @Test
+    public void testOfflineRunsDoNotCountAsAttempts() {
+        LocalSyncServer server = new LocalSyncServer();
+        server.setOffline(true);
+
+        SyncWorker worker = new SyncWorker(helper, server);
+        for (int i = 0; i < SyncOutboxTable.MAX_ATTEMPTS + 2; i++) {
+            assertEquals(0, worker.syncAll());
+            assertTrue(worker.isServerUnreachable());
+        }
+
+        assertEquals(1, pending(SyncTarget.DEBUG).size());
+        assertEquals(1, pending(SyncTarget.INSIGHT).size());
+
+        server.setOffline(false);
+
+        assertEquals(2, worker.syncAll());
+        assertFalse(worker.isServerUnreachable());
+        assertTrue(pending(SyncTarget.DEBUG).isEmpty());
+        assertEquals(0, flag(DebugExamTable.TO_SYNC_DEBUG));
+    }
+
+    @Test
+    public void testRejectedExamsStopAfterMaxAttempts() {
+        SyncServer rejectAll = new SyncServer() {
+            @Override
+            public Map<Long, Integer> upload(SyncTarget target, List<DebugExam> exams) {
+                return new HashMap<Long, Integer>();
+            }
+        };
+
+        SyncWorker worker = new SyncWorker(helper, rejectAll);
+        for (int i = 0; i < SyncOutboxTable.MAX_ATTEMPTS; i++) {
+            assertEquals(1, pending(SyncTarget.DEBUG).size());
+            worker.syncAll();
+        }
+        assertTrue(pending(SyncTarget.DEBUG).isEmpty());
+
+        // queuing it again gives it a fresh start
+        helper.saveDebugExamToSync(exam, false);
+        assertEquals(1, pending(SyncTarget.DEBUG).size());
+    }
+}
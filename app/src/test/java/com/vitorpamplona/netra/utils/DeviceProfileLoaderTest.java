@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.netra.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.vitorpamplona.core.testdevice.DeviceDataset;
+import com.vitorpamplona.core.testdevice.DeviceDataset.Device;
+import com.vitorpamplona.netra.model.db.gsonadapters.GsonProvider;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class DeviceProfileLoaderTest {
+
+    private static final long BATCH = 910000l;
+    private static final long OTHER_BATCH = 920000l;
+
+    @After
+    public void tearDown() {
+        DeviceDataset.unregister(Arrays.asList(BATCH, OTHER_BATCH, 500l));
+    }
+
+    /**
+     * A complete profile: a built-in one written out under another id.
+     */
+    private JsonObject profile(long id) {
+        JsonObject json = GsonProvider.get().toJsonTree(DeviceDataset.get(403l)).getAsJsonObject();
+        json.addProperty("id", id);
+        return json;
+    }
+
+    private List<Device> load(JsonObject... profiles) {
+        JsonArray array = new JsonArray();
+        for (JsonObject p : profiles) {
+            array.add(p);
+        }
+        return DeviceProfileLoader.load(new StringReader(array.toString()));
+    }
+
+    @Test
+    public void testLoadsCompleteProfile() {
+        List<Device> loaded = load(profile(BATCH));
+
+        assertEquals(1, loaded.size());
+        Device d = DeviceDataset.get(BATCH + 5);
+        assertEquals(BATCH + 5, d.id);
+        assertEquals(DeviceDataset.get(403l).lensFocalLength, d.lensFocalLength, 0.0001);
+        assertEquals(DeviceDataset.get(403l).previewFrameSize, d.previewFrameSize);
+        assertNotNull(d.calibrationRectTopLeft);
+    }
+
+    @Test
+    public void testSkipsProfileWithoutGeometry() {
+        Device before = DeviceDataset.get(500l);
+
+        JsonObject partial = new JsonObject();
+        partial.addProperty("id", 500);
+        partial.addProperty("tubeLength", 130);
+
+        assertTrue(load(partial).isEmpty());
+        assertEquals(before.tubeLength, DeviceDataset.get(500l).tubeLength, 0.0001);
+        assertNotNull(DeviceDataset.get(500l).calibrationType);
+    }
+
+    @Test
+    public void testSkipsProfileWithoutCalibration() {
+        JsonObject p = profile(BATCH);
+        p.remove("calibrationRectBottomRight");
+
+        List<Device> loaded = load(p, profile(OTHER_BATCH));
+
+        assertEquals(1, loaded.size());
+        assertEquals(OTHER_BATCH, loaded.get(0).id);
+    }
+
+    @Test
+    public void testIgnoresViewToRun() {
+        JsonObject p = profile(BATCH);
+        p.addProperty("viewToRun", "com.vitorpamplona.netra.test.view.UmbrellaTestView");
+
+        assertEquals(1, load(p).size());
+        assertNull(DeviceDataset.get(BATCH).viewToRun);
+    }
+
+    @Test
+    public void testSkipsProfileOfTheWrongType() {
+        JsonObject p = profile(BATCH);
+        p.addProperty("calibrationType", "NOT_A_TYPE");
+        JsonObject broken = profile(OTHER_BATCH);
+        broken.add("deltaMeridianFromCalibration", new JsonArray());
+
+        assertTrue(load(p, broken).isEmpty());
+    }
+}
@@ -0,0 +1,413 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates an objective over a space of parameters in parallel. Instead of cascading for loops,
+ * every combination is an independent point, so points can be sampled (grid, random,
+ * latin hypercube), refined from coarse to fine and resumed from a checkpoint file.
+ *
+ * The objective returns one or more scores per point (lower is better) and must be safe to call
+ * from several threads at once.
+ */
+public class ParameterSweep {
+
+    public interface Objective {
+        double[] evaluate(double[] point);
+    }
+
+    /**
+     * How to pick the points to evaluate.
+     */
+    public interface Strategy {
+        void run(ParameterSweep sweep, Objective objective) throws InterruptedException, ExecutionException;
+    }
+
+    public static final Strategy GRID_SEARCH = (sweep, objective) -> sweep.evaluate(sweep.grid(), objective);
+
+    public static Strategy randomSearch(int samples, long seed) {
+        return (sweep, objective) -> sweep.evaluate(sweep.random(samples, seed), objective);
+    }
+
+    public static Strategy latinHypercubeSearch(int samples, long seed) {
+        return (sweep, objective) -> sweep.evaluate(sweep.latinHypercube(samples, seed), objective);
+    }
+
+    public static Strategy coarseToFineSearch(int factor, int scoreIndex) {
+        return (sweep, objective) -> sweep.coarseToFine(objective, factor, scoreIndex);
+    }
+
+    List<Dimension> dimensions;
+    int threads;
+    File checkpoint;
+    boolean showProgress = false;
+
+    // Every point already evaluated, by its formatted key. Also loaded from the checkpoint.
+    Map<String, double[]> evaluated = new LinkedHashMap<String, double[]>();
+
+    double[] bestScores;
+    double[][] bestPoints;
+
+    // Shared by every round of a run, so the objective's per-thread state survives between rounds.
+    ExecutorService pool;
+
+    public ParameterSweep(Dimension... dimensions) {
+        this(Arrays.asList(dimensions));
+    }
+
+    public ParameterSweep(List<Dimension> dimensions) {
+        this.dimensions = dimensions;
+        this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    public ParameterSweep threads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    public ParameterSweep showProgress(boolean showProgress) {
+        this.showProgress = showProgress;
+        return this;
+    }
+
+    public void run(Strategy strategy, Objective objective) throws InterruptedException, ExecutionException {
+        pool = Executors.newFixedThreadPool(threads);
+        try {
+            strategy.run(this, objective);
+        } finally {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * Appends every evaluation to the file and skips the points it already contains.
+     */
+    public ParameterSweep checkpoint(File file) throws IOException {
+        this.checkpoint = file;
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(";");
+                    if (parts.length != 2) continue;
+                    double[] point = parse(parts[0]);
+                    double[] scores = parse(parts[1]);
+                    if (point.length != dimensions.size()) continue;
+                    evaluated.put(key(point), scores);
+                    updateBest(point, scores);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Every combination of every step, the same as nested for loops.
+     */
+    public List<double[]> grid() {
+        return grid(dimensions);
+    }
+
+    public static List<double[]> grid(List<Dimension> dims) {
+        List<double[]> points = new ArrayList<double[]>();
+        int[] index = new int[dims.size()];
+
+        while (true) {
+            double[] point = new double[dims.size()];
+            for (int d = 0; d < dims.size(); d++) {
+                point[d] = dims.get(d).value(index[d]);
+            }
+            points.add(point);
+
+            // Mixed radix counter, last dimension moves faster.
+            int d = dims.size() - 1;
+            while (d >= 0 && ++index[d] >= dims.get(d).steps()) {
+                index[d] = 0;
+                d--;
+            }
+            if (d < 0) break;
+        }
+
+        return points;
+    }
+
+    /**
+     * Uniform random points, snapped to the step of each dimension.
+     */
+    public List<double[]> random(int samples, long seed) {
+        Random random = new Random(seed);
+        List<double[]> points = new ArrayList<double[]>();
+        for (int i = 0; i < samples; i++) {
+            double[] point = new double[dimensions.size()];
+            for (int d = 0; d < dimensions.size(); d++) {
+                point[d] = dimensions.get(d).value(random.nextInt(dimensions.get(d).steps()));
+            }
+            points.add(point);
+        }
+        return points;
+    }
+
+    /**
+     * Latin hypercube: each dimension is split in as many strata as samples and every stratum is
+     * used exactly once, which covers the space much better than random for the same budget.
+     */
+    public List<double[]> latinHypercube(int samples, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[samples][dimensions.size()];
+
+        for (int d = 0; d < dimensions.size(); d++) {
+            Dimension dim = dimensions.get(d);
+
+            int[] strata = new int[samples];
+            for (int i = 0; i < samples; i++) strata[i] = i;
+            for (int i = samples - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = strata[i];
+                strata[i] = strata[j];
+                strata[j] = tmp;
+            }
+
+            for (int i = 0; i < samples; i++) {
+                double position = (strata[i] + random.nextDouble()) / samples;
+                int index = Math.min(dim.steps() - 1, (int) (position * dim.steps()));
+                points[i][d] = dim.value(index);
+            }
+        }
+
+        return new ArrayList<double[]>(Arrays.asList(points));
+    }
+
+    /**
+     * Evaluates the grid with steps {@code factor} times larger than the original ones, then
+     * zooms around the best point of {@code scoreIndex} dividing the step by {@code factor}
+     * until it reaches the original step. Only a small fraction of the full grid is computed.
+     */
+    public void coarseToFine(Objective objective, int factor, int scoreIndex) throws InterruptedException, ExecutionException {
+        List<Dimension> current = new ArrayList<Dimension>();
+        for (Dimension dim : dimensions) {
+            current.add(dim.coarse(factor));
+        }
+
+        while (true) {
+            evaluate(grid(current), objective);
+
+            double[] best = best(scoreIndex);
+            if (best == null) return;
+
+            boolean isFinest = true;
+            List<Dimension> next = new ArrayList<Dimension>();
+            for (int d = 0; d < current.size(); d++) {
+                Dimension original = dimensions.get(d);
+                Dimension dim = current.get(d);
+                if (dim.step > original.step) isFinest = false;
+                next.add(original.around(best[d], dim.step, Math.max(original.step, dim.step / factor)));
+            }
+
+            if (isFinest) return;
+            current = next;
+        }
+    }
+
+    /**
+     * Evaluates all points not yet computed in parallel, on the threads of the current run.
+     */
+    public void evaluate(List<double[]> points, final Objective objective) throws InterruptedException, ExecutionException {
+        List<double[]> pending = new ArrayList<double[]>();
+        synchronized (this) {
+            for (double[] point : points) {
+                String key = key(point);
+                if (!evaluated.containsKey(key)) {
+                    evaluated.put(key, null);
+                    pending.add(point);
+                }
+            }
+        }
+
+        if (pending.isEmpty()) return;
+
+        ExecutorService pool = this.pool != null ? this.pool : Executors.newFixedThreadPool(threads);
+        try (BufferedWriter writer = checkpoint != null ? new BufferedWriter(new FileWriter(checkpoint, true)) : null) {
+            List<Future<double[]>> futures = new ArrayList<Future<double[]>>(pending.size());
+            for (final double[] point : pending) {
+                futures.add(pool.submit(() -> objective.evaluate(point)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                double[] point = pending.get(i);
+                double[] scores = futures.get(i).get();
+
+                synchronized (this) {
+                    evaluated.put(key(point), scores);
+                    updateBest(point, scores);
+                }
+
+                if (writer != null) {
+                    writer.write(key(point) + ";" + format(scores));
+                    writer.newLine();
+                    writer.flush();
+                }
+
+                if (showProgress)
+                    ConsoleProgressBar.printProgBar((i + 1) / (double) futures.size());
+            }
+        } catch (IOException e) {
+            throw new ExecutionException("Unable to write the checkpoint " + checkpoint, e);
+        } finally {
+            if (pool != this.pool) pool.shutdownNow();
+        }
+    }
+
+    private void updateBest(double[] point, double[] scores) {
+        if (bestScores == null) {
+            bestScores = new double[scores.length];
+            bestPoints = new double[scores.length][];
+            Arrays.fill(bestScores, Double.MAX_VALUE);
+        }
+
+        for (int i = 0; i < scores.length && i < bestScores.length; i++) {
+            if (scores[i] < bestScores[i]) {
+                bestScores[i] = scores[i];
+                bestPoints[i] = point;
+            }
+        }
+    }
+
+    public synchronized double[] best(int scoreIndex) {
+        if (bestPoints == null) return null;
+        return bestPoints[scoreIndex];
+    }
+
+    public synchronized double bestScore(int scoreIndex) {
+        if (bestScores == null) return Double.MAX_VALUE;
+        return bestScores[scoreIndex];
+    }
+
+    public synchronized int evaluatedCount() {
+        return evaluated.size();
+    }
+
+    static String key(double[] point) {
+        return format(point);
+    }
+
+    static String format(double[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) builder.append(",");
+            builder.append(String.format(Locale.US, "%.6f", values[i]));
+        }
+        return builder.toString();
+    }
+
+    static double[] parse(String values) {
+        String[] parts = values.split(",");
+        double[] ret = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ret[i] = Double.parseDouble(parts[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * One parameter of the sweep: the same as for (double v=min; v<=max; v+=step).
+     */
+    public static class Dimension {
+        public final double min;
+        public final double max;
+        public final double step;
+
+        // Adds max as a last, shorter step when the range is not a whole number of steps.
+        final boolean closed;
+
+        public Dimension(double min, double max, double step) {
+            this(min, max, step, false);
+        }
+
+        Dimension(double min, double max, double step, boolean closed) {
+            this.min = min;
+            this.max = max;
+            this.step = step;
+            this.closed = closed;
+        }
+
+        public int steps() {
+            if (step <= 0 || max <= min) return 1;
+            // Small epsilon to avoid losing the last step to floating point errors.
+            int steps = (int) Math.floor((max - min) / step + 1e-9) + 1;
+            if (closed && min + (steps - 1) * step < max - 1e-9 * step) steps++;
+            return steps;
+        }
+
+        public double value(int index) {
+            return closed ? Math.min(max, min + index * step) : min + index * step;
+        }
+
+        public double snap(double value) {
+            int index = (int) Math.round((value - min) / step);
+            return value(Math.max(0, Math.min(steps() - 1, index)));
+        }
+
+        /**
+         * Same range with a larger step, always including both ends.
+         */
+        Dimension coarse(int factor) {
+            double coarseStep = step * factor;
+            if (coarseStep >= max - min) {
+                coarseStep = Math.max(step, max - min);
+            }
+            return new Dimension(min, max, coarseStep, true);
+        }
+
+        /**
+         * Sub range of {@code radius} around {@code center}, aligned to the original grid and
+         * including both ends.
+         */
+        Dimension around(double center, double radius, double newStep) {
+            double newMin = snap(Math.max(min, center - radius));
+            double newMax = snap(Math.min(max, center + radius));
+            return new Dimension(newMin, newMax, Math.round(newStep / step) * step, true);
+        }
+    }
+}
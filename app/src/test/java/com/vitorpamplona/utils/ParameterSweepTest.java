@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2024 Vitor Pamplona
+ *
+ * This program is offered under a commercial and under the AGPL license.
+ * For commercial licensing, contact me at vitor@vitorpamplona.com.
+ * For AGPL licensing, see below.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * This application has not been clinically tested, approved by or registered in any health agency.
+ * Even though this repository grants licenses to use to any person that follow it's license,
+ * any clinical or commercial use must additionally follow the laws and regulations of the
+ * pertinent jurisdictions. Having a license to use the source code does not imply on having
+ * regulatory approvals to use or market any part of this code.
+ */
+package com.vitorpamplona.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class ParameterSweepTest {
+
+    // Minimum at (0.3, 1.7)
+    ParameterSweep.Objective bowl = point -> new double[]{
+            (point[0] - 0.3) * (point[0] - 0.3) + (point[1] - 1.7) * (point[1] - 1.7)
+    };
+
+    @Test
+    public void testGridMatchesNestedLoops() {
+        ParameterSweep sweep = new ParameterSweep(
+                new ParameterSweep.Dimension(0, 1, 0.1),
+                new ParameterSweep.Dimension(0.25, 0.50, 0.25),
+                new ParameterSweep.Dimension(0.42, 0.42, 0.02));
+
+        List<double[]> grid = sweep.grid();
+
+        assertEquals(11 * 2, grid.size());
+        assertEquals(0.0, grid.get(0)[0], 0.0001);
+        assertEquals(0.50, grid.get(1)[1], 0.0001);
+        assertEquals(1.0, grid.get(grid.size() - 1)[0], 0.0001);
+    }
+
+    @Test
+    public void testLatinHypercubeUsesEveryStratum() {
+        ParameterSweep sweep = new ParameterSweep(
+                new ParameterSweep.Dimension(0, 9, 1),
+                new ParameterSweep.Dimension(0, 9, 1));
+
+        List<double[]> points = sweep.latinHypercube(10, 42);
+
+        for (int d = 0; d < 2; d++) {
+            Set<Double> values = new HashSet<Double>();
+            for (double[] p : points) values.add(p[d]);
+            assertEquals(10, values.size());
+        }
+    }
+
+    @Test
+    public void testCoarseToFineFindsTheGridMinimum() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ParameterSweep sweep = new ParameterSweep(
+                new ParameterSweep.Dimension(0, 2, 0.01),
+                new ParameterSweep.Dimension(0, 2, 0.01)).threads(4);
+
+        sweep.run(ParameterSweep.coarseToFineSearch(5, 0), point -> {
+            calls.incrementAndGet();
+            return bowl.evaluate(point);
+        });
+
+        assertEquals(0.3, sweep.best(0)[0], 0.0001);
+        assertEquals(1.7, sweep.best(0)[1], 0.0001);
+        assertTrue("Evaluated " + calls.get() + " of 40401 points", calls.get() < 2000);
+    }
+
+    @Test
+    public void testCoarseGridIncludesBothEnds() {
+        ParameterSweep.Dimension coarse = new ParameterSweep.Dimension(0, 1, 0.1).coarse(3);
+
+        assertEquals(5, coarse.steps());
+        assertEquals(0.0, coarse.value(0), 0.0001);
+        assertEquals(0.9, coarse.value(3), 0.0001);
+        assertEquals(1.0, coarse.value(4), 0.0001);
+    }
+
+    @Test
+    public void testCoarseToFineFindsAMinimumAtTheUpperEnd() throws Exception {
+        ParameterSweep sweep = new ParameterSweep(new ParameterSweep.Dimension(0, 1, 0.1));
+
+        // Only max itself is better than min, so the coarse pass has to look at it.
+        sweep.run(ParameterSweep.coarseToFineSearch(3, 0), point -> new double[]{point[0] > 0.95 ? -1 : point[0]});
+
+        assertEquals(1.0, sweep.best(0)[0], 0.0001);
+    }
+
+    @Test
+    public void testRoundsShareTheThreadsOfARun() throws Exception {
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        ParameterSweep sweep = new ParameterSweep(
+                new ParameterSweep.Dimension(0, 2, 0.01),
+                new ParameterSweep.Dimension(0, 2, 0.01)).threads(2);
+
+        sweep.run(ParameterSweep.coarseToFineSearch(5, 0), point -> {
+            threads.add(Thread.currentThread());
+            return bowl.evaluate(point);
+        });
+
+        assertTrue(threads.size() + " threads", threads.size() <= 2);
+    }
+
+    @Test
+    public void testCheckpointSkipsEvaluatedPoints() throws Exception {
+        File file = File.createTempFile("sweep", ".txt");
+        file.delete();
+        file.deleteOnExit();
+
+        ParameterSweep.Dimension x = new ParameterSweep.Dimension(0, 1, 0.1);
+        ParameterSweep.Dimension y = new ParameterSweep.Dimension(1, 2, 0.1);
+
+        new ParameterSweep(x, y).checkpoint(file).run(ParameterSweep.GRID_SEARCH, bowl);
+
+        AtomicInteger calls = new AtomicInteger();
+        ParameterSweep resumed = new ParameterSweep(x, y).checkpoint(file);
+        resumed.run(ParameterSweep.GRID_SEARCH, point -> {
+            calls.incrementAndGet();
+            return bowl.evaluate(point);
+        });
+
+        assertEquals(0, calls.get());
+        assertEquals(121, resumed.evaluatedCount());
+        assertEquals(0.3, resumed.best(0)[0], 0.0001);
+        assertEquals(1.7, resumed.best(0)[1], 0.0001);
+    }
+}